@@ -0,0 +1,213 @@
+package metaheuristics.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import metaheuristics.termination.AnytimeTrace;
+
+/**
+ * Time-to-target analysis of the anytime traces of several configurations,
+ * each run with several seeds on several instances.
+ *
+ * The targets of an instance are fractions ("levels") of the best cost found
+ * by any run on it: the target of level l is best - (1 - l) |best|. For each
+ * configuration, instance and level, the analysis gives
+ *
+ * - the time-to-target plot (TTT) data: the sorted times of the runs that
+ * reached the target, with the empirical probability (i - 1/2) / n of the
+ * i-th one, n being the number of runs including those that failed;
+ *
+ * - the expected running time (ERT): the total time of all runs, counting
+ * the time to target of successful runs and the whole time of failed ones,
+ * divided by the number of successes;
+ *
+ * - the performance profile of Dolan and Moré over the ERTs: the fraction
+ * rho(tau) of (instance, level) problems on which the ERT of a configuration
+ * is within a factor tau of the best configuration.
+ *
+ * @author arthurpd
+ */
+public class TimeToTarget {
+
+	public static final double[] DEFAULT_LEVELS = { 0.95, 0.99, 1.0 };
+
+	private final List<String> configurations;
+
+	private final List<String> instances;
+
+	private final int seeds;
+
+	private final AnytimeTrace[][][] traces;
+
+	private final long[][][] runNanos;
+
+	/**
+	 * @param configurations
+	 *            The names of the configurations.
+	 * @param instances
+	 *            The names of the instances.
+	 * @param seeds
+	 *            The number of runs of each configuration on each instance.
+	 */
+	public TimeToTarget(List<String> configurations, List<String> instances, int seeds) {
+		this.configurations = configurations;
+		this.instances = instances;
+		this.seeds = seeds;
+		this.traces = new AnytimeTrace[configurations.size()][instances.size()][seeds];
+		this.runNanos = new long[configurations.size()][instances.size()][seeds];
+	}
+
+	/**
+	 * Records a finished run.
+	 *
+	 * @param configuration
+	 *            Index of the configuration.
+	 * @param instance
+	 *            Index of the instance.
+	 * @param seed
+	 *            Index of the run.
+	 * @param trace
+	 *            The trace of the run, which is kept.
+	 * @param nanos
+	 *            The whole duration of the run.
+	 */
+	public void add(int configuration, int instance, int seed, AnytimeTrace trace, long nanos) {
+		traces[configuration][instance][seed] = trace;
+		runNanos[configuration][instance][seed] = nanos;
+	}
+
+	/**
+	 * @param instance
+	 *            Index of the instance.
+	 * @return The best cost found by any run on the instance.
+	 */
+	public double best(int instance) {
+		double best = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < configurations.size(); c++)
+			for (AnytimeTrace trace : traces[c][instance])
+				if (trace != null && trace.size() > 0)
+					best = Math.max(best, trace.getCost(trace.size() - 1));
+		return best;
+	}
+
+	/**
+	 * @param instance
+	 *            Index of the instance.
+	 * @param level
+	 *            The fraction of the best cost, in (0, 1].
+	 * @return The target cost of the given level.
+	 */
+	public double target(int instance, double level) {
+		double best = best(instance);
+		return best - (1 - level) * Math.abs(best);
+	}
+
+	/**
+	 * @param configuration
+	 *            Index of the configuration.
+	 * @param instance
+	 *            Index of the instance.
+	 * @param target
+	 *            The target cost.
+	 * @return The expected running time of a configuration to reach a target,
+	 *         in nanoseconds, or infinity if no run reached it.
+	 */
+	public double expectedRunningTime(int configuration, int instance, double target) {
+		double total = 0;
+		int successes = 0;
+		for (int s = 0; s < seeds; s++) {
+			AnytimeTrace trace = traces[configuration][instance][s];
+			long nanos = trace == null ? -1 : trace.nanosToTarget(target);
+			if (nanos >= 0) {
+				total += nanos;
+				successes++;
+			} else {
+				total += runNanos[configuration][instance][s];
+			}
+		}
+		return successes == 0 ? Double.POSITIVE_INFINITY : total / successes;
+	}
+
+	/**
+	 * Writes all traces as CSV, with header
+	 * "configuration,instance,seed,nanos,evaluations,cost".
+	 */
+	public void writeTraces(Appendable out) throws IOException {
+		out.append("configuration,instance,seed,nanos,evaluations,cost\n");
+		for (int c = 0; c < configurations.size(); c++)
+			for (int i = 0; i < instances.size(); i++)
+				for (int s = 0; s < seeds; s++)
+					if (traces[c][i][s] != null)
+						traces[c][i][s].writeCsv(out, configurations.get(c) + "," + instances.get(i) + "," + s);
+	}
+
+	/**
+	 * Writes the time-to-target plot data as CSV, with header
+	 * "configuration,instance,level,target,seconds,evaluations,probability",
+	 * one line per successful run, plus the ERT of each configuration on each
+	 * target as a line with empty evaluations and probability.
+	 */
+	public void writeTimeToTarget(Appendable out, double[] levels) throws IOException {
+		out.append("configuration,instance,level,target,seconds,evaluations,probability\n");
+		for (int i = 0; i < instances.size(); i++) {
+			for (double level : levels) {
+				double target = target(i, level);
+				for (int c = 0; c < configurations.size(); c++) {
+					String prefix = configurations.get(c) + "," + instances.get(i) + "," + level + "," + target + ",";
+					List<long[]> reached = new ArrayList<long[]>();
+					for (int s = 0; s < seeds; s++) {
+						AnytimeTrace trace = traces[c][i][s];
+						int k = trace == null ? -1 : trace.indexOf(target);
+						if (k >= 0)
+							reached.add(new long[] { trace.getNanos(k), trace.getEvaluations(k) });
+					}
+					reached.sort((a, b) -> Long.compare(a[0], b[0]));
+					for (int r = 0; r < reached.size(); r++)
+						out.append(prefix).append(Double.toString(reached.get(r)[0] / 1e9)).append(',').append(Long.toString(reached.get(r)[1])).append(',').append(Double.toString((r + 0.5) / seeds)).append('\n');
+					out.append(prefix).append(Double.toString(expectedRunningTime(c, i, target) / 1e9)).append(",,\n");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the performance profiles over the ERTs as CSV, with header
+	 * "configuration,tau,rho", one line per step of each profile.
+	 */
+	public void writeProfile(Appendable out, double[] levels) throws IOException {
+
+		int problems = instances.size() * levels.length;
+		double[][] ratios = new double[configurations.size()][problems];
+		int p = 0;
+		for (int i = 0; i < instances.size(); i++) {
+			for (double level : levels) {
+				double target = target(i, level);
+				double min = Double.POSITIVE_INFINITY;
+				for (int c = 0; c < configurations.size(); c++) {
+					ratios[c][p] = expectedRunningTime(c, i, target);
+					min = Math.min(min, ratios[c][p]);
+				}
+				/* ratios of a problem no configuration solved are all infinite */
+				for (int c = 0; c < configurations.size(); c++)
+					ratios[c][p] = Double.isInfinite(min) ? min : ratios[c][p] / Math.max(min, 1.0);
+				p++;
+			}
+		}
+
+		out.append("configuration,tau,rho\n");
+		for (int c = 0; c < configurations.size(); c++) {
+			double[] sorted = ratios[c].clone();
+			Arrays.sort(sorted);
+			for (int k = 0; k < problems; k++) {
+				if (Double.isInfinite(sorted[k]))
+					break;
+				if (k + 1 < problems && sorted[k + 1] == sorted[k])
+					continue;
+				out.append(configurations.get(c)).append(',').append(Double.toString(sorted[k])).append(',').append(Double.toString((k + 1.0) / problems)).append('\n');
+			}
+		}
+	}
+
+}
@@ -1,10 +1,33 @@
 package metaheuristics.ga;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Random;
-
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import metaheuristics.ga.checkpoint.Checkpoint;
+import metaheuristics.ga.checkpoint.Checkpointer;
+import metaheuristics.ga.store.SolutionStore;
+import metaheuristics.portfolio.SharedBest;
+import metaheuristics.termination.AnyOf;
+import metaheuristics.termination.MaxGenerations;
+import metaheuristics.termination.SearchProgress;
+import metaheuristics.termination.StallTime;
+import metaheuristics.termination.TerminationCriterion;
+import metaheuristics.termination.WallClockDeadline;
 import problems.Evaluator;
+import solutions.PackedBits;
 import solutions.Solution;
 
 /**
@@ -22,6 +45,21 @@ public abstract class AbstractGA<G extends Number, F> {
 	@SuppressWarnings("serial")
 	public class Chromosome extends ArrayList<G> {
 		public Double fitness = null;
+
+		/**
+		 * Packs the chromosome into a binary vector, taking every non-zero
+		 * allele as a one.
+		 * 
+		 * @return The packed genome.
+		 */
+		public long[] pack() {
+			long[] bits = new long[PackedBits.words(size())];
+			for (int locus = 0; locus < size(); locus++) {
+				if (get(locus).intValue() != 0)
+					PackedBits.set(bits, locus);
+			}
+			return bits;
+		}
 	}
 
 	@SuppressWarnings("serial")
@@ -35,9 +73,10 @@ public abstract class AbstractGA<G extends Number, F> {
 	public static boolean verbose = false;
 
 	/**
-	 * a random number generator
+	 * a random number generator, owned by this GA so that runs in different
+	 * threads do not interfere and a run can be checkpointed and resumed
 	 */
-	public static final Random rng = new Random(0);
+	protected final StatefulRandom rng = new StatefulRandom(0);
 
 	/**
 	 * the objective function being optimized
@@ -79,6 +118,26 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	protected Chromosome bestChromosome;
 
+	/**
+	 * the condition under which {@link #solve()} stops
+	 */
+	protected TerminationCriterion termination;
+
+	/**
+	 * the progress of the current run, inspected by {@link #termination}
+	 */
+	protected final SearchProgress progress = new SearchProgress();
+
+	/**
+	 * periodically saves the state of the run, if set
+	 */
+	protected Checkpointer checkpointer;
+
+	/**
+	 * the chromosome decoded into {@link #bestSol}
+	 */
+	private Chromosome bestSolChromosome;
+
 	private boolean adaptiveMutation;
 
 	private double avg;
@@ -87,6 +146,183 @@ public abstract class AbstractGA<G extends Number, F> {
 
 	private boolean sus;
 
+	/**
+	 * whether offsprings identical to another member of the new population
+	 * are mutated into new genotypes before being evaluated
+	 */
+	private boolean duplicateRejection = false;
+
+	/**
+	 * whether the population is updated by deterministic crowding instead of
+	 * tournament selection plus elitism
+	 */
+	private boolean crowding = false;
+
+	/**
+	 * fraction of the initial population built by
+	 * {@link #constructChromosome(Random)} instead of at random
+	 */
+	private double seedFraction = 0.0;
+
+	/**
+	 * the pool running the constructions of the seeded chromosomes
+	 */
+	private ExecutorService seedPool;
+
+	/**
+	 * maximum size of the elite pool, or 0 if path relinking is disabled
+	 */
+	private int eliteSize = 0;
+
+	/**
+	 * number of generations between two path relinkings
+	 */
+	private int relinkingInterval;
+
+	/**
+	 * the best distinct genomes found so far, best first, with their fitness
+	 */
+	private final ArrayList<long[]> elite = new ArrayList<long[]>();
+
+	private final ArrayList<Double> eliteFitness = new ArrayList<Double>();
+
+	/**
+	 * generations without improvement after which the population is
+	 * restarted, or 0 if restarts are disabled
+	 */
+	private int restartStall = 0;
+
+	/**
+	 * population entropy below which a population that has not improved for
+	 * {@link #ENTROPY_CHECK_INTERVAL} generations is restarted
+	 */
+	private double restartEntropy;
+
+	/**
+	 * number of best distinct chromosomes kept by a restart
+	 */
+	private int restartElites;
+
+	/**
+	 * per-locus mutation probability of the chromosomes rebuilt around the
+	 * elites by a restart, or 0 for rebuilding them at random
+	 */
+	private double restartPerturbation;
+
+	private long lastRestartGeneration;
+
+	private int restarts;
+
+	/**
+	 * the mutation rate given to the constructor, restored by restarts
+	 */
+	private final double initialMutationRate;
+
+	/**
+	 * whether {@link #termination} is still the one set by the constructor
+	 */
+	private boolean defaultTermination = true;
+
+	/**
+	 * whether the first offspring of each pair of parents is their
+	 * {@link #partitionCrossover(Chromosome, Chromosome)} child, when they
+	 * have one
+	 */
+	private boolean partitionCrossover = false;
+
+	/**
+	 * whether generations are made by optimal mixing over a
+	 * {@link LinkageTree} instead of selection, crossover and mutation
+	 */
+	private boolean linkageTree = false;
+
+	/**
+	 * whether runs compute an upper bound, see {@link #setBounding(boolean)}
+	 */
+	private boolean bounding = false;
+
+	/**
+	 * number of copies tried by optimal mixing
+	 */
+	private long copies;
+
+	/**
+	 * work of the copies tried not yet counted as evaluations, in
+	 * evaluations
+	 */
+	private double mixingWork;
+
+	/**
+	 * the store of best known solutions, or null
+	 */
+	private SolutionStore store;
+
+	/**
+	 * the key of the instance in {@link #store}
+	 */
+	private String storeKey;
+
+	/**
+	 * whether the initial population starts from the stored solutions
+	 */
+	private boolean warmStart;
+
+	/**
+	 * the best solution shared with the other members of a portfolio, or null
+	 */
+	private SharedBest<F> sharedBest;
+
+	/**
+	 * generations without improvement before the shared best solution is
+	 * taken into the population, or 0 for never
+	 */
+	private int injectionLag;
+
+	/**
+	 * quantile of the population fitness below which offsprings predicted to
+	 * fall are not evaluated, or 0 if screening is disabled
+	 */
+	private double screeningQuantile = 0.0;
+
+	/**
+	 * number of loci sampled for estimating the fitness of an offspring
+	 */
+	private int screeningSample;
+
+	private Surrogate surrogate;
+
+	private long screened;
+
+	/**
+	 * fraction of the offsprings evaluated regardless of their estimate, so
+	 * that the calibration of the surrogate also sees unpromising ones
+	 */
+	public static final double SCREENING_AUDIT = 0.1;
+
+	/**
+	 * residual deviations added to a prediction before comparing it with the
+	 * screening threshold
+	 */
+	public static final double SCREENING_MARGIN = 1.0;
+
+	/**
+	 * number of generations between two checks of the population entropy
+	 * for restarts, as computing it costs about as much as a mutation of
+	 * the population
+	 */
+	public static final int ENTROPY_CHECK_INTERVAL = 10;
+
+	/**
+	 * maximum number of extra mutations tried for turning a clone into a new
+	 * genotype
+	 */
+	private static final int MAX_DUPLICATE_MUTATIONS = 8;
+
+	/**
+	 * the population at the end of the last generation
+	 */
+	protected Population currentPopulation;
+
 	/**
 	 * Creates a new solution which is empty, i.e., does not contain any
 	 * candidate solution element.
@@ -154,9 +390,355 @@ public abstract class AbstractGA<G extends Number, F> {
 		this.popSize = popSize;
 		this.chromosomeSize = this.ObjFunction.getDomainSize();
 		this.mutationRate = mutationRate;
+		this.initialMutationRate = mutationRate;
 		this.adaptiveMutation = adaptiveMutation;
 		this.crosspointChoice = crosspointChoice;
 		this.sus = sus;
+		this.termination = new AnyOf(new MaxGenerations(generations), new StallTime(5, TimeUnit.MINUTES), new WallClockDeadline(30, TimeUnit.MINUTES));
+	}
+
+	/**
+	 * Replaces the termination criterion. By default the GA stops after
+	 * {@link #generations} generations, 5 minutes without improvement or 30
+	 * minutes in total, whichever comes first.
+	 * 
+	 * @param termination
+	 *            The new termination criterion.
+	 */
+	public void setTermination(TerminationCriterion termination) {
+		this.termination = termination;
+		this.defaultTermination = false;
+	}
+
+	/**
+	 * Enables partial restarts of a stagnated population. The population is
+	 * restarted when the best solution has not improved for stall
+	 * generations, or sooner, when it has not improved for
+	 * {@link #ENTROPY_CHECK_INTERVAL} generations and its entropy (see
+	 * {@link #getPopulationEntropy()}) has fallen below minEntropy, i.e. it
+	 * has converged to near-clones. A restart keeps the best distinct
+	 * chromosomes, rebuilds the others, either at random or by heavy mutation
+	 * of the kept ones, and resets the mutation rate to its initial value.
+	 * 
+	 * As stagnation no longer means the search is over, enabling restarts
+	 * also drops the 5 minutes without improvement from the default
+	 * termination criterion (a criterion set by
+	 * {@link #setTermination(TerminationCriterion)} is kept as is).
+	 * 
+	 * @param stall
+	 *            Generations without improvement before a restart, or 0 for
+	 *            disabling restarts.
+	 * @param minEntropy
+	 *            Entropy below which a stagnated population is restarted
+	 *            early, or 0 for restarting only after stall generations.
+	 * @param elites
+	 *            Number of best distinct chromosomes kept.
+	 * @param perturbation
+	 *            Per-locus mutation probability of the chromosomes rebuilt
+	 *            around the elites, or 0 for rebuilding them at random.
+	 */
+	public void setRestarts(int stall, double minEntropy, int elites, double perturbation) {
+		this.restartStall = stall;
+		this.restartEntropy = minEntropy;
+		this.restartElites = Math.max(1, elites);
+		this.restartPerturbation = perturbation;
+		if (defaultTermination && stall > 0)
+			this.termination = new AnyOf(new MaxGenerations(generations), new WallClockDeadline(30, TimeUnit.MINUTES));
+	}
+
+	/**
+	 * @return The number of restarts in the last run, including the part of
+	 *         it before a {@link #resume(Path)}.
+	 */
+	public int getRestarts() {
+		return restarts;
+	}
+
+	/**
+	 * @return The termination criterion in use.
+	 */
+	public TerminationCriterion getTermination() {
+		return termination;
+	}
+
+	/**
+	 * @return The progress of the current (or last) run.
+	 */
+	public SearchProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * @return The objective function being optimized.
+	 */
+	public Evaluator<F> getObjFunction() {
+		return ObjFunction;
+	}
+
+	/**
+	 * Reseeds the random number generator of this GA, so that independent
+	 * runs of the same configuration can be made reproducible.
+	 * 
+	 * @param seed
+	 *            The new seed.
+	 */
+	public void setSeed(long seed) {
+		rng.setSeed(seed);
+	}
+
+	/**
+	 * Enables or disables the rejection of duplicate genomes. When enabled,
+	 * each offspring whose genome already appears in the new population (or
+	 * is the elite chromosome) receives extra random mutations until it is a
+	 * new genotype, so that no evaluation is spent on a clone.
+	 * 
+	 * @param duplicateRejection
+	 *            true for rejecting duplicates.
+	 */
+	public void setDuplicateRejection(boolean duplicateRejection) {
+		this.duplicateRejection = duplicateRejection;
+	}
+
+	/**
+	 * Enables or disables deterministic crowding. When enabled, parents are
+	 * paired at random, and each offspring competes only against its closest
+	 * parent (in Hamming distance) for a place in the population. This keeps
+	 * distinct niches alive much longer than global elitism does.
+	 * 
+	 * @param crowding
+	 *            true for using deterministic crowding.
+	 */
+	public void setCrowding(boolean crowding) {
+		this.crowding = crowding;
+	}
+
+	/**
+	 * Enables surrogate pre-screening of the offsprings. The fitness of an
+	 * offspring is estimated from its nearest parent: the fitness of the
+	 * parent plus the sum of the deltas ({@link #flipDelta(long[], int)}) of
+	 * flipping, one at a time in the parent, a sample of the loci where they
+	 * differ, scaled to all of them. The estimates are calibrated online
+	 * against the exact fitness of the evaluated offsprings (see
+	 * {@link Surrogate}). An offspring whose calibrated estimate, plus
+	 * {@link #SCREENING_MARGIN} residual deviations, is below the given
+	 * quantile of the fitness of the population is discarded without an
+	 * exact evaluation, and its nearest parent survives in its place. A
+	 * parent survives at most once per generation, and with duplicate
+	 * rejection only if no offspring has its genome; otherwise the other
+	 * parent is tried, and then the offspring is evaluated after all. A
+	 * fraction {@link #SCREENING_AUDIT} of the offsprings is always evaluated.
+	 * 
+	 * @param quantile
+	 *            Quantile of the fitness of the population that offsprings
+	 *            must be expected to reach, in [0, 1], or 0 for disabling
+	 *            screening.
+	 * @param sample
+	 *            Number of loci sampled per estimate.
+	 * @throws UnsupportedOperationException
+	 *             If screening is enabled and the GA does not implement
+	 *             {@link #flipDelta(long[], int)}.
+	 */
+	public void setScreening(double quantile, int sample) {
+		if (quantile > 0 && Double.isNaN(flipDelta(new long[PackedBits.words(chromosomeSize)], 0)))
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " does not compute flip deltas");
+		this.screeningQuantile = quantile;
+		this.screeningSample = Math.max(1, sample);
+		this.surrogate = new Surrogate();
+	}
+
+	/**
+	 * @return The number of offsprings discarded by screening in the last
+	 *         run, including its part before a {@link #resume(Path)}.
+	 */
+	public long getScreenedOffsprings() {
+		return screened;
+	}
+
+	/**
+	 * Enables partition crossover. For each pair of parents, the first
+	 * offspring is replaced by the child given by
+	 * {@link #partitionCrossover(Chromosome, Chromosome)}, when there is one,
+	 * while the second offspring is still recombined by random crosspoints.
+	 * The child of partition crossover is not mutated, so that its fitness
+	 * stays known.
+	 * 
+	 * @param partitionCrossover
+	 *            true for using partition crossover.
+	 */
+	public void setPartitionCrossover(boolean partitionCrossover) {
+		this.partitionCrossover = partitionCrossover;
+	}
+
+	/**
+	 * Makes each run compute an upper bound on the fitness, given by
+	 * {@link #upperBound()}, so that the progress reports the optimality gap
+	 * and the run stops once the gap closes. It is needed by
+	 * {@link metaheuristics.termination.OptimalityGap} criteria. The bound is
+	 * computed at the start of the run, not by the constructor, as it may
+	 * cost more than the run itself on large instances.
+	 * 
+	 * @param bounding
+	 *            true for computing the bound.
+	 */
+	public void setBounding(boolean bounding) {
+		this.bounding = bounding;
+	}
+
+	/**
+	 * @return An upper bound on the fitness of any chromosome, or positive
+	 *         infinity if unknown, the default.
+	 */
+	protected double upperBound() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Enables the linkage tree GA (LTGA) mode [1]. Each generation learns a
+	 * {@link LinkageTree} from the population, then improves every chromosome
+	 * by gene-pool optimal mixing: for each cluster of the tree, in random
+	 * order, the loci of the cluster are copied from a random donor of the
+	 * population, and the copy is kept if it does not decrease the fitness.
+	 * A chromosome that no copy improved then takes, from the best
+	 * chromosome, the first cluster that improves it (forced improvement).
+	 * When the population has converged to clones, which have nothing to
+	 * mix, all of them but one are mutated instead.
+	 * 
+	 * The fitness of a copy is computed incrementally by
+	 * {@link #flipDelta(long[], int)}, and a copy that the objective function
+	 * would have to make viable is rejected. A copy of k loci counts as k / n
+	 * evaluations, n being the size of the chromosome, as its k flip deltas
+	 * take O(k n) operations against O(n^2) for an evaluation. Since
+	 * chromosomes never get worse, the mode replaces selection, crossover,
+	 * mutation and replacement, together with the options acting on them
+	 * (crowding, duplicate rejection, screening and partition crossover).
+	 * 
+	 * [1] Thierens, Bosman. Optimal mixing evolutionary algorithms. GECCO
+	 * 2011.
+	 * 
+	 * @param linkageTree
+	 *            true for using the LTGA mode.
+	 * @throws UnsupportedOperationException
+	 *             If the GA does not implement
+	 *             {@link #flipDelta(long[], int)}.
+	 */
+	public void setLinkageTree(boolean linkageTree) {
+		if (linkageTree && Double.isNaN(flipDelta(new long[PackedBits.words(chromosomeSize)], 0)))
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " does not compute flip deltas");
+		this.linkageTree = linkageTree;
+	}
+
+	/**
+	 * Remembers the best solutions across runs in a {@link SolutionStore}, the
+	 * instance being identified by {@link #instanceKey()}. At the end of each
+	 * run, the best distinct chromosomes of the population are merged into
+	 * the store. With warm start, the initial population also starts from the
+	 * stored solutions, which take the place of random chromosomes.
+	 * 
+	 * @param store
+	 *            The store, or null for disabling it.
+	 * @param warmStart
+	 *            Whether to seed the initial population from the store.
+	 * @throws UnsupportedOperationException
+	 *             If the GA does not identify its instances.
+	 */
+	public void setSolutionStore(SolutionStore store, boolean warmStart) {
+		String key = store == null ? null : instanceKey();
+		if (store != null && key == null)
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " does not identify its instances");
+		this.store = store;
+		this.storeKey = key;
+		this.warmStart = warmStart;
+	}
+
+	/**
+	 * @return A key identifying the instance being solved by its content, for
+	 *         a {@link SolutionStore}, or null if not supported, the default.
+	 */
+	protected String instanceKey() {
+		return null;
+	}
+
+	/**
+	 * Shares the best solution with other GAs running concurrently, as in a
+	 * {@link metaheuristics.portfolio.Portfolio}. Every improvement of the best
+	 * solution is offered to the shared best. When the GA has not improved
+	 * for lag generations and the shared best is better than its own, the
+	 * shared best replaces the worst chromosome of the population. The other
+	 * GAs must encode solutions the same way.
+	 * 
+	 * @param shared
+	 *            The shared best solution, or null for running alone.
+	 * @param lag
+	 *            Generations without improvement before taking the shared
+	 *            best, or 0 for never taking it.
+	 */
+	public void setSharedBest(SharedBest<F> shared, int lag) {
+		this.sharedBest = shared;
+		this.injectionLag = lag;
+	}
+
+	/**
+	 * @return The entropy of the current population, in [0, 1], as defined by
+	 *         {@link Diversity#entropy(long[][], int)}.
+	 */
+	public double getPopulationEntropy() {
+		if (currentPopulation == null)
+			return 0.0;
+		long[][] genomes = new long[currentPopulation.size()][];
+		for (int i = 0; i < genomes.length; i++)
+			genomes[i] = currentPopulation.get(i).pack();
+		return Diversity.entropy(genomes, chromosomeSize);
+	}
+
+	/**
+	 * Enables path relinking between elite chromosomes. The GA keeps a pool
+	 * of the best distinct genomes found so far, and every interval
+	 * generations it walks between two of them, in both directions, with
+	 * {@link #relink(long[], double, long[])}. The best solution along each walk
+	 * replaces the worst chromosome of the population, if it is better.
+	 * 
+	 * @param eliteSize
+	 *            Maximum number of genomes in the elite pool, or 0 for
+	 *            disabling path relinking.
+	 * @param interval
+	 *            Number of generations between two relinkings.
+	 */
+	public void setPathRelinking(int eliteSize, int interval) {
+		this.eliteSize = eliteSize;
+		this.relinkingInterval = Math.max(1, interval);
+		elite.clear();
+		eliteFitness.clear();
+	}
+
+	/**
+	 * Seeds part of the initial population with chromosomes built by
+	 * {@link #constructChromosome(Random)}, such as randomized greedy
+	 * constructions, instead of random ones. The rest of the population stays
+	 * random to keep diversity. The constructions run concurrently in the
+	 * given pool, each with its own generator drawn from {@link #rng}, so the
+	 * initial population does not depend on the scheduling of the threads.
+	 * 
+	 * @param fraction
+	 *            Fraction of the population to be constructed, in [0, 1].
+	 * @param pool
+	 *            The pool running the constructions, or null for the common
+	 *            fork-join pool.
+	 */
+	public void setSeeding(double fraction, ExecutorService pool) {
+		this.seedFraction = fraction;
+		this.seedPool = pool;
+	}
+
+	/**
+	 * Enables periodic checkpoints of the run, which can be continued later
+	 * with {@link #resume(Path)}. A last checkpoint is written when the run
+	 * finishes.
+	 * 
+	 * @param checkpointer
+	 *            The checkpointer, or null for disabling checkpoints.
+	 */
+	public void setCheckpointer(Checkpointer checkpointer) {
+		this.checkpointer = checkpointer;
 	}
 
 	/**
@@ -169,40 +751,119 @@ public abstract class AbstractGA<G extends Number, F> {
 	 */
 	public Solution<F> solve() {
 
+		progress.start();
+		screened = 0;
+		lastRestartGeneration = progress.getGeneration();
+		restarts = 0;
+		elite.clear();
+		eliteFitness.clear();
+		copies = 0;
+		mixingWork = 0;
+
 		/* starts the initial population */
 		Population population = initializePopulation();
+		evaluate(population);
 
+		currentPopulation = population;
 		bestChromosome = getBestChromosome(population);
+		bestSolChromosome = bestChromosome;
 		bestSol = decode(bestChromosome);
+		progress.improved(bestSol.cost);
 		// System.out.println("(Gen. " + 0 + ") BestSol = " + bestSol);
 
+		return evolve(population);
+	}
+
+	/**
+	 * Continues a run from a checkpoint written by a {@link Checkpointer}. The
+	 * GA must have been constructed with the same objective function and
+	 * population size as the checkpointed one. Given the same termination
+	 * criterion, the resumed run evolves exactly as the original run would
+	 * have, with the exception of wall-clock based criteria.
+	 * 
+	 * @param file
+	 *            The checkpoint file.
+	 * @return The best feasible solution obtained throughout all iterations.
+	 * @throws IOException
+	 *             If the checkpoint cannot be read.
+	 */
+	public Solution<F> resume(Path file) throws IOException {
+
+		Population population = currentPopulation = restore(Checkpoint.read(file));
+
+		return evolve(population);
+	}
+
+	/**
+	 * The generational loop of {@link #solve()}, starting from a population
+	 * whose best chromosome and solution are already known.
+	 * 
+	 * @param population
+	 *            The current population.
+	 * @return The best feasible solution obtained throughout all iterations.
+	 */
+	protected Solution<F> evolve(Population population) {
+
+		progress.setUpperBound(bounding ? upperBound() : Double.POSITIVE_INFINITY);
+		if (checkpointer != null)
+			checkpointer.start(progress);
+		if (sharedBest != null)
+			sharedBest.offer(bestSolChromosome.pack(), fitness(bestSolChromosome), bestSol, this);
+
 		/*
-		 * enters the main loop and repeats until a given number of generations
+		 * enters the main loop and repeats until the termination criterion is
+		 * met, or the best solution is proven optimal
 		 */
-		
-		long startTime = System.currentTimeMillis();
-		long improvedTime = System.currentTimeMillis();
+		while (!progress.isGapClosed() && !termination.isMet(progress)) {
 
-		for (int g = 1; System.currentTimeMillis() - improvedTime < 5 * 60 * 1000 && System.currentTimeMillis() - startTime < 30 * 60 * 1000 && g <= generations; g++) {
+			progress.nextGeneration();
+			long g = progress.getGeneration();
 
-			Population parents = selectParents(population);
+			evaluate(population);
 
-			Population offsprings = crossover(parents);
+			Population newpopulation;
+			if (linkageTree) {
+				newpopulation = optimalMixing(population);
+			} else {
+				Population parents = crowding ? pairParents(population) : selectParents(population);
 
-			Population mutants = mutate(offsprings);
+				Population offsprings = crossover(parents);
 
-			Population newpopulation = selectPopulation(mutants);
+				Population mutants = mutate(offsprings);
 
-			population = newpopulation;
+				if (duplicateRejection)
+					rejectDuplicates(mutants);
+
+				if (screeningQuantile > 0)
+					screen(population, parents, mutants);
+
+				evaluate(mutants);
+
+				newpopulation = crowding ? crowdingReplacement(parents, mutants) : selectPopulation(mutants);
+			}
+
+			population = currentPopulation = newpopulation;
+
+			if (eliteSize > 0) {
+				updateElite(population);
+				if (g % relinkingInterval == 0)
+					relinkElite(population);
+			}
+
+			if (sharedBest != null && injectionLag > 0 && progress.getGenerationsSinceImprovement() >= injectionLag)
+				takeSharedBest(population);
 
 			bestChromosome = getBestChromosome(population);
 
 			if (fitness(bestChromosome) > bestSol.cost) {
+				bestSolChromosome = bestChromosome;
 				bestSol = decode(bestChromosome);
-				improvedTime = System.currentTimeMillis();
+				progress.improved(bestSol.cost);
+				if (sharedBest != null)
+					sharedBest.offer(bestChromosome.pack(), fitness(bestChromosome), bestSol, this);
 
 				if (verbose)
-					System.out.println("(Gen. " + g + " mr: " + this.mutationRate +") BestSol = " + bestSol);
+					System.out.println("(Gen. " + g + " mr: " + this.mutationRate + " entropy: " + getPopulationEntropy() + " gap: " + progress.getGap() + ") BestSol = " + bestSol);
 			}
 			
 			if (this.adaptiveMutation)
@@ -219,13 +880,592 @@ public abstract class AbstractGA<G extends Number, F> {
 				
 //				System.out.println("Mutation rate: " + this.mutationRate);
 			}
+
+			if (restartStall > 0 && isStagnant(g)) {
+				population = currentPopulation = restart(population);
+				lastRestartGeneration = g;
+				restarts++;
+
+				if (verbose)
+					System.out.println("(Gen. " + g + ") Restart " + restarts + " after " + progress.getGenerationsSinceImprovement() + " generations without improvement");
+			}
+
+			if (checkpointer != null && checkpointer.isDue(progress))
+				checkpointer.save(progress, snapshot(population));
+		}
+
+		if (checkpointer != null) {
+			checkpointer.save(progress, snapshot(population));
+			try {
+				checkpointer.close();
+			} catch (IOException e) {
+				System.err.println("Checkpoint failed: " + e.getMessage());
+			}
+		}
+
+		if (store != null) {
+			List<SolutionStore.Entry> entries = new ArrayList<SolutionStore.Entry>();
+			entries.add(new SolutionStore.Entry(bestSolChromosome.pack(), fitness(bestSolChromosome)));
+			for (Chromosome c : population)
+				entries.add(new SolutionStore.Entry(c.pack(), fitness(c)));
+			try {
+				store.merge(storeKey, chromosomeSize, entries);
+			} catch (IOException e) {
+				System.err.println("Solution store failed: " + e.getMessage());
+			}
 		}
 
 		return bestSol;
 	}
 
 	/**
-	 * Randomly generates an initial population to start the GA.
+	 * Takes a snapshot of the state of the run, between two generations.
+	 * 
+	 * @param population
+	 *            The current population.
+	 * @return The checkpoint of the run.
+	 */
+	protected Checkpoint snapshot(Population population) {
+
+		Checkpoint cp = new Checkpoint();
+		cp.chromosomeSize = chromosomeSize;
+		cp.popSize = population.size();
+		cp.generation = progress.getGeneration();
+		cp.evaluations = progress.getEvaluations();
+		cp.elapsedNanos = progress.getElapsedNanos();
+		cp.lastImprovementGeneration = progress.getGeneration() - progress.getGenerationsSinceImprovement();
+		cp.nanosSinceImprovement = progress.getNanosSinceImprovement();
+		cp.bestCost = progress.getBestCost();
+		cp.mutationRate = mutationRate;
+		cp.rngState = rng.getState();
+		cp.bestSolBits = bestSolChromosome.pack();
+		cp.bestSolCost = bestSol.cost;
+		cp.fitness = new double[cp.popSize];
+		cp.genomes = new long[cp.popSize][];
+		for (int i = 0; i < cp.popSize; i++) {
+			Chromosome c = population.get(i);
+			if (c == bestChromosome)
+				cp.bestIndex = i;
+			cp.fitness[i] = c.fitness == null ? Double.NaN : c.fitness;
+			cp.genomes[i] = c.pack();
+		}
+		if (surrogate != null) {
+			cp.surrogateSums = surrogate.getSums();
+			cp.surrogateSamples = surrogate.getSamples();
+		}
+		cp.screened = screened;
+		cp.lastRestartGeneration = lastRestartGeneration;
+		cp.restarts = restarts;
+		cp.eliteGenomes = elite.toArray(new long[elite.size()][]);
+		cp.eliteFitness = new double[elite.size()];
+		for (int e = 0; e < elite.size(); e++)
+			cp.eliteFitness[e] = eliteFitness.get(e);
+		cp.copies = copies;
+		cp.mixingWork = mixingWork;
+
+		return cp;
+	}
+
+	/**
+	 * Restores the state of a run from a checkpoint.
+	 * 
+	 * @param cp
+	 *            The checkpoint being restored.
+	 * @return The population of the checkpointed run.
+	 */
+	protected Population restore(Checkpoint cp) {
+
+		if (cp.chromosomeSize != chromosomeSize || cp.popSize != popSize)
+			throw new IllegalArgumentException("checkpoint of a run with chromosome size " + cp.chromosomeSize + " and population size " + cp.popSize + " cannot be resumed by this GA");
+
+		Population population = new Population();
+		for (int i = 0; i < cp.popSize; i++) {
+			Chromosome c = unpack(cp.genomes[i]);
+			c.fitness = Double.isNaN(cp.fitness[i]) ? null : cp.fitness[i];
+			population.add(c);
+		}
+		bestChromosome = population.get(cp.bestIndex);
+
+		/* the best solution was viable when saved, so decoding it draws no random numbers */
+		bestSolChromosome = unpack(cp.bestSolBits);
+		bestSol = decode(bestSolChromosome);
+		bestSol.cost = cp.bestSolCost;
+
+		mutationRate = cp.mutationRate;
+		rng.setState(cp.rngState);
+		if (surrogate != null)
+			surrogate.restore(cp.surrogateSums, cp.surrogateSamples);
+		screened = cp.screened;
+		lastRestartGeneration = cp.lastRestartGeneration;
+		restarts = cp.restarts;
+		elite.clear();
+		eliteFitness.clear();
+		for (int e = 0; e < cp.eliteGenomes.length; e++) {
+			elite.add(cp.eliteGenomes[e]);
+			eliteFitness.add(cp.eliteFitness[e]);
+		}
+		copies = cp.copies;
+		mixingWork = cp.mixingWork;
+		progress.resume(cp.generation, cp.evaluations, cp.bestCost, cp.lastImprovementGeneration, cp.elapsedNanos, cp.nanosSinceImprovement);
+
+		return population;
+	}
+
+	/**
+	 * Builds a chromosome from a packed binary genome.
+	 * 
+	 * @param bits
+	 *            The packed genome.
+	 * @return The corresponding chromosome, not yet evaluated.
+	 */
+	protected Chromosome unpack(long[] bits) {
+		Chromosome chromosome = new Chromosome();
+		for (int locus = 0; locus < chromosomeSize; locus++) {
+			chromosome.add(allele(PackedBits.get(bits, locus) ? 1 : 0));
+		}
+		return chromosome;
+	}
+
+	/**
+	 * Maps a bit of a packed genome into an allele. The default implementation
+	 * assumes binary Integer alleles, as used by the QBF solvers; GAs with a
+	 * different genotype must override it before using checkpoints.
+	 * 
+	 * @param bit
+	 *            The value of the bit, 0 or 1.
+	 * @return The corresponding allele.
+	 */
+	@SuppressWarnings("unchecked")
+	protected G allele(int bit) {
+		return (G) Integer.valueOf(bit);
+	}
+
+	/**
+	 * Builds a chromosome for seeding the initial population, see
+	 * {@link #setSeeding(double, ExecutorService)}. It is called concurrently
+	 * from several threads, so it must only read the state of the GA, and draw
+	 * random numbers from the given generator alone.
+	 * 
+	 * @param random
+	 *            The generator of this construction.
+	 * @return A new chromosome, or null if this GA has no construction.
+	 */
+	protected Chromosome constructChromosome(Random random) {
+		return null;
+	}
+
+	/**
+	 * @return Whether the population has stagnated, see
+	 *         {@link #setRestarts(int, double, int, double)}.
+	 */
+	private boolean isStagnant(long g) {
+		long stalled = Math.min(g - lastRestartGeneration, progress.getGenerationsSinceImprovement());
+		if (stalled >= restartStall)
+			return true;
+		return restartEntropy > 0 && stalled >= ENTROPY_CHECK_INTERVAL && g % ENTROPY_CHECK_INTERVAL == 0 && getPopulationEntropy() < restartEntropy;
+	}
+
+	/**
+	 * Keeps the best distinct chromosomes of a stagnated population and
+	 * rebuilds the others.
+	 * 
+	 * @param population
+	 *            The stagnated population.
+	 * @return The restarted population.
+	 */
+	protected Population restart(Population population) {
+
+		Population sorted = new Population();
+		sorted.addAll(population);
+		sorted.sort((a, b) -> Double.compare(fitness(b), fitness(a)));
+
+		Population restarted = new Population();
+		HashSet<Diversity.Key> kept = new HashSet<Diversity.Key>();
+		for (Chromosome c : sorted) {
+			if (restarted.size() == restartElites)
+				break;
+			if (kept.add(new Diversity.Key(c.pack())))
+				restarted.add(c);
+		}
+
+		int elites = restarted.size();
+		while (restarted.size() < popSize) {
+			if (restartPerturbation > 0) {
+				Chromosome c = new Chromosome();
+				c.addAll(restarted.get(rng.nextInt(elites)));
+				for (int locus = 0; locus < chromosomeSize; locus++)
+					if (rng.nextDouble() < restartPerturbation)
+						mutateGene(c, locus);
+				restarted.add(c);
+			} else {
+				restarted.add(generateRandomChromosome());
+			}
+		}
+
+		mutationRate = initialMutationRate;
+		return restarted;
+	}
+
+	/**
+	 * Recombines two parents by a gray-box crossover that uses the structure
+	 * of the problem, such as partition crossover, see
+	 * {@link #setPartitionCrossover(boolean)}. The child should have its
+	 * fitness set when known.
+	 * 
+	 * @param parent1
+	 *            The first parent.
+	 * @param parent2
+	 *            The second parent.
+	 * @return The child, or null if the parents have no better child than
+	 *         the usual crossover, the default.
+	 */
+	protected Chromosome partitionCrossover(Chromosome parent1, Chromosome parent2) {
+		return null;
+	}
+
+	/**
+	 * Evaluates the chromosomes of a population that are not evaluated yet.
+	 * It is called on the initial population, on the population at the start
+	 * of each generation and on the offsprings before replacement, so that a
+	 * GA whose evaluations are cheaper together than one by one can make
+	 * them in a batch. By default it does nothing, chromosomes being
+	 * evaluated lazily by {@link #fitness(Chromosome)} when needed.
+	 * 
+	 * @param population
+	 *            The population, whose chromosomes get their fitness set.
+	 */
+	protected void evaluate(Population population) {
+	}
+
+	/**
+	 * Computes the variation of the fitness when a locus of a genome is
+	 * flipped, used for estimating the fitness of offsprings, see
+	 * {@link #setScreening(double, int)}, and for optimal mixing, see
+	 * {@link #setLinkageTree(boolean)}, where it must be exact whenever the
+	 * genome and its flip are viable.
+	 * 
+	 * @param bits
+	 *            The packed genome.
+	 * @param locus
+	 *            The locus flipped.
+	 * @return The variation of the fitness, or NaN if not supported, the
+	 *         default.
+	 */
+	protected double flipDelta(long[] bits, int locus) {
+		return Double.NaN;
+	}
+
+	/**
+	 * Makes a generation of the LTGA mode, see
+	 * {@link #setLinkageTree(boolean)}.
+	 * 
+	 * @param population
+	 *            The current population, which donates the clusters.
+	 * @return The population of the mixed chromosomes.
+	 */
+	protected Population optimalMixing(Population population) {
+
+		int m = population.size();
+		double[] values = new double[m];
+		long[][] genomes = new long[m][];
+		for (int i = 0; i < m; i++) {
+			values[i] = fitness(population.get(i));
+			genomes[i] = population.get(i).pack();
+		}
+		long[][] clusters = new LinkageTree(genomes, chromosomeSize, rng).masks();
+		long[] best = getBestChromosome(population).pack();
+
+		int[] order = new int[clusters.length];
+		for (int c = 0; c < order.length; c++)
+			order[c] = c;
+		int[] flips = new int[chromosomeSize];
+		long tried = copies;
+
+		Population mixed = new Population();
+		for (int i = 0; i < m; i++) {
+			long[] bits = genomes[i].clone();
+			double value = values[i];
+
+			for (int c = order.length - 1; c > 0; c--) {
+				int r = rng.nextInt(c + 1);
+				int swap = order[c];
+				order[c] = order[r];
+				order[r] = swap;
+			}
+			boolean improved = false;
+			for (int c : order) {
+				double delta = mix(bits, genomes[rng.nextInt(m)], clusters[c], flips, false);
+				if (!Double.isNaN(delta)) {
+					value += delta;
+					improved |= delta > 0;
+				}
+			}
+			for (int k = 0; !improved && k < order.length; k++) {
+				double delta = mix(bits, best, clusters[order[k]], flips, true);
+				if (!Double.isNaN(delta)) {
+					value += delta;
+					improved = true;
+				}
+			}
+
+			Chromosome chromosome = unpack(bits);
+			chromosome.fitness = value;
+			mixed.add(chromosome);
+		}
+
+		/* clones have nothing to mix, so all but one are mutated instead */
+		if (copies == tried) {
+			for (Chromosome c : mixed.subList(1, m))
+				for (int locus = 0; locus < chromosomeSize; locus++)
+					if (rng.nextDouble() < mutationRate)
+						mutateGene(c, locus);
+		}
+
+		return mixed;
+	}
+
+	/**
+	 * Copies the loci of a cluster from a donor into a genome, keeping the
+	 * copy if it is viable and does not decrease the fitness.
+	 * 
+	 * @param bits
+	 *            The genome, modified in place.
+	 * @param donor
+	 *            The donor.
+	 * @param cluster
+	 *            The mask of the loci copied.
+	 * @param flips
+	 *            Scratch array of chromosomeSize loci.
+	 * @param strict
+	 *            Whether the copy must increase the fitness.
+	 * @return The variation of the fitness, or NaN if the genome did not
+	 *         change.
+	 */
+	private double mix(long[] bits, long[] donor, long[] cluster, int[] flips, boolean strict) {
+
+		int count = 0;
+		for (int w = 0; w < bits.length; w++)
+			for (long differ = (bits[w] ^ donor[w]) & cluster[w]; differ != 0; differ &= differ - 1)
+				flips[count++] = (w << 6) + Long.numberOfTrailingZeros(differ);
+		if (count == 0)
+			return Double.NaN;
+
+		double delta = 0;
+		for (int f = 0; f < count; f++) {
+			delta += flipDelta(bits, flips[f]);
+			PackedBits.flip(bits, flips[f]);
+		}
+		copies++;
+		mixingWork += (double) count / chromosomeSize;
+		if (mixingWork >= 1) {
+			progress.countEvaluations((long) mixingWork);
+			mixingWork -= (long) mixingWork;
+		}
+		if (strict ? delta > 0 : delta >= 0) {
+			long[] viable = bits.clone();
+			ObjFunction.makeViable(viable);
+			if (Arrays.equals(viable, bits))
+				return delta;
+		}
+
+		for (int f = 0; f < count; f++)
+			PackedBits.flip(bits, flips[f]);
+		return Double.NaN;
+	}
+
+	/**
+	 * Discards the offsprings not expected to reach the screening threshold,
+	 * as described in {@link #setScreening(double, int)}, and evaluates the
+	 * others.
+	 * 
+	 * @param population
+	 *            The current population.
+	 * @param parents
+	 *            The parents, two by two.
+	 * @param offsprings
+	 *            The offsprings of the parents, two by two, modified in
+	 *            place.
+	 */
+	private void screen(Population population, Population parents, Population offsprings) {
+
+		double[] values = new double[population.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = fitness(population.get(i));
+		Arrays.sort(values);
+		double threshold = values[Math.min(values.length - 1, (int) (screeningQuantile * values.length))];
+
+		/* the parents surviving in place of offsprings, and the genomes kept when rejecting duplicates */
+		Set<Chromosome> survivors = Collections.newSetFromMap(new IdentityHashMap<Chromosome, Boolean>());
+		if (!crowding)
+			survivors.add(bestChromosome);
+		HashSet<Diversity.Key> kept = null;
+		if (duplicateRejection) {
+			kept = new HashSet<Diversity.Key>();
+			for (Chromosome c : offsprings)
+				kept.add(new Diversity.Key(c.pack()));
+			if (!crowding && bestChromosome != null)
+				kept.add(new Diversity.Key(bestChromosome.pack()));
+		}
+
+		int[] diff = new int[chromosomeSize];
+		for (int i = 0; i < offsprings.size(); i++) {
+
+			Chromosome child = offsprings.get(i);
+			if (child.fitness != null)
+				continue;
+
+			long[] bits = child.pack();
+			Chromosome parent = parents.get(i & ~1);
+			long[] parentBits = parent.pack();
+			Chromosome other = parents.get(i | 1);
+			long[] otherBits = other.pack();
+			if (PackedBits.hamming(otherBits, bits) < PackedBits.hamming(parentBits, bits)) {
+				Chromosome nearest = other;
+				other = parent;
+				parent = nearest;
+				long[] nearestBits = otherBits;
+				otherBits = parentBits;
+				parentBits = nearestBits;
+			}
+
+			int d = 0;
+			for (int w = 0; w < bits.length; w++)
+				for (long word = bits[w] ^ parentBits[w]; word != 0; word &= word - 1)
+					diff[d++] = (w << 6) + Long.numberOfTrailingZeros(word);
+			if (d == 0) {
+				child.fitness = fitness(parent);
+				continue;
+			}
+
+			/* a partial Fisher-Yates shuffle picks the sampled loci */
+			int sample = Math.min(d, screeningSample);
+			double delta = 0;
+			for (int r = 0; r < sample; r++) {
+				int pick = r + rng.nextInt(d - r);
+				int locus = diff[pick];
+				diff[pick] = diff[r];
+				diff[r] = locus;
+				delta += flipDelta(parentBits, locus);
+			}
+			double estimate = fitness(parent) + delta * d / sample;
+
+			if (surrogate.isCalibrated() && rng.nextDouble() >= SCREENING_AUDIT && surrogate.predict(estimate) + SCREENING_MARGIN * surrogate.residualDeviation() < threshold) {
+				Diversity.Key key = new Diversity.Key(bits);
+				if (kept != null)
+					kept.remove(key);
+				Chromosome survivor = survives(parent, parentBits, survivors, kept) ? parent : survives(other, otherBits, survivors, kept) ? other : null;
+				if (survivor != null) {
+					offsprings.set(i, survivor);
+					screened++;
+					continue;
+				}
+				if (kept != null)
+					kept.add(key);
+			}
+			surrogate.update(estimate, fitness(child));
+		}
+	}
+
+	/**
+	 * Lets a parent survive in place of a screened offspring, unless it
+	 * already survives or, when rejecting duplicates, its genome is kept.
+	 */
+	private boolean survives(Chromosome parent, long[] bits, Set<Chromosome> survivors, HashSet<Diversity.Key> kept) {
+		if (survivors.contains(parent) || kept != null && !kept.add(new Diversity.Key(bits)))
+			return false;
+		survivors.add(parent);
+		return true;
+	}
+
+	/**
+	 * Walks from a genome to another, as in path relinking, see
+	 * {@link #setPathRelinking(int, int)}.
+	 * 
+	 * @param source
+	 *            The packed starting genome.
+	 * @param fitness
+	 *            The fitness of the starting genome.
+	 * @param target
+	 *            The packed guiding genome.
+	 * @return The best chromosome strictly between the two, with its fitness
+	 *         set when known, or null if this GA has no path relinking or
+	 *         there is none.
+	 */
+	protected Chromosome relink(long[] source, double fitness, long[] target) {
+		return null;
+	}
+
+	/**
+	 * Adds the chromosomes of the population that are better than the worst
+	 * elite genome, and not in the pool yet, to the elite pool.
+	 */
+	private void updateElite(Population population) {
+		for (Chromosome c : population) {
+			double f = fitness(c);
+			if (elite.size() == eliteSize && f <= eliteFitness.get(eliteSize - 1))
+				continue;
+			long[] bits = c.pack();
+			int pos = 0;
+			boolean known = false;
+			for (int e = 0; e < elite.size() && !known; e++) {
+				known = Arrays.equals(elite.get(e), bits);
+				if (eliteFitness.get(e) >= f)
+					pos = e + 1;
+			}
+			if (known)
+				continue;
+			elite.add(pos, bits);
+			eliteFitness.add(pos, f);
+			if (elite.size() > eliteSize) {
+				elite.remove(eliteSize);
+				eliteFitness.remove(eliteSize);
+			}
+		}
+	}
+
+	/**
+	 * Relinks two random elite genomes in both directions, and puts the best
+	 * intermediate genomes in place of the worst chromosomes of the
+	 * population, when they are better.
+	 */
+	private void relinkElite(Population population) {
+		if (elite.size() < 2)
+			return;
+		int a = rng.nextInt(elite.size());
+		int b = rng.nextInt(elite.size() - 1);
+		if (b >= a)
+			b++;
+		for (Chromosome c : Arrays.asList(relink(elite.get(a), eliteFitness.get(a), elite.get(b)), relink(elite.get(b), eliteFitness.get(b), elite.get(a)))) {
+			if (c == null)
+				continue;
+			int worst = 0;
+			for (int i = 1; i < population.size(); i++)
+				if (fitness(population.get(i)) < fitness(population.get(worst)))
+					worst = i;
+			if (fitness(c) > fitness(population.get(worst)))
+				population.set(worst, c);
+		}
+	}
+
+	/**
+	 * Replaces the worst chromosome of the population with the shared best
+	 * solution, if it is better than the best solution of this GA.
+	 */
+	private void takeSharedBest(Population population) {
+		SharedBest.Incumbent<F> incumbent = sharedBest.get();
+		if (incumbent == null || incumbent.source == this || incumbent.fitness <= fitness(bestSolChromosome))
+			return;
+		int worst = 0;
+		for (int i = 1; i < population.size(); i++)
+			if (fitness(population.get(i)) < fitness(population.get(worst)))
+				worst = i;
+		population.set(worst, unpack(incumbent.genome));
+	}
+
+	/**
+	 * Generates an initial population to start the GA, part of it by
+	 * {@link #constructChromosome(Random)} if seeding is enabled and the rest
+	 * at random.
 	 * 
 	 * @return A population of chromosomes.
 	 */
@@ -233,6 +1473,39 @@ public abstract class AbstractGA<G extends Number, F> {
 
 		Population population = new Population();
 
+		int seeds = (int) Math.round(seedFraction * popSize);
+		if (seeds > 0) {
+			ExecutorService pool = seedPool != null ? seedPool : ForkJoinPool.commonPool();
+			List<Future<Chromosome>> futures = new ArrayList<Future<Chromosome>>();
+			for (int i = 0; i < seeds; i++) {
+				final Random random = new Random(rng.nextLong());
+				futures.add(pool.submit(() -> constructChromosome(random)));
+			}
+			try {
+				for (Future<Chromosome> future : futures) {
+					Chromosome chromosome = future.get();
+					if (chromosome != null)
+						population.add(chromosome);
+				}
+			} catch (InterruptedException e) {
+				for (Future<Chromosome> future : futures)
+					future.cancel(true);
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("construction of a seed chromosome failed", e.getCause());
+			}
+		}
+
+		if (store != null && warmStart) {
+			try {
+				for (SolutionStore.Entry entry : store.load(storeKey, chromosomeSize))
+					if (population.size() < popSize)
+						population.add(unpack(entry.genome));
+			} catch (IOException e) {
+				System.err.println("Solution store failed: " + e.getMessage());
+			}
+		}
+
 		while (population.size() < popSize) {
 			population.add(generateRandomChromosome());
 		}
@@ -336,12 +1609,21 @@ public abstract class AbstractGA<G extends Number, F> {
 				if (i > 0)
 					p[i] += p[i-1];
 			}
+
+			// A population of equally fit chromosomes is sampled uniformly.
+			if (sum == 0.0)
+			{
+				for (int i = 0; i < popSize; i++)
+					p[i] = i + 1;
+				sum = popSize;
+			}
 			
 			double pos = rng.nextDouble() * (sum / popSize);
 			int chosen = 0;
-			while (pos < sum)
+			// Exactly popSize pointers, even if rounding makes the last one reach sum.
+			for (int k = 0; k < popSize; k++)
 			{
-				while (p[chosen] < pos)
+				while (chosen < popSize - 1 && p[chosen] < pos)
 					chosen++;
 				
 				parents.add(population.get(chosen));
@@ -421,6 +1703,12 @@ public abstract class AbstractGA<G extends Number, F> {
 				}
 			}
 
+			if (partitionCrossover) {
+				Chromosome child = partitionCrossover(parent1, parent2);
+				if (child != null)
+					offspring1 = child;
+			}
+
 			offsprings.add(offspring1);
 			offsprings.add(offspring2);
 
@@ -433,7 +1721,9 @@ public abstract class AbstractGA<G extends Number, F> {
 	/**
 	 * The mutation step takes the offsprings generated by {@link #crossover}
 	 * and to each possible locus, perform a mutation with the expected
-	 * frequency given by {@link #mutationRate}.
+	 * frequency given by {@link #mutationRate}. Offsprings whose fitness is
+	 * already known, the children of partition crossover, are kept as they
+	 * are.
 	 * 
 	 * @param offsprings
 	 *            The offsprings chromosomes generated by the
@@ -443,6 +1733,8 @@ public abstract class AbstractGA<G extends Number, F> {
 	protected Population mutate(Population offsprings) {
 
 		for (Chromosome c : offsprings) {
+			if (c.fitness != null)
+				continue;
 			for (int locus = 0; locus < chromosomeSize; locus++) {
 				if (rng.nextDouble() < mutationRate) {
 					mutateGene(c, locus);
@@ -453,6 +1745,87 @@ public abstract class AbstractGA<G extends Number, F> {
 		return offsprings;
 	}
 
+	/**
+	 * Mutates offsprings whose genome is already present in the population,
+	 * as described in {@link #setDuplicateRejection(boolean)}. Genomes are
+	 * compared through hashes of their packed form, costing O(n / 64) per
+	 * offspring instead of an evaluation.
+	 * 
+	 * @param offsprings
+	 *            The mutated offsprings, modified in place.
+	 */
+	protected void rejectDuplicates(Population offsprings) {
+
+		HashSet<Diversity.Key> seen = new HashSet<Diversity.Key>();
+		if (!crowding && bestChromosome != null)
+			seen.add(new Diversity.Key(bestChromosome.pack()));
+
+		for (Chromosome c : offsprings) {
+			long[] bits = c.pack();
+			for (int attempt = 0; attempt < MAX_DUPLICATE_MUTATIONS && !seen.add(new Diversity.Key(bits)); attempt++) {
+				int locus = rng.nextInt(chromosomeSize);
+				mutateGene(c, locus);
+				bits = bits.clone();
+				PackedBits.flip(bits, locus);
+			}
+		}
+	}
+
+	/**
+	 * Pairs the whole population at random for deterministic crowding: each
+	 * chromosome is a parent exactly once.
+	 * 
+	 * @param population
+	 *            The current population.
+	 * @return The parents, to be recombined two by two.
+	 */
+	protected Population pairParents(Population population) {
+
+		Population parents = new Population();
+		parents.addAll(population);
+		Collections.shuffle(parents, rng);
+
+		return parents;
+	}
+
+	/**
+	 * Deterministic crowding replacement. Each pair of offsprings is matched
+	 * against the pair of parents that generated it so that the sum of
+	 * Hamming distances is minimal, and each offspring replaces its matched
+	 * parent only if it is fitter. The best chromosome is therefore never
+	 * lost.
+	 * 
+	 * @param parents
+	 *            The parents, as paired by {@link #pairParents}.
+	 * @param offsprings
+	 *            The offsprings generated from the parents.
+	 * @return The updated population for the next generation.
+	 */
+	protected Population crowdingReplacement(Population parents, Population offsprings) {
+
+		Population population = new Population();
+
+		for (int i = 0; i < popSize; i = i + 2) {
+
+			Chromosome p1 = parents.get(i);
+			Chromosome p2 = parents.get(i + 1);
+			Chromosome c1 = offsprings.get(i);
+			Chromosome c2 = offsprings.get(i + 1);
+
+			long[] bp1 = p1.pack(), bp2 = p2.pack(), bc1 = c1.pack(), bc2 = c2.pack();
+			if (PackedBits.hamming(bp1, bc1) + PackedBits.hamming(bp2, bc2) > PackedBits.hamming(bp1, bc2) + PackedBits.hamming(bp2, bc1)) {
+				Chromosome tmp = c1;
+				c1 = c2;
+				c2 = tmp;
+			}
+
+			population.add(fitness(c1) > fitness(p1) ? c1 : p1);
+			population.add(fitness(c2) > fitness(p2) ? c2 : p2);
+		}
+
+		return population;
+	}
+
 	/**
 	 * Updates the population that will be considered for the next GA
 	 * generation. The method used for updating the population is the elitist,
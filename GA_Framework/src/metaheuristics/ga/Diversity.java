@@ -0,0 +1,87 @@
+package metaheuristics.ga;
+
+import java.util.Arrays;
+
+/**
+ * Diversity measures over populations of binary genomes packed by
+ * {@link AbstractGA.Chromosome#pack()}. Distances are Hamming distances
+ * computed 64 loci at a time with {@link Long#bitCount(long)}.
+ * 
+ * @author arthurpd
+ */
+public final class Diversity {
+
+	private Diversity() {
+	}
+
+	/**
+	 * Computes the entropy of a population, i.e. the average over all loci of
+	 * the binary entropy of the frequency of ones in that locus. It is 0 for a
+	 * population of clones and 1 for a population where every locus is evenly
+	 * split.
+	 * 
+	 * @param genomes
+	 *            The packed genomes of the population.
+	 * @param size
+	 *            The size of the genomes.
+	 * @return The entropy of the population, in [0, 1].
+	 */
+	public static double entropy(long[][] genomes, int size) {
+
+		if (genomes.length == 0 || size == 0)
+			return 0.0;
+
+		int[] ones = new int[size];
+		for (long[] genome : genomes) {
+			for (int w = 0; w < genome.length; w++) {
+				long word = genome[w];
+				while (word != 0) {
+					ones[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+					word &= word - 1;
+				}
+			}
+		}
+
+		double sum = 0.0;
+		for (int locus = 0; locus < size; locus++) {
+			double p = (double) ones[locus] / genomes.length;
+			if (p > 0.0 && p < 1.0)
+				sum -= p * Math.log(p) + (1 - p) * Math.log(1 - p);
+		}
+
+		return sum / (size * Math.log(2));
+	}
+
+	/**
+	 * A packed genome usable as a key of hash based collections, compared by
+	 * content.
+	 */
+	public static final class Key {
+
+		private final long[] bits;
+
+		private final int hash;
+
+		/**
+		 * @param bits
+		 *            The packed genome, which must not be modified while the
+		 *            key is in use.
+		 */
+		public Key(long[] bits) {
+			this.bits = bits;
+			this.hash = Arrays.hashCode(bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).hash == hash && Arrays.equals(((Key) obj).bits, bits);
+		}
+
+	}
+
+}
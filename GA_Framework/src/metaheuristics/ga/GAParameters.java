@@ -0,0 +1,66 @@
+package metaheuristics.ga;
+
+/**
+ * A configuration of the parameters of {@link AbstractGA}, as raced by
+ * {@link metaheuristics.tuning.Race}. The mutation rate is given relative to
+ * the chromosome size, so the same configuration applies to instances of any
+ * size.
+ * 
+ * @author arthurpd
+ */
+public class GAParameters {
+
+	public final int popSize;
+
+	/**
+	 * the mutation rate is mutationFactor / chromosomeSize
+	 */
+	public final double mutationFactor;
+
+	public final boolean adaptiveMutation;
+
+	public final boolean crosspointChoice;
+
+	public final boolean sus;
+
+	public final boolean duplicateRejection;
+
+	public final boolean crowding;
+
+	public GAParameters(int popSize, double mutationFactor, boolean adaptiveMutation, boolean crosspointChoice, boolean sus, boolean duplicateRejection, boolean crowding) {
+		this.popSize = popSize;
+		this.mutationFactor = mutationFactor;
+		this.adaptiveMutation = adaptiveMutation;
+		this.crosspointChoice = crosspointChoice;
+		this.sus = sus;
+		this.duplicateRejection = duplicateRejection;
+		this.crowding = crowding;
+	}
+
+	/**
+	 * @param chromosomeSize
+	 *            The size of the chromosome.
+	 * @return The mutation rate for the given chromosome size.
+	 */
+	public double mutationRate(int chromosomeSize) {
+		return mutationFactor / chromosomeSize;
+	}
+
+	/**
+	 * Applies the options that are not constructor arguments of
+	 * {@link AbstractGA}.
+	 * 
+	 * @param ga
+	 *            The GA being configured.
+	 */
+	public void apply(AbstractGA<?, ?> ga) {
+		ga.setDuplicateRejection(duplicateRejection);
+		ga.setCrowding(crowding);
+	}
+
+	@Override
+	public String toString() {
+		return "pop=" + popSize + " mut=" + mutationFactor + "/n" + (adaptiveMutation ? " adaptive" : "") + (crosspointChoice ? " crosspoint" : "") + (sus ? " sus" : "") + (duplicateRejection ? " nodup" : "") + (crowding ? " crowding" : "");
+	}
+
+}
@@ -0,0 +1,186 @@
+package metaheuristics.ga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import solutions.PackedBits;
+
+/**
+ * The linkage tree of a population of binary genomes, as learned by the
+ * linkage tree GA (LTGA) [1]. Loci are clustered hierarchically by
+ * agglomeration, starting from singletons and repeatedly merging the two
+ * clusters with the largest average mutual information between their loci
+ * (UPGMA), until a single cluster is left. Every cluster but the root is a
+ * set of loci that optimal mixing copies from a donor as a block.
+ *
+ * The mutual information of a pair of loci is computed from the number of
+ * genomes having both set, 64 genomes at a time with
+ * {@link Long#bitCount(long)}, which costs O(n^2 m / 64) for n loci and m
+ * genomes; the clustering uses the nearest-neighbour chain algorithm, in
+ * O(n^2) time. The similarities take n^2 floats.
+ *
+ * [1] Thierens. The linkage tree genetic algorithm. PPSN XI, 2010.
+ *
+ * @author arthurpd
+ */
+public class LinkageTree {
+
+	/**
+	 * the clusters, singletons first, then in order of merging, without the
+	 * root
+	 */
+	private final int[][] clusters;
+
+	/**
+	 * the clusters packed as {@link PackedBits} masks
+	 */
+	private final long[][] masks;
+
+	/**
+	 * Learns the linkage tree of a population.
+	 *
+	 * @param genomes
+	 *            The packed genomes of the population.
+	 * @param size
+	 *            The size of the genomes.
+	 * @param rng
+	 *            Breaks the ties between equally similar clusters.
+	 */
+	public LinkageTree(long[][] genomes, int size, Random rng) {
+
+		int m = genomes.length;
+		int words = (m + 63) >>> 6;
+
+		/* the genomes transposed: bit g of columns[i] is locus i of genome g */
+		long[][] columns = new long[size][words];
+		for (int g = 0; g < m; g++) {
+			long[] genome = genomes[g];
+			for (int w = 0; w < genome.length; w++)
+				for (long word = genome[w]; word != 0; word &= word - 1)
+					columns[(w << 6) + Long.numberOfTrailingZeros(word)][g >>> 6] |= 1L << g;
+		}
+		int[] ones = new int[size];
+		for (int i = 0; i < size; i++)
+			for (long word : columns[i])
+				ones[i] += Long.bitCount(word);
+
+		/* c log c for the counts of m genomes, so that pairs need no logarithm */
+		double[] clogc = new double[m + 1];
+		for (int c = 1; c <= m; c++)
+			clogc[c] = c * Math.log(c);
+
+		float[][] similarity = new float[size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = i + 1; j < size; j++) {
+				int both = 0;
+				for (int w = 0; w < words; w++)
+					both += Long.bitCount(columns[i][w] & columns[j][w]);
+				similarity[i][j] = similarity[j][i] = (float) mutualInformation(clogc, m, ones[i], ones[j], both);
+			}
+		}
+
+		clusters = cluster(similarity, rng);
+		masks = new long[clusters.length][PackedBits.words(size)];
+		for (int c = 0; c < clusters.length; c++)
+			for (int locus : clusters[c])
+				PackedBits.set(masks[c], locus);
+	}
+
+	/**
+	 * @return The mutual information, in nats, of two loci set in ones1 and
+	 *         ones2 of m genomes, both set in both of them, i.e. H(1) + H(2)
+	 *         - H(1, 2) with the entropies computed from counts.
+	 */
+	private static double mutualInformation(double[] clogc, int m, int ones1, int ones2, int both) {
+		double joint = clogc[m - ones1 - ones2 + both] + clogc[ones2 - both] + clogc[ones1 - both] + clogc[both];
+		double marginals = clogc[ones1] + clogc[m - ones1] + clogc[ones2] + clogc[m - ones2];
+		return (joint - marginals + clogc[m]) / m;
+	}
+
+	/**
+	 * Clusters the loci by UPGMA with the nearest-neighbour chain algorithm:
+	 * the chain follows nearest neighbours until two clusters are each
+	 * other's nearest, which are then merged, the similarities of the merged
+	 * cluster being the averages weighted by size (Lance-Williams).
+	 *
+	 * @param similarity
+	 *            The similarities of the loci, overwritten.
+	 * @return The clusters, singletons first, without the root.
+	 */
+	private static int[][] cluster(float[][] similarity, Random rng) {
+
+		int n = similarity.length;
+		List<int[]> clusters = new ArrayList<int[]>();
+		int[][] members = new int[n][];
+		int[] active = new int[n];
+		for (int i = 0; i < n; i++) {
+			members[i] = new int[] { i };
+			active[i] = i;
+			clusters.add(members[i]);
+		}
+		int count = n;
+
+		int[] chain = new int[n];
+		int length = 0;
+		while (count > 1) {
+			if (length == 0)
+				chain[length++] = active[rng.nextInt(count)];
+
+			int a = chain[length - 1];
+			int previous = length > 1 ? chain[length - 2] : -1;
+			int b = previous;
+			for (int k = 0; k < count; k++) {
+				int c = active[k];
+				if (c != a && (b < 0 || similarity[a][c] > similarity[a][b]))
+					b = c;
+			}
+
+			if (b != previous) {
+				chain[length++] = b;
+				continue;
+			}
+
+			/* a and b are reciprocal nearest neighbours: b merges into a */
+			length -= 2;
+			int sa = members[a].length, sb = members[b].length;
+			for (int k = 0; k < count; k++) {
+				int c = active[k];
+				if (c != a && c != b)
+					similarity[a][c] = similarity[c][a] = (sa * similarity[a][c] + sb * similarity[b][c]) / (sa + sb);
+			}
+			int[] merged = new int[sa + sb];
+			System.arraycopy(members[a], 0, merged, 0, sa);
+			System.arraycopy(members[b], 0, merged, sa, sb);
+			members[a] = merged;
+			members[b] = null;
+			for (int k = 0; k < count; k++) {
+				if (active[k] == b) {
+					active[k] = active[--count];
+					break;
+				}
+			}
+			if (count > 1)
+				clusters.add(merged);
+		}
+
+		return clusters.toArray(new int[0][]);
+	}
+
+	/**
+	 * @return The clusters of loci, singletons first, then in order of
+	 *         merging, without the root; shared, not to be modified.
+	 */
+	public int[][] clusters() {
+		return clusters;
+	}
+
+	/**
+	 * @return The clusters packed as masks, in the order of
+	 *         {@link #clusters()}; shared, not to be modified.
+	 */
+	public long[][] masks() {
+		return masks;
+	}
+
+}
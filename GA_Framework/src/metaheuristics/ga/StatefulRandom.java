@@ -0,0 +1,61 @@
+package metaheuristics.ga;
+
+import java.util.Random;
+
+/**
+ * A {@link Random} whose internal state can be read and restored, so that a
+ * run can be checkpointed and resumed with exactly the same random sequence.
+ * It implements the same linear congruential generator as {@link Random}, so
+ * a StatefulRandom produces the same numbers as a Random with the same seed.
+ * 
+ * Unlike {@link Random}, it is not thread-safe: each GA owns its generator.
+ * The cached second value of {@link #nextGaussian()} is not part of the
+ * state.
+ * 
+ * @author arthurpd
+ */
+@SuppressWarnings("serial")
+public class StatefulRandom extends Random {
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+
+	private static final long ADDEND = 0xBL;
+
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	public StatefulRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * @return The current internal state of the generator.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Restores a state previously obtained from {@link #getState()}.
+	 * 
+	 * @param state
+	 *            The internal state to be restored.
+	 */
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+
+}
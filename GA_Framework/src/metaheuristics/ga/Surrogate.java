@@ -0,0 +1,132 @@
+package metaheuristics.ga;
+
+/**
+ * Online calibration of a cheap fitness estimate against exact fitness
+ * values. The exact fitness is regressed on the estimate by least squares,
+ * with exponentially decaying weights so that the calibration follows the
+ * population as it converges. The residual deviation of the regression
+ * measures how far an exact fitness may lie from its prediction.
+ *
+ * @author arthurpd
+ */
+public class Surrogate {
+
+	/**
+	 * default weight kept by each sample when a new one is recorded
+	 */
+	public static final double DEFAULT_MEMORY = 0.995;
+
+	/**
+	 * samples needed before predictions are trusted
+	 */
+	public static final int MIN_SAMPLES = 30;
+
+	private final double memory;
+
+	private long samples;
+
+	private double w, sx, sy, sxx, sxy, syy;
+
+	public Surrogate() {
+		this(DEFAULT_MEMORY);
+	}
+
+	/**
+	 * @param memory
+	 *            Weight kept by each sample when a new one is recorded, in
+	 *            (0, 1].
+	 */
+	public Surrogate(double memory) {
+		this.memory = memory;
+	}
+
+	/**
+	 * Records an estimate together with the exact fitness it estimated.
+	 *
+	 * @param estimate
+	 *            The estimated fitness.
+	 * @param exact
+	 *            The exact fitness.
+	 */
+	public void update(double estimate, double exact) {
+		w = memory * w + 1;
+		sx = memory * sx + estimate;
+		sy = memory * sy + exact;
+		sxx = memory * sxx + estimate * estimate;
+		sxy = memory * sxy + estimate * exact;
+		syy = memory * syy + exact * exact;
+		samples++;
+	}
+
+	/**
+	 * @return Whether enough samples, spread over distinct estimates, were
+	 *         recorded for predicting.
+	 */
+	public boolean isCalibrated() {
+		return samples >= MIN_SAMPLES && varianceX() > 0;
+	}
+
+	/**
+	 * @param estimate
+	 *            An estimated fitness.
+	 * @return The predicted exact fitness.
+	 */
+	public double predict(double estimate) {
+		double mx = sx / w, my = sy / w;
+		return my + covariance() / varianceX() * (estimate - mx);
+	}
+
+	/**
+	 * @return The standard deviation of the exact fitness around its
+	 *         prediction.
+	 */
+	public double residualDeviation() {
+		double my = sy / w;
+		double vy = syy / w - my * my;
+		return Math.sqrt(Math.max(0, vy - covariance() * covariance() / varianceX()));
+	}
+
+	/**
+	 * @return The number of samples recorded.
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return The weighted sums of the calibration: the total weight, then
+	 *         the sums of the estimates, of the exact values, of the squared
+	 *         estimates, of their products and of the squared exact values.
+	 */
+	public double[] getSums() {
+		return new double[] { w, sx, sy, sxx, sxy, syy };
+	}
+
+	/**
+	 * Restores a calibration, e.g. from a checkpoint.
+	 *
+	 * @param sums
+	 *            The weighted sums, as given by {@link #getSums()}.
+	 * @param samples
+	 *            The number of samples recorded.
+	 */
+	public void restore(double[] sums, long samples) {
+		w = sums[0];
+		sx = sums[1];
+		sy = sums[2];
+		sxx = sums[3];
+		sxy = sums[4];
+		syy = sums[5];
+		this.samples = samples;
+	}
+
+	private double varianceX() {
+		double mx = sx / w;
+		return sxx / w - mx * mx;
+	}
+
+	private double covariance() {
+		return sxy / w - (sx / w) * (sy / w);
+	}
+
+}
@@ -0,0 +1,291 @@
+package metaheuristics.ga.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import solutions.PackedBits;
+
+/**
+ * A snapshot of the state of a GA between two generations: the population
+ * (bit-packed genomes and their fitness), the best solution, the adaptive
+ * mutation rate, the progress counters, the random generator state, the
+ * calibration of the screening surrogate, the restart schedule, the elite
+ * pool of path relinking and the work of optimal mixing. It is everything needed for
+ * resuming a run exactly where it stopped.
+ * 
+ * The binary layout is a fixed header followed by the packed genomes, all in
+ * big-endian order, and a trailing CRC32 of everything before it:
+ * 
+ * <pre>
+ * int    MAGIC, VERSION, chromosomeSize, popSize
+ * long   generation, evaluations, elapsedNanos,
+ *        lastImprovementGeneration, nanosSinceImprovement
+ * double bestCost, mutationRate
+ * long   rngState
+ * int    bestIndex
+ * double bestSolCost
+ * long   bestSolBits[words]
+ * double fitness[popSize]           (NaN when not evaluated)
+ * long   genomes[popSize][words]
+ * double surrogateSums[6]
+ * long   surrogateSamples, screened
+ * long   lastRestartGeneration
+ * int    restarts
+ * int    eliteCount
+ * double eliteFitness[eliteCount]
+ * long   eliteGenomes[eliteCount][words]
+ * long   copies
+ * double mixingWork
+ * long   crc32
+ * </pre>
+ * 
+ * where words = ceil(chromosomeSize / 64). A population of 100 chromosomes
+ * of size 400 takes about 8 KB.
+ * 
+ * @author arthurpd
+ */
+public class Checkpoint {
+
+	public static final int MAGIC = 0x4741434B;
+
+	public static final int VERSION = 5;
+
+	public int chromosomeSize;
+
+	public int popSize;
+
+	public long generation;
+
+	public long evaluations;
+
+	public long elapsedNanos;
+
+	public long lastImprovementGeneration;
+
+	public long nanosSinceImprovement;
+
+	public double bestCost;
+
+	public double mutationRate;
+
+	public long rngState;
+
+	/**
+	 * position of the best chromosome of the population
+	 */
+	public int bestIndex;
+
+	/**
+	 * genome that produced the best solution and its cost
+	 */
+	public long[] bestSolBits;
+
+	public double bestSolCost;
+
+	public double[] fitness;
+
+	public long[][] genomes;
+
+	/**
+	 * weighted sums of the screening surrogate, see
+	 * {@link metaheuristics.ga.Surrogate#getSums()}, zero without screening
+	 */
+	public double[] surrogateSums = new double[6];
+
+	public long surrogateSamples;
+
+	/**
+	 * offsprings discarded by screening so far
+	 */
+	public long screened;
+
+	/**
+	 * generation of the last restart (or of the start of the run), and the
+	 * number of restarts so far
+	 */
+	public long lastRestartGeneration;
+
+	public int restarts;
+
+	/**
+	 * elite pool of path relinking, best first, empty without path relinking
+	 */
+	public long[][] eliteGenomes = new long[0][];
+
+	public double[] eliteFitness = new double[0];
+
+	/**
+	 * copies tried by optimal mixing, and their work not yet counted as
+	 * evaluations
+	 */
+	public long copies;
+
+	public double mixingWork;
+
+	/**
+	 * Writes the checkpoint to a temporary file next to the given one, and
+	 * then atomically renames it, so the file is never left half-written.
+	 * 
+	 * @param file
+	 *            The checkpoint file.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void write(Path file) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream os = Files.newOutputStream(tmp)) {
+			write(os);
+		}
+		try {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (java.nio.file.AtomicMoveNotSupportedException e) {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes the checkpoint to a stream.
+	 * 
+	 * @param os
+	 *            The output stream, which is not closed.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void write(OutputStream os) throws IOException {
+		CRC32 crc = new CRC32();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(os, crc), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(chromosomeSize);
+		out.writeInt(popSize);
+		out.writeLong(generation);
+		out.writeLong(evaluations);
+		out.writeLong(elapsedNanos);
+		out.writeLong(lastImprovementGeneration);
+		out.writeLong(nanosSinceImprovement);
+		out.writeDouble(bestCost);
+		out.writeDouble(mutationRate);
+		out.writeLong(rngState);
+		out.writeInt(bestIndex);
+		out.writeDouble(bestSolCost);
+		for (long w : bestSolBits)
+			out.writeLong(w);
+		for (double f : fitness)
+			out.writeDouble(f);
+		for (long[] genome : genomes)
+			for (long w : genome)
+				out.writeLong(w);
+		for (double sum : surrogateSums)
+			out.writeDouble(sum);
+		out.writeLong(surrogateSamples);
+		out.writeLong(screened);
+		out.writeLong(lastRestartGeneration);
+		out.writeInt(restarts);
+		out.writeInt(eliteGenomes.length);
+		for (double f : eliteFitness)
+			out.writeDouble(f);
+		for (long[] genome : eliteGenomes)
+			for (long w : genome)
+				out.writeLong(w);
+		out.writeLong(copies);
+		out.writeDouble(mixingWork);
+		out.flush();
+		new DataOutputStream(os).writeLong(crc.getValue());
+		os.flush();
+	}
+
+	/**
+	 * Reads a checkpoint written by {@link #write(Path)}.
+	 * 
+	 * @param file
+	 *            The checkpoint file.
+	 * @return The checkpoint read.
+	 * @throws IOException
+	 *             If the file cannot be read, or is not a valid checkpoint.
+	 */
+	public static Checkpoint read(Path file) throws IOException {
+		try (InputStream is = Files.newInputStream(file)) {
+			return read(is);
+		}
+	}
+
+	/**
+	 * Reads a checkpoint from a stream.
+	 * 
+	 * @param is
+	 *            The input stream, which is not closed.
+	 * @return The checkpoint read.
+	 * @throws IOException
+	 *             If the stream cannot be read, or is not a valid checkpoint.
+	 */
+	public static Checkpoint read(InputStream is) throws IOException {
+		CRC32 crc = new CRC32();
+		BufferedInputStream buffered = new BufferedInputStream(is, 1 << 16);
+		DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+		if (in.readInt() != MAGIC)
+			throw new IOException("not a GA checkpoint");
+		int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException("unsupported checkpoint version " + version);
+
+		Checkpoint cp = new Checkpoint();
+		cp.chromosomeSize = in.readInt();
+		cp.popSize = in.readInt();
+		cp.generation = in.readLong();
+		cp.evaluations = in.readLong();
+		cp.elapsedNanos = in.readLong();
+		cp.lastImprovementGeneration = in.readLong();
+		cp.nanosSinceImprovement = in.readLong();
+		cp.bestCost = in.readDouble();
+		cp.mutationRate = in.readDouble();
+		cp.rngState = in.readLong();
+		cp.bestIndex = in.readInt();
+		cp.bestSolCost = in.readDouble();
+
+		int words = PackedBits.words(cp.chromosomeSize);
+		cp.bestSolBits = new long[words];
+		for (int w = 0; w < words; w++)
+			cp.bestSolBits[w] = in.readLong();
+		cp.fitness = new double[cp.popSize];
+		for (int i = 0; i < cp.popSize; i++)
+			cp.fitness[i] = in.readDouble();
+		cp.genomes = new long[cp.popSize][words];
+		for (int i = 0; i < cp.popSize; i++)
+			for (int w = 0; w < words; w++)
+				cp.genomes[i][w] = in.readLong();
+		for (int k = 0; k < cp.surrogateSums.length; k++)
+			cp.surrogateSums[k] = in.readDouble();
+		cp.surrogateSamples = in.readLong();
+		cp.screened = in.readLong();
+		cp.lastRestartGeneration = in.readLong();
+		cp.restarts = in.readInt();
+		int eliteCount = in.readInt();
+		cp.eliteFitness = new double[eliteCount];
+		for (int e = 0; e < eliteCount; e++)
+			cp.eliteFitness[e] = in.readDouble();
+		cp.eliteGenomes = new long[eliteCount][words];
+		for (int e = 0; e < eliteCount; e++)
+			for (int w = 0; w < words; w++)
+				cp.eliteGenomes[e][w] = in.readLong();
+		cp.copies = in.readLong();
+		cp.mixingWork = in.readDouble();
+
+		long expected = crc.getValue();
+		if (new DataInputStream(buffered).readLong() != expected)
+			throw new IOException("corrupted checkpoint (CRC mismatch)");
+
+		return cp;
+	}
+
+}
@@ -0,0 +1,146 @@
+package metaheuristics.ga.checkpoint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+
+import metaheuristics.termination.SearchProgress;
+
+/**
+ * Periodically saves {@link Checkpoint checkpoints} of a run to a file. The
+ * GA thread only packs the population into a {@link Checkpoint}, which costs
+ * O(popSize * chromosomeSize / 64) word copies, orders of magnitude less than
+ * evaluating a single generation; the file is written by a background thread.
+ * A checkpoint that comes due while the previous one is still being written
+ * is skipped rather than queued, so a slow disk never stalls the GA. The
+ * background thread lives from {@link #start} to {@link #close}, which the GA
+ * calls at the end of each run.
+ * 
+ * @author arthurpd
+ */
+public class Checkpointer {
+
+	private final Path file;
+
+	private final long intervalNanos;
+
+	private ExecutorService writer;
+
+	private Future<?> pending;
+
+	private long lastSaveNanos;
+
+	private volatile IOException failure;
+
+	/**
+	 * @param file
+	 *            The checkpoint file, replaced at every save.
+	 * @param interval
+	 *            Wall-clock time between two checkpoints.
+	 * @param unit
+	 *            The unit of interval.
+	 */
+	public Checkpointer(Path file, long interval, TimeUnit unit) {
+		this.file = file;
+		this.intervalNanos = unit.toNanos(interval);
+	}
+
+	/**
+	 * @return The checkpoint file.
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Marks the beginning (or resumption) of a run.
+	 * 
+	 * @param progress
+	 *            The progress of the run.
+	 */
+	public void start(SearchProgress progress) {
+		lastSaveNanos = progress.getElapsedNanos();
+		if (writer == null) {
+			writer = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "checkpoint-writer");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	/**
+	 * Checks whether a checkpoint is due, i.e. the interval has passed and the
+	 * previous checkpoint has already been written.
+	 * 
+	 * @param progress
+	 *            The progress of the run.
+	 * @return true if {@link #save} should be called.
+	 */
+	public boolean isDue(SearchProgress progress) {
+		return progress.getElapsedNanos() - lastSaveNanos >= intervalNanos && (pending == null || pending.isDone());
+	}
+
+	/**
+	 * Schedules a checkpoint to be written in background.
+	 * 
+	 * @param progress
+	 *            The progress of the run.
+	 * @param checkpoint
+	 *            The checkpoint to be written, which must not be modified
+	 *            afterwards.
+	 */
+	public void save(SearchProgress progress, Checkpoint checkpoint) {
+		lastSaveNanos = progress.getElapsedNanos();
+		pending = writer.submit(() -> {
+			try {
+				checkpoint.write(file);
+			} catch (IOException e) {
+				failure = e;
+			}
+		});
+	}
+
+	/**
+	 * Waits for the checkpoint being written, if any.
+	 * 
+	 * @throws IOException
+	 *             If writing any checkpoint failed.
+	 */
+	public void flush() throws IOException {
+		if (pending != null) {
+			try {
+				pending.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Waits for the checkpoint being written, if any, then stops the
+	 * background thread until the next {@link #start}.
+	 * 
+	 * @throws IOException
+	 *             If writing any checkpoint failed.
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if (writer != null)
+				writer.shutdown();
+			writer = null;
+			pending = null;
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+package metaheuristics.ga.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import solutions.PackedBits;
+
+/**
+ * A file-backed store of the best known solutions of instances, kept across
+ * runs and processes so that runs on a recurring instance can start from
+ * them. Each instance is identified by a key, such as a hash of its content,
+ * and has its own file in the store directory holding its best distinct
+ * genomes, bit-packed, by decreasing fitness:
+ *
+ * <pre>
+ * int    MAGIC, VERSION, size, count
+ * count times:
+ *   double fitness
+ *   long   genome[words]
+ * </pre>
+ *
+ * with words = ceil(size / 64). Updates read, merge and rewrite the file
+ * under an exclusive lock of a companion lock file, so that concurrent runs
+ * do not lose each other's solutions, and the file is replaced by an atomic
+ * rename, so that it is never seen half-written.
+ *
+ * @author arthurpd
+ */
+public class SolutionStore {
+
+	public static final int MAGIC = 0x47414253;
+
+	public static final int VERSION = 1;
+
+	/**
+	 * default number of solutions kept per instance
+	 */
+	public static final int DEFAULT_CAPACITY = 10;
+
+	/**
+	 * A stored solution.
+	 */
+	public static final class Entry {
+
+		/**
+		 * the packed genome
+		 */
+		public final long[] genome;
+
+		public final double fitness;
+
+		public Entry(long[] genome, double fitness) {
+			this.genome = genome;
+			this.fitness = fitness;
+		}
+	}
+
+	private static final ConcurrentHashMap<Path, Object> LOCKS = new ConcurrentHashMap<Path, Object>();
+
+	private final Path directory;
+
+	private final int capacity;
+
+	/**
+	 * @param directory
+	 *            The directory of the store, created if needed.
+	 * @param capacity
+	 *            Number of solutions kept per instance.
+	 */
+	public SolutionStore(Path directory, int capacity) {
+		this.directory = directory;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return The directory of the store.
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Reads the solutions stored for an instance.
+	 *
+	 * @param key
+	 *            The key of the instance.
+	 * @param size
+	 *            The size of the genomes of the instance.
+	 * @return The stored solutions, best first, or an empty list if there is
+	 *         none.
+	 * @throws IOException
+	 *             If the file of the instance cannot be read, or does not
+	 *             match the size.
+	 */
+	public List<Entry> load(String key, int size) throws IOException {
+		try (InputStream is = Files.newInputStream(file(key))) {
+			return read(is, size);
+		} catch (NoSuchFileException e) {
+			return new ArrayList<Entry>();
+		}
+	}
+
+	/**
+	 * Merges solutions into those stored for an instance, keeping the best
+	 * distinct ones.
+	 *
+	 * @param key
+	 *            The key of the instance.
+	 * @param size
+	 *            The size of the genomes of the instance.
+	 * @param entries
+	 *            The solutions to be merged.
+	 * @return Whether the best stored solution improved.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public boolean merge(String key, int size, List<Entry> entries) throws IOException {
+
+		Files.createDirectories(directory);
+		Path file = file(key);
+		/* file locks are held by the whole JVM, so its threads take turns first */
+		synchronized (LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), f -> new Object())) {
+			return lockedMerge(key, size, entries, file);
+		}
+	}
+
+	private boolean lockedMerge(String key, int size, List<Entry> entries, Path file) throws IOException {
+
+		try (FileChannel lock = FileChannel.open(directory.resolve(key + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock held = lock.lock();
+			try {
+				return rewrite(key, size, entries, file);
+			} finally {
+				held.release();
+			}
+		}
+	}
+
+	private boolean rewrite(String key, int size, List<Entry> entries, Path file) throws IOException {
+
+		List<Entry> stored = load(key, size);
+		double previous = stored.isEmpty() ? Double.NEGATIVE_INFINITY : stored.get(0).fitness;
+
+		List<Entry> merged = new ArrayList<Entry>(stored);
+		merged.addAll(entries);
+		merged.sort((a, b) -> Double.compare(b.fitness, a.fitness));
+		List<Entry> kept = new ArrayList<Entry>();
+		for (Entry e : merged) {
+			if (kept.size() == capacity)
+				break;
+			boolean duplicate = false;
+			for (Entry k : kept)
+				duplicate |= Arrays.equals(k.genome, e.genome);
+			if (!duplicate)
+				kept.add(e);
+		}
+		if (kept.isEmpty() || sameEntries(kept, stored))
+			return false;
+
+		/* the new content reaches the disk before it replaces the old one */
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(Channels.newOutputStream(out), size, kept);
+			out.force(true);
+		}
+		try {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return kept.get(0).fitness > previous;
+	}
+
+	private static boolean sameEntries(List<Entry> a, List<Entry> b) {
+		if (a.size() != b.size())
+			return false;
+		for (int i = 0; i < a.size(); i++)
+			if (a.get(i).fitness != b.get(i).fitness || !Arrays.equals(a.get(i).genome, b.get(i).genome))
+				return false;
+		return true;
+	}
+
+	private Path file(String key) {
+		if (!key.matches("[A-Za-z0-9_.-]+"))
+			throw new IllegalArgumentException("bad instance key " + key);
+		return directory.resolve(key + ".sol");
+	}
+
+	private static List<Entry> read(InputStream is, int size) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16));
+		if (in.readInt() != MAGIC)
+			throw new IOException("not a solution store file");
+		int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException("unsupported solution store version " + version);
+		int stored = in.readInt();
+		if (stored != size)
+			throw new IOException("stored genomes have size " + stored + ", expected " + size);
+		int count = in.readInt();
+		int words = PackedBits.words(size);
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int e = 0; e < count; e++) {
+			double fitness = in.readDouble();
+			long[] genome = new long[words];
+			for (int w = 0; w < words; w++)
+				genome[w] = in.readLong();
+			entries.add(new Entry(genome, fitness));
+		}
+		return entries;
+	}
+
+	private static void write(OutputStream os, int size, List<Entry> entries) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(size);
+		out.writeInt(entries.size());
+		for (Entry e : entries) {
+			out.writeDouble(e.fitness);
+			for (long word : e.genome)
+				out.writeLong(word);
+		}
+		out.flush();
+	}
+
+}
@@ -0,0 +1,182 @@
+package metaheuristics.portfolio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import metaheuristics.ga.AbstractGA;
+import metaheuristics.termination.Cancellation;
+import metaheuristics.termination.SearchProgress;
+import metaheuristics.termination.TerminationCriterion;
+import solutions.Solution;
+
+/**
+ * A portfolio of differently configured GAs solving the same instance in
+ * parallel, one thread each. The members share a {@link SharedBest}: each
+ * publishes its improvements, and a member that has not improved for a
+ * number of generations while the incumbent is better than its own best
+ * takes the incumbent into its population. A member stopping on its own
+ * criteria, e.g. a generation limit or a stall, leaves the others running;
+ * the portfolio stops as soon as any member meets the criteria shared by all
+ * of them, e.g. a target or a deadline, or closes the optimality gap, and
+ * otherwise once all members have stopped.
+ *
+ * The members must encode solutions the same way, so that a genome means the
+ * same to all of them (e.g. they cannot mix GAs with and without variable
+ * fixing or reordering), and must not share their objective functions, which are not
+ * thread-safe.
+ *
+ * @param <F>
+ *            The type of the elements of the solutions.
+ *
+ * @author arthurpd
+ */
+public class Portfolio<F> {
+
+	/**
+	 * default generations without improvement before a member takes the
+	 * incumbent
+	 */
+	public static final int DEFAULT_INJECTION_LAG = 50;
+
+	private final List<String> names = new ArrayList<String>();
+
+	private final List<AbstractGA<?, F>> members = new ArrayList<AbstractGA<?, F>>();
+
+	private final SharedBest<F> shared = new SharedBest<F>();
+
+	private int injectionLag = DEFAULT_INJECTION_LAG;
+
+	/**
+	 * Adds a member to the portfolio. Its termination criterion is replaced
+	 * when the portfolio is solved.
+	 *
+	 * @param name
+	 *            The name of the member.
+	 * @param ga
+	 *            The member.
+	 */
+	public void add(String name, AbstractGA<?, F> ga) {
+		names.add(name);
+		members.add(ga);
+	}
+
+	/**
+	 * @param lag
+	 *            Generations without improvement before a member takes the
+	 *            incumbent, or 0 for only sharing the best solution.
+	 */
+	public void setInjectionLag(int lag) {
+		this.injectionLag = lag;
+	}
+
+	/**
+	 * Runs all members until one of them meets the shared criterion or closes
+	 * the optimality gap, or until all of them stop.
+	 *
+	 * @param stop
+	 *            The criterion stopping the whole portfolio, checked by each
+	 *            member against its own progress, so it must not keep state,
+	 *            e.g. a {@link metaheuristics.termination.TargetFitness} or a
+	 *            {@link metaheuristics.termination.WallClockDeadline}.
+	 * @return The best solution found by any member.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the members, which are
+	 *             then stopped.
+	 */
+	public Solution<F> solve(TerminationCriterion stop) throws InterruptedException {
+		return solve(null, stop);
+	}
+
+	/**
+	 * Runs all members until one of them meets the shared criterion or closes
+	 * the optimality gap, or until all of them stop.
+	 *
+	 * @param termination
+	 *            Gives the criterion stopping each member alone, or null for
+	 *            none. Criteria are created per member as some of them keep
+	 *            state.
+	 * @param stop
+	 *            The criterion stopping the whole portfolio, checked by each
+	 *            member against its own progress, so it must not keep state,
+	 *            e.g. a {@link metaheuristics.termination.TargetFitness} or a
+	 *            {@link metaheuristics.termination.WallClockDeadline}.
+	 * @return The best solution found by any member.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the members, which are
+	 *             then stopped.
+	 */
+	public Solution<F> solve(Supplier<TerminationCriterion> termination, TerminationCriterion stop) throws InterruptedException {
+
+		Cancellation cancellation = new Cancellation();
+		ExecutorService threads = Executors.newFixedThreadPool(members.size());
+		List<Future<Solution<F>>> runs = new ArrayList<Future<Solution<F>>>();
+		try {
+			for (AbstractGA<?, F> ga : members) {
+				TerminationCriterion criterion = stop.or(cancellation);
+				ga.setTermination(termination == null ? criterion : termination.get().or(criterion));
+				ga.setSharedBest(shared, injectionLag);
+				runs.add(threads.submit(() -> {
+					/* a failed member stops the others as well */
+					boolean global = true;
+					try {
+						Solution<F> best = ga.solve();
+						SearchProgress progress = ga.getProgress();
+						global = progress.isGapClosed() || stop.isMet(progress);
+						return best;
+					} finally {
+						if (global)
+							cancellation.cancel();
+					}
+				}));
+			}
+			for (Future<Solution<F>> run : runs)
+				run.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("portfolio member failed", e.getCause());
+		} finally {
+			cancellation.cancel();
+			threads.shutdown();
+		}
+
+		return getBest();
+	}
+
+	/**
+	 * @return The best solution found by any member, or null before
+	 *         {@link #solve(Supplier, TerminationCriterion)}.
+	 */
+	public Solution<F> getBest() {
+		SharedBest.Incumbent<F> incumbent = shared.get();
+		return incumbent == null ? null : incumbent.solution;
+	}
+
+	/**
+	 * @return The name of the member that found the best solution, or null
+	 *         before {@link #solve(Supplier, TerminationCriterion)}.
+	 */
+	public String getWinner() {
+		SharedBest.Incumbent<F> incumbent = shared.get();
+		int m = incumbent == null ? -1 : members.indexOf(incumbent.source);
+		return m < 0 ? null : names.get(m);
+	}
+
+	/**
+	 * @return The names of the members, in the order they were added.
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * @return The members, in the order they were added.
+	 */
+	public List<AbstractGA<?, F>> getMembers() {
+		return members;
+	}
+
+}
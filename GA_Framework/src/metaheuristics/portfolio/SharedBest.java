@@ -0,0 +1,83 @@
+package metaheuristics.portfolio;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import solutions.Solution;
+
+/**
+ * The best solution found so far by the members of a {@link Portfolio},
+ * updated atomically by all of them. Members publish each of their
+ * improvements and read the incumbent back when they lag behind, see
+ * {@link metaheuristics.ga.AbstractGA#setSharedBest(SharedBest, int)}.
+ *
+ * @param <F>
+ *            The type of the elements of the solutions.
+ *
+ * @author arthurpd
+ */
+public class SharedBest<F> {
+
+	/**
+	 * An immutable best solution, with its genome.
+	 */
+	public static final class Incumbent<F> {
+
+		/**
+		 * the packed genome of the solution, which must not be modified
+		 */
+		public final long[] genome;
+
+		public final double fitness;
+
+		public final Solution<F> solution;
+
+		/**
+		 * the member that found the solution
+		 */
+		public final Object source;
+
+		private Incumbent(long[] genome, double fitness, Solution<F> solution, Object source) {
+			this.genome = genome;
+			this.fitness = fitness;
+			this.solution = solution;
+			this.source = source;
+		}
+	}
+
+	private final AtomicReference<Incumbent<F>> best = new AtomicReference<Incumbent<F>>();
+
+	/**
+	 * Replaces the incumbent if the offered solution is strictly better.
+	 *
+	 * @param genome
+	 *            The packed genome of the solution, which is copied.
+	 * @param fitness
+	 *            The fitness of the solution.
+	 * @param solution
+	 *            The decoded solution, which is copied.
+	 * @param source
+	 *            The member offering the solution.
+	 * @return Whether the offered solution became the incumbent.
+	 */
+	public boolean offer(long[] genome, double fitness, Solution<F> solution, Object source) {
+
+		Incumbent<F> offered = null;
+		for (;;) {
+			Incumbent<F> current = best.get();
+			if (current != null && current.fitness >= fitness)
+				return false;
+			if (offered == null)
+				offered = new Incumbent<F>(genome.clone(), fitness, new Solution<F>(solution), source);
+			if (best.compareAndSet(current, offered))
+				return true;
+		}
+	}
+
+	/**
+	 * @return The incumbent, or null if no solution was offered.
+	 */
+	public Incumbent<F> get() {
+		return best.get();
+	}
+
+}
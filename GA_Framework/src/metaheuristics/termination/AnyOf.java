@@ -0,0 +1,56 @@
+package metaheuristics.termination;
+
+/**
+ * Composite criterion, met as soon as any of its members is met. Members are
+ * checked in the given order, so cheap criteria should come first.
+ * 
+ * @author arthurpd
+ */
+public class AnyOf implements TerminationCriterion {
+
+	private final TerminationCriterion[] criteria;
+
+	/**
+	 * the member that stopped the search, or null while it is running
+	 */
+	private TerminationCriterion metBy;
+
+	/**
+	 * @param criteria
+	 *            The criteria being composed.
+	 */
+	public AnyOf(TerminationCriterion... criteria) {
+		this.criteria = criteria.clone();
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		for (TerminationCriterion c : criteria) {
+			if (c.isMet(progress)) {
+				metBy = c;
+				return true;
+			}
+		}
+		metBy = null;
+		return false;
+	}
+
+	/**
+	 * @return The member that stopped the search, or null if none did.
+	 */
+	public TerminationCriterion getMetBy() {
+		return metBy;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("AnyOf[");
+		for (int i = 0; i < criteria.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(criteria[i]);
+		}
+		return sb.append("]").toString();
+	}
+
+}
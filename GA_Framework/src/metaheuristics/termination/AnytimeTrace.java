@@ -0,0 +1,132 @@
+package metaheuristics.termination;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The anytime behaviour of a run: the elapsed time, number of evaluations and
+ * best cost at each improvement of the best solution. It is recorded by
+ * {@link SearchProgress#improved(double)} when set with
+ * {@link SearchProgress#setTrace}, into growable primitive arrays, so that
+ * recording costs a few stores per improvement and no allocation in the
+ * steady state.
+ * 
+ * @author arthurpd
+ */
+public class AnytimeTrace {
+
+	private long[] nanos = new long[64];
+
+	private long[] evaluations = new long[64];
+
+	private double[] costs = new double[64];
+
+	private int size = 0;
+
+	/**
+	 * Forgets all points, as at the start of a new run.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Appends a point to the trace.
+	 * 
+	 * @param elapsedNanos
+	 *            Time elapsed since the start of the run.
+	 * @param evaluations
+	 *            Evaluations performed since the start of the run.
+	 * @param cost
+	 *            The new best cost.
+	 */
+	public void record(long elapsedNanos, long evaluations, double cost) {
+		if (size == nanos.length) {
+			nanos = Arrays.copyOf(nanos, 2 * size);
+			this.evaluations = Arrays.copyOf(this.evaluations, 2 * size);
+			costs = Arrays.copyOf(costs, 2 * size);
+		}
+		nanos[size] = elapsedNanos;
+		this.evaluations[size] = evaluations;
+		costs[size++] = cost;
+	}
+
+	/**
+	 * @return The number of points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The elapsed time at the i-th improvement, in nanoseconds.
+	 */
+	public long getNanos(int i) {
+		return nanos[i];
+	}
+
+	/**
+	 * @return The evaluations performed up to the i-th improvement.
+	 */
+	public long getEvaluations(int i) {
+		return evaluations[i];
+	}
+
+	/**
+	 * @return The best cost after the i-th improvement.
+	 */
+	public double getCost(int i) {
+		return costs[i];
+	}
+
+	/**
+	 * @param target
+	 *            A target cost.
+	 * @return The index of the first point reaching the target, or -1 if the
+	 *         run never reached it.
+	 */
+	public int indexOf(double target) {
+		for (int i = 0; i < size; i++)
+			if (costs[i] >= target)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @param target
+	 *            A target cost.
+	 * @return The time taken to reach the target, in nanoseconds, or -1 if
+	 *         the run never reached it.
+	 */
+	public long nanosToTarget(double target) {
+		int i = indexOf(target);
+		return i < 0 ? -1 : nanos[i];
+	}
+
+	/**
+	 * @param target
+	 *            A target cost.
+	 * @return The evaluations spent to reach the target, or -1 if the run
+	 *         never reached it.
+	 */
+	public long evaluationsToTarget(double target) {
+		int i = indexOf(target);
+		return i < 0 ? -1 : evaluations[i];
+	}
+
+	/**
+	 * Writes the trace as CSV lines "prefix,nanos,evaluations,cost".
+	 * 
+	 * @param out
+	 *            Receives the lines.
+	 * @param prefix
+	 *            The leading columns of every line, identifying the run.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public void writeCsv(Appendable out, String prefix) throws IOException {
+		for (int i = 0; i < size; i++)
+			out.append(prefix).append(',').append(Long.toString(nanos[i])).append(',').append(Long.toString(evaluations[i])).append(',').append(Double.toString(costs[i])).append('\n');
+	}
+
+}
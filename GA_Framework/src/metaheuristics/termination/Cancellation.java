@@ -0,0 +1,37 @@
+package metaheuristics.termination;
+
+/**
+ * Stops the search when {@link #cancel()} is called, possibly from another
+ * thread. The search stops at the end of the generation in progress.
+ * 
+ * @author arthurpd
+ */
+public class Cancellation implements TerminationCriterion {
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Requests the search to stop.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true if {@link #cancel()} has been called.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return cancelled;
+	}
+
+	@Override
+	public String toString() {
+		return "Cancellation[" + cancelled + "]";
+	}
+
+}
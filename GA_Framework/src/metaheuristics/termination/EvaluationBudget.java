@@ -0,0 +1,33 @@
+package metaheuristics.termination;
+
+/**
+ * Stops the search once a number of objective function evaluations has been
+ * spent. This is the fair way of comparing configurations that spend very
+ * different amounts of time per generation. The budget is checked between
+ * generations, so it may be exceeded by at most one generation.
+ * 
+ * @author arthurpd
+ */
+public class EvaluationBudget implements TerminationCriterion {
+
+	private final long evaluations;
+
+	/**
+	 * @param evaluations
+	 *            Maximum number of objective function evaluations.
+	 */
+	public EvaluationBudget(long evaluations) {
+		this.evaluations = evaluations;
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getEvaluations() >= evaluations;
+	}
+
+	@Override
+	public String toString() {
+		return "EvaluationBudget[" + evaluations + "]";
+	}
+
+}
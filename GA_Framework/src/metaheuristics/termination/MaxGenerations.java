@@ -0,0 +1,30 @@
+package metaheuristics.termination;
+
+/**
+ * Stops the search after a fixed number of generations.
+ * 
+ * @author arthurpd
+ */
+public class MaxGenerations implements TerminationCriterion {
+
+	private final long generations;
+
+	/**
+	 * @param generations
+	 *            Number of generations to be executed.
+	 */
+	public MaxGenerations(long generations) {
+		this.generations = generations;
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getGeneration() >= generations;
+	}
+
+	@Override
+	public String toString() {
+		return "MaxGenerations[" + generations + "]";
+	}
+
+}
@@ -0,0 +1,33 @@
+package metaheuristics.termination;
+
+/**
+ * Stops the search once the relative gap between the best cost and the upper
+ * bound known by the {@link SearchProgress} falls below a tolerance. The
+ * search always stops when the gap closes; this criterion allows stopping
+ * earlier, at a solution proven to be within some fraction of the optimum.
+ * 
+ * @author arthurpd
+ */
+public class OptimalityGap implements TerminationCriterion {
+
+	private final double gap;
+
+	/**
+	 * @param gap
+	 *            The tolerated relative gap, e.g. 0.01 for 1%.
+	 */
+	public OptimalityGap(double gap) {
+		this.gap = gap;
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getGap() <= gap;
+	}
+
+	@Override
+	public String toString() {
+		return "OptimalityGap[" + gap + "]";
+	}
+
+}
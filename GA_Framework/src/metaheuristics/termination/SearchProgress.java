@@ -0,0 +1,278 @@
+package metaheuristics.termination;
+
+import java.util.function.Consumer;
+
+/**
+ * Bookkeeping of a running search, shared with the
+ * {@link TerminationCriterion termination criteria}. It tracks the number of
+ * generations and objective function evaluations performed, the best cost
+ * found so far and when it was last improved.
+ * 
+ * Reading the system clock is not free, and some generations last only a few
+ * microseconds. The clock is therefore read at most once per generation, and
+ * the number of generations between two reads grows while the reads are
+ * closer than {@link #MIN_READ_SPACING} nanoseconds apart (and shrinks back
+ * when they are further than {@link #MAX_READ_SPACING}). Time based criteria
+ * thus see a clock that is at most a few milliseconds stale.
+ * 
+ * The improvements can also be recorded into an {@link AnytimeTrace}, for
+ * measuring how fast a run reaches a given quality, and passed to a listener,
+ * for reporting them while the run goes on.
+ * 
+ * When an upper bound on the cost is known (see {@link #setUpperBound}), the
+ * progress also reports the optimality gap, and the search stops as soon as
+ * the gap closes.
+ * 
+ * @author arthurpd
+ */
+public class SearchProgress {
+
+	/**
+	 * below this spacing between clock reads, reads become less frequent
+	 */
+	public static final long MIN_READ_SPACING = 1000000L;
+
+	/**
+	 * above this spacing between clock reads, reads become more frequent
+	 */
+	public static final long MAX_READ_SPACING = 10000000L;
+
+	/**
+	 * upper bound for the number of generations between clock reads
+	 */
+	private static final int MAX_TICKS_PER_READ = 1 << 16;
+
+	private long startNanos;
+
+	private long clock;
+
+	private int ticksPerRead;
+
+	private int ticksSinceRead;
+
+	private long generation;
+
+	private long evaluations;
+
+	private double bestCost;
+
+	private long lastImprovementGeneration;
+
+	private long lastImprovementNanos;
+
+	private double upperBound = Double.POSITIVE_INFINITY;
+
+	private AnytimeTrace trace;
+
+	private Consumer<SearchProgress> listener;
+
+	/**
+	 * Resets the progress, marking the beginning of a new search.
+	 */
+	public void start() {
+		startNanos = clock = lastImprovementNanos = System.nanoTime();
+		ticksPerRead = 1;
+		ticksSinceRead = 0;
+		generation = 0;
+		evaluations = 0;
+		bestCost = Double.NEGATIVE_INFINITY;
+		lastImprovementGeneration = 0;
+		if (trace != null)
+			trace.clear();
+	}
+
+	/**
+	 * Restores the progress of an interrupted search, such as one being
+	 * resumed from a checkpoint. The elapsed times continue from the given
+	 * values.
+	 * 
+	 * @param generation
+	 *            The number of generations already performed.
+	 * @param evaluations
+	 *            The number of evaluations already performed.
+	 * @param bestCost
+	 *            The best cost already found.
+	 * @param lastImprovementGeneration
+	 *            The generation in which the best cost was found.
+	 * @param elapsedNanos
+	 *            The time already spent on the search.
+	 * @param nanosSinceImprovement
+	 *            The time elapsed since the best cost was found.
+	 */
+	public void resume(long generation, long evaluations, double bestCost, long lastImprovementGeneration, long elapsedNanos, long nanosSinceImprovement) {
+		AnytimeTrace kept = trace;
+		trace = null;
+		start();
+		trace = kept;
+		startNanos -= elapsedNanos;
+		lastImprovementNanos -= nanosSinceImprovement;
+		this.generation = generation;
+		this.evaluations = evaluations;
+		this.bestCost = bestCost;
+		this.lastImprovementGeneration = lastImprovementGeneration;
+	}
+
+	/**
+	 * Marks the beginning of a new generation, refreshing the cached clock
+	 * whenever a read is due.
+	 */
+	public void nextGeneration() {
+		generation++;
+		if (++ticksSinceRead >= ticksPerRead) {
+			long now = System.nanoTime();
+			long spacing = now - clock;
+			if (spacing < MIN_READ_SPACING && ticksPerRead < MAX_TICKS_PER_READ) {
+				ticksPerRead <<= 1;
+			} else if (spacing > MAX_READ_SPACING && ticksPerRead > 1) {
+				ticksPerRead >>= 1;
+			}
+			clock = now;
+			ticksSinceRead = 0;
+		}
+	}
+
+	/**
+	 * Accounts for a single evaluation of the objective function.
+	 */
+	public void countEvaluation() {
+		evaluations++;
+	}
+
+	/**
+	 * Accounts for several evaluations of the objective function.
+	 * 
+	 * @param count
+	 *            The number of evaluations performed.
+	 */
+	public void countEvaluations(long count) {
+		evaluations += count;
+	}
+
+	/**
+	 * Registers a new best cost. Improvements are rare, so the clock is read
+	 * exactly here.
+	 * 
+	 * @param cost
+	 *            The cost of the new best solution.
+	 */
+	public void improved(double cost) {
+		bestCost = cost;
+		lastImprovementGeneration = generation;
+		lastImprovementNanos = clock = System.nanoTime();
+		if (trace != null)
+			trace.record(clock - startNanos, evaluations, cost);
+		if (listener != null)
+			listener.accept(this);
+	}
+
+	/**
+	 * Records every improvement of the following runs into a trace, which is
+	 * cleared at the start of each run (but not when a run is resumed).
+	 * 
+	 * @param trace
+	 *            The trace, or null for not recording.
+	 */
+	public void setTrace(AnytimeTrace trace) {
+		this.trace = trace;
+	}
+
+	/**
+	 * @return The trace being recorded, or null.
+	 */
+	public AnytimeTrace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * Calls a listener at every improvement of the following runs, on the
+	 * thread of the search, once the improvement is registered. It should
+	 * return quickly, as the search waits for it.
+	 * 
+	 * @param listener
+	 *            The listener, or null for none.
+	 */
+	public void setImprovementListener(Consumer<SearchProgress> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets an upper bound on the cost of any solution. The GA sets it at the
+	 * start of each run, see
+	 * {@link metaheuristics.ga.AbstractGA#setBounding(boolean)}.
+	 * 
+	 * @param upperBound
+	 *            The upper bound.
+	 */
+	public void setUpperBound(double upperBound) {
+		this.upperBound = upperBound;
+	}
+
+	/**
+	 * @return The upper bound on the cost, or positive infinity if unknown.
+	 */
+	public double getUpperBound() {
+		return upperBound;
+	}
+
+	/**
+	 * @return The gap between the upper bound and the best cost, relative to
+	 *         the bound (infinite while no bound is known).
+	 */
+	public double getGap() {
+		if (Double.isInfinite(upperBound))
+			return Double.POSITIVE_INFINITY;
+		return (upperBound - bestCost) / Math.max(1.0, Math.abs(upperBound));
+	}
+
+	/**
+	 * @return Whether the best cost has reached the upper bound, i.e. it is
+	 *         proven optimal.
+	 */
+	public boolean isGapClosed() {
+		return bestCost >= upperBound - 1e-9 * Math.max(1.0, Math.abs(upperBound));
+	}
+
+	/**
+	 * @return The number of generations started since {@link #start()}.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return The number of objective function evaluations performed.
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * @return The best cost registered through {@link #improved(double)}.
+	 */
+	public double getBestCost() {
+		return bestCost;
+	}
+
+	/**
+	 * @return The number of generations since the best cost was improved.
+	 */
+	public long getGenerationsSinceImprovement() {
+		return generation - lastImprovementGeneration;
+	}
+
+	/**
+	 * @return The (cached) elapsed time since {@link #start()}, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return clock - startNanos;
+	}
+
+	/**
+	 * @return The (cached) elapsed time since the best cost was improved, in
+	 *         nanoseconds.
+	 */
+	public long getNanosSinceImprovement() {
+		return clock - lastImprovementNanos;
+	}
+
+}
@@ -0,0 +1,31 @@
+package metaheuristics.termination;
+
+/**
+ * Stops the search after a number of consecutive generations without
+ * improvement of the best cost.
+ * 
+ * @author arthurpd
+ */
+public class StallGenerations implements TerminationCriterion {
+
+	private final long generations;
+
+	/**
+	 * @param generations
+	 *            Number of generations without improvement tolerated.
+	 */
+	public StallGenerations(long generations) {
+		this.generations = generations;
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getGenerationsSinceImprovement() >= generations;
+	}
+
+	@Override
+	public String toString() {
+		return "StallGenerations[" + generations + "]";
+	}
+
+}
@@ -0,0 +1,35 @@
+package metaheuristics.termination;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the search after some wall-clock time without improvement of the best
+ * cost.
+ * 
+ * @author arthurpd
+ */
+public class StallTime implements TerminationCriterion {
+
+	private final long nanos;
+
+	/**
+	 * @param duration
+	 *            Time without improvement tolerated.
+	 * @param unit
+	 *            The unit of duration.
+	 */
+	public StallTime(long duration, TimeUnit unit) {
+		this.nanos = unit.toNanos(duration);
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getNanosSinceImprovement() >= nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "StallTime[" + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms]";
+	}
+
+}
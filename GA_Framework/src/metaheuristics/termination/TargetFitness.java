@@ -0,0 +1,31 @@
+package metaheuristics.termination;
+
+/**
+ * Stops the search as soon as the best cost reaches a target, such as the
+ * known optimum of an instance.
+ * 
+ * @author arthurpd
+ */
+public class TargetFitness implements TerminationCriterion {
+
+	private final double target;
+
+	/**
+	 * @param target
+	 *            The cost to be reached (the search maximizes the cost).
+	 */
+	public TargetFitness(double target) {
+		this.target = target;
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getBestCost() >= target;
+	}
+
+	@Override
+	public String toString() {
+		return "TargetFitness[" + target + "]";
+	}
+
+}
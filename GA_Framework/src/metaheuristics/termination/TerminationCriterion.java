@@ -0,0 +1,32 @@
+package metaheuristics.termination;
+
+/**
+ * A condition under which a search should stop. Criteria are checked once
+ * per generation, so they are expected to be cheap: they should only inspect
+ * the given {@link SearchProgress}, whose clock is already amortised.
+ * 
+ * @author arthurpd
+ */
+public interface TerminationCriterion {
+
+	/**
+	 * Checks whether the search should stop.
+	 * 
+	 * @param progress
+	 *            The progress of the search so far.
+	 * @return true if the search should stop, false otherwise.
+	 */
+	public abstract boolean isMet(SearchProgress progress);
+
+	/**
+	 * Composes this criterion with another one, stopping when either is met.
+	 * 
+	 * @param other
+	 *            The other criterion.
+	 * @return A criterion met when this or the other criterion is met.
+	 */
+	public default TerminationCriterion or(TerminationCriterion other) {
+		return new AnyOf(this, other);
+	}
+
+}
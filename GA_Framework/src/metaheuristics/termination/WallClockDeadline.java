@@ -0,0 +1,36 @@
+package metaheuristics.termination;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the search after some wall-clock time. Time is measured with
+ * {@link System#nanoTime()}, through the amortised clock of
+ * {@link SearchProgress}.
+ * 
+ * @author arthurpd
+ */
+public class WallClockDeadline implements TerminationCriterion {
+
+	private final long nanos;
+
+	/**
+	 * @param duration
+	 *            Maximum running time.
+	 * @param unit
+	 *            The unit of duration.
+	 */
+	public WallClockDeadline(long duration, TimeUnit unit) {
+		this.nanos = unit.toNanos(duration);
+	}
+
+	@Override
+	public boolean isMet(SearchProgress progress) {
+		return progress.getElapsedNanos() >= nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "WallClockDeadline[" + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms]";
+	}
+
+}
@@ -0,0 +1,30 @@
+package metaheuristics.tuning;
+
+/**
+ * A single run of a candidate configuration on an instance, used by
+ * {@link Race}. Runs should spend a fixed budget (e.g. an
+ * {@link metaheuristics.termination.EvaluationBudget}) so that results of
+ * different candidates are comparable.
+ * 
+ * @author arthurpd
+ * @param <C>
+ *            Type of the candidate configurations.
+ */
+public interface Experiment<C> {
+
+	/**
+	 * Runs a candidate on an instance.
+	 * 
+	 * @param candidate
+	 *            The configuration being run.
+	 * @param instance
+	 *            The instance being solved.
+	 * @param seed
+	 *            The seed of the random number generator of the run.
+	 * @return The cost obtained, greater is better.
+	 * @throws Exception
+	 *             If the run fails, which aborts the race.
+	 */
+	public abstract double run(C candidate, String instance, long seed) throws Exception;
+
+}
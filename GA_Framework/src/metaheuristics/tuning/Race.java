@@ -0,0 +1,338 @@
+package metaheuristics.tuning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Racing of candidate configurations (F-Race [1]). Candidates are run on a
+ * sequence of blocks, each block being an (instance, seed) pair, and are
+ * ranked within every block. After {@link #firstTest} blocks, a Friedman
+ * test is applied after every step; when it detects a difference, the
+ * candidates whose rank sum is significantly worse than the best one
+ * (Conover's post-hoc test) are discarded. The budget is thus concentrated on
+ * the candidates that are still competitive.
+ * 
+ * All runs of a step, over all surviving candidates, are submitted to the
+ * same worker pool. When there are fewer survivors than workers, several
+ * blocks are run per step so that the pool stays busy.
+ * 
+ * [1] Birattari, et al. A Racing Algorithm for Configuring Metaheuristics.
+ * GECCO 2002.
+ * 
+ * @author arthurpd
+ * @param <C>
+ *            Type of the candidate configurations.
+ */
+public class Race<C> {
+
+	/**
+	 * flag that indicates whether the race should print eliminations on
+	 * screen
+	 */
+	public static boolean verbose = false;
+
+	private final List<C> candidates;
+
+	private final List<String> instances;
+
+	private final Experiment<C> experiment;
+
+	private final ExecutorService pool;
+
+	private final int workers;
+
+	/**
+	 * number of blocks evaluated before the first test
+	 */
+	protected int firstTest = 5;
+
+	/**
+	 * maximum number of blocks
+	 */
+	protected int maxBlocks = 100;
+
+	/**
+	 * maximum number of runs, over all candidates
+	 */
+	protected long maxExperiments = Long.MAX_VALUE;
+
+	/**
+	 * significance level of the tests
+	 */
+	protected double alpha = 0.05;
+
+	/**
+	 * seed for the sequence of blocks
+	 */
+	protected long seed = 0;
+
+	private long experiments;
+
+	private boolean[] alive;
+
+	/**
+	 * results[candidate] holds the cost of the candidate on each block
+	 */
+	private List<List<Double>> results;
+
+	/**
+	 * @param candidates
+	 *            The candidate configurations.
+	 * @param instances
+	 *            The instances the candidates are raced on.
+	 * @param experiment
+	 *            How a candidate is run on an instance.
+	 * @param pool
+	 *            The worker pool running the experiments.
+	 * @param workers
+	 *            The number of threads of the pool.
+	 */
+	public Race(List<C> candidates, List<String> instances, Experiment<C> experiment, ExecutorService pool, int workers) {
+		this.candidates = new ArrayList<C>(candidates);
+		this.instances = new ArrayList<String>(instances);
+		this.experiment = experiment;
+		this.pool = pool;
+		this.workers = workers;
+	}
+
+	public void setFirstTest(int firstTest) {
+		this.firstTest = firstTest;
+	}
+
+	public void setMaxBlocks(int maxBlocks) {
+		this.maxBlocks = maxBlocks;
+	}
+
+	public void setMaxExperiments(long maxExperiments) {
+		this.maxExperiments = maxExperiments;
+	}
+
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @return The number of runs performed by the race.
+	 */
+	public long getExperiments() {
+		return experiments;
+	}
+
+	/**
+	 * Races the candidates until a single one survives, or the blocks or the
+	 * budget of experiments run out.
+	 * 
+	 * @return The surviving candidates, best (lowest mean rank) first.
+	 * @throws Exception
+	 *             If any experiment fails.
+	 */
+	public List<C> run() throws Exception {
+
+		int k = candidates.size();
+		alive = new boolean[k];
+		Arrays.fill(alive, true);
+		results = new ArrayList<List<Double>>();
+		for (int i = 0; i < k; i++)
+			results.add(new ArrayList<Double>());
+		experiments = 0;
+
+		/* the blocks: instances in a shuffled round-robin, fresh seed per block */
+		Random blockRng = new Random(seed);
+		List<String> order = new ArrayList<String>();
+		long[] seeds = new long[maxBlocks];
+		for (int b = 0; b < maxBlocks; b++) {
+			if (b % instances.size() == 0) {
+				List<String> round = new ArrayList<String>(instances);
+				Collections.shuffle(round, blockRng);
+				order.addAll(round);
+			}
+			seeds[b] = blockRng.nextLong();
+		}
+
+		int blocks = 0;
+		while (blocks < maxBlocks && countAlive() > 1) {
+
+			int survivors = countAlive();
+			int step = Math.max(1, (workers + survivors - 1) / survivors);
+			if (blocks < firstTest)
+				step = Math.max(step, firstTest - blocks);
+			step = (int) Math.min(step, Math.min(maxBlocks - blocks, (maxExperiments - experiments) / survivors));
+			if (step <= 0)
+				break;
+
+			runBlocks(blocks, step, order, seeds);
+			blocks += step;
+
+			if (blocks >= firstTest)
+				eliminate(blocks);
+		}
+
+		return survivors(blocks);
+	}
+
+	private int countAlive() {
+		int count = 0;
+		for (boolean a : alive)
+			if (a)
+				count++;
+		return count;
+	}
+
+	private void runBlocks(int from, int step, List<String> order, long[] seeds) throws Exception {
+
+		List<Future<Double>> futures = new ArrayList<Future<Double>>();
+		List<Integer> owners = new ArrayList<Integer>();
+		for (int b = from; b < from + step; b++) {
+			for (int i = 0; i < candidates.size(); i++) {
+				if (!alive[i])
+					continue;
+				final C candidate = candidates.get(i);
+				final String instance = order.get(b);
+				final long s = seeds[b];
+				futures.add(pool.submit(() -> experiment.run(candidate, instance, s)));
+				owners.add(i);
+			}
+		}
+
+		for (int f = 0; f < futures.size(); f++) {
+			try {
+				results.get(owners.get(f)).add(futures.get(f).get());
+			} catch (ExecutionException e) {
+				throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+			}
+			experiments++;
+		}
+	}
+
+	/**
+	 * Ranks the alive candidates within each of the given blocks (rank 1 is
+	 * the best, ties get the average rank).
+	 */
+	private double[][] rank(int[] members, int blocks) {
+
+		int k = members.length;
+		int m = blocks;
+		double[][] ranks = new double[m][k];
+		int firstBlock = results.get(members[0]).size() - m;
+		Integer[] idx = new Integer[k];
+
+		for (int b = 0; b < m; b++) {
+			final double[] row = new double[k];
+			for (int j = 0; j < k; j++) {
+				row[j] = results.get(members[j]).get(firstBlock + b);
+				idx[j] = j;
+			}
+			Arrays.sort(idx, (x, y) -> Double.compare(row[y], row[x]));
+			for (int lo = 0; lo < k;) {
+				int hi = lo;
+				while (hi + 1 < k && row[idx[hi + 1]] == row[idx[lo]])
+					hi++;
+				for (int t = lo; t <= hi; t++)
+					ranks[b][idx[t]] = (lo + hi) / 2.0 + 1;
+				lo = hi + 1;
+			}
+		}
+
+		return ranks;
+	}
+
+	/**
+	 * Friedman test over the blocks in which all alive candidates were run,
+	 * followed by the post-hoc elimination of the candidates worse than the
+	 * best one.
+	 */
+	private void eliminate(int blocks) {
+
+		int[] members = aliveMembers();
+		int k = members.length;
+		if (k < 2)
+			return;
+
+		int m = results.get(members[0]).size();
+		double[][] ranks = rank(members, m);
+
+		double[] rankSum = new double[k];
+		double a = 0.0;
+		for (int b = 0; b < m; b++) {
+			for (int j = 0; j < k; j++) {
+				rankSum[j] += ranks[b][j];
+				a += ranks[b][j] * ranks[b][j];
+			}
+		}
+
+		double c = m * k * (k + 1) * (k + 1) / 4.0;
+		double dev = 0.0, sumSq = 0.0;
+		for (int j = 0; j < k; j++) {
+			dev += (rankSum[j] - m * (k + 1) / 2.0) * (rankSum[j] - m * (k + 1) / 2.0);
+			sumSq += rankSum[j] * rankSum[j];
+		}
+		if (a - c <= 0)
+			return; // every block is a complete tie
+
+		double t = (k - 1) * dev / (a - c);
+		if (t <= Statistics.chiSquareQuantile(1 - alpha, k - 1))
+			return;
+
+		int best = 0;
+		for (int j = 1; j < k; j++)
+			if (rankSum[j] < rankSum[best])
+				best = j;
+
+		int dof = (m - 1) * (k - 1);
+		double threshold = Statistics.studentTQuantile(1 - alpha / 2, dof) * Math.sqrt(2 * (m * a - sumSq) / dof);
+
+		for (int j = 0; j < k; j++) {
+			if (rankSum[j] - rankSum[best] > threshold) {
+				alive[members[j]] = false;
+				if (verbose)
+					System.out.println("(Block " + blocks + ") eliminated " + candidates.get(members[j]) + " rank sum " + rankSum[j] + " vs " + rankSum[best]);
+			}
+		}
+	}
+
+	private int[] aliveMembers() {
+		int[] members = new int[countAlive()];
+		int k = 0;
+		for (int i = 0; i < alive.length; i++)
+			if (alive[i])
+				members[k++] = i;
+		return members;
+	}
+
+	private List<C> survivors(int blocks) {
+
+		final int[] members = aliveMembers();
+		List<C> survivors = new ArrayList<C>();
+		if (members.length == 0 || results.get(members[0]).isEmpty()) {
+			for (int i : members)
+				survivors.add(candidates.get(i));
+			return survivors;
+		}
+
+		double[][] ranks = rank(members, results.get(members[0]).size());
+		final double[] rankSum = new double[members.length];
+		for (double[] row : ranks)
+			for (int j = 0; j < members.length; j++)
+				rankSum[j] += row[j];
+
+		Integer[] idx = new Integer[members.length];
+		for (int j = 0; j < idx.length; j++)
+			idx[j] = j;
+		Arrays.sort(idx, (x, y) -> Double.compare(rankSum[x], rankSum[y]));
+		for (int j : idx)
+			survivors.add(candidates.get(members[j]));
+
+		return survivors;
+	}
+
+}
@@ -0,0 +1,75 @@
+package metaheuristics.tuning;
+
+/**
+ * Approximate quantiles of the distributions needed by the Friedman test and
+ * its post-hoc comparisons. The approximations are accurate to about three
+ * significant digits, which is more than enough for racing.
+ * 
+ * @author arthurpd
+ */
+public final class Statistics {
+
+	private Statistics() {
+	}
+
+	/**
+	 * Quantile of the standard normal distribution (Acklam's rational
+	 * approximation).
+	 * 
+	 * @param p
+	 *            The probability, in (0, 1).
+	 * @return z such that P(Z &lt;= z) = p.
+	 */
+	public static double normalQuantile(double p) {
+
+		final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+		final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01 };
+		final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+		final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00 };
+		final double low = 0.02425;
+
+		if (p < low) {
+			double q = Math.sqrt(-2 * Math.log(p));
+			return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+		} else if (p > 1 - low) {
+			return -normalQuantile(1 - p);
+		}
+
+		double q = p - 0.5;
+		double r = q * q;
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+	}
+
+	/**
+	 * Quantile of the chi-square distribution (Wilson-Hilferty
+	 * approximation).
+	 * 
+	 * @param p
+	 *            The probability, in (0, 1).
+	 * @param dof
+	 *            Degrees of freedom.
+	 * @return The p-quantile.
+	 */
+	public static double chiSquareQuantile(double p, int dof) {
+		double h = 2.0 / (9.0 * dof);
+		double t = 1 - h + normalQuantile(p) * Math.sqrt(h);
+		return dof * t * t * t;
+	}
+
+	/**
+	 * Quantile of Student's t distribution (Cornish-Fisher expansion).
+	 * 
+	 * @param p
+	 *            The probability, in (0, 1).
+	 * @param dof
+	 *            Degrees of freedom.
+	 * @return The p-quantile.
+	 */
+	public static double studentTQuantile(double p, int dof) {
+		double z = normalQuantile(p);
+		double z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z;
+		double n = dof;
+		return z + (z3 + z) / (4 * n) + (5 * z5 + 16 * z3 + 3 * z) / (96 * n * n) + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * n * n * n);
+	}
+
+}
@@ -1,6 +1,6 @@
 package problems;
 
-import metaheuristics.ga.AbstractGA;
+import solutions.PackedBits;
 import solutions.Solution;
 
 /**
@@ -32,5 +32,43 @@ public interface Evaluator<E> {
 	 */
 	public abstract Double evaluate(Solution<E> sol);
 
-	public abstract void makeViable(AbstractGA<Integer, Integer>.Chromosome chromosome);
+	/**
+	 * Evaluates a solution of a binary problem given as a packed vector, in
+	 * which bit i tells whether variable i is set. This avoids building a
+	 * {@link Solution} for each evaluation, and should be preferred by
+	 * solvers working on binary genomes.
+	 * 
+	 * @param bits
+	 *            the solution under evaluation, packed as by
+	 *            {@link PackedBits}.
+	 * @return the evaluation of the solution.
+	 */
+	public default double evaluate(long[] bits) {
+		int[] ones = PackedBits.ones(bits);
+		return evaluate(ones, ones.length);
+	}
+
+	/**
+	 * Evaluates a solution of a binary problem given as the list of variables
+	 * set to one. Every evaluator must provide it, since the packed form of
+	 * {@link #evaluate(long[])} defaults to it.
+	 * 
+	 * @param ones
+	 *            the variables set to one, in increasing order.
+	 * @param count
+	 *            the number of variables in ones.
+	 * @return the evaluation of the solution.
+	 */
+	public abstract double evaluate(int[] ones, int count);
+
+	/**
+	 * Repairs a solution of a binary problem, in place, so that it satisfies
+	 * the constraints of the problem. Unconstrained problems leave it
+	 * untouched.
+	 * 
+	 * @param bits
+	 *            the solution being repaired, packed as by {@link PackedBits}.
+	 */
+	public default void makeViable(long[] bits) {
+	}
 }
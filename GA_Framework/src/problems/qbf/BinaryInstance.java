@@ -0,0 +1,236 @@
+package problems.qbf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The binary instance format, an edge list that loads without parsing text.
+ * All numbers are big-endian:
+ *
+ * <pre>
+ * int    MAGIC, VERSION, N
+ * long   M                    number of entries
+ * byte   integral             1 if values are ints, 0 if doubles
+ * M times:
+ *   int  i, j                 0-based, as in the sparse text format
+ *   int or double  a_ij
+ * </pre>
+ *
+ * Entries below the diagonal and repeated entries are handled as in the
+ * sparse text format (see {@link CoefficientMatrix#fromEntries}). Instances
+ * are written entry by entry by a {@link Writer}, so that they never need to
+ * be held in memory.
+ *
+ * @author arthurpd
+ */
+public final class BinaryInstance {
+
+	public static final int MAGIC = 0x51424642;
+
+	public static final int VERSION = 1;
+
+	private BinaryInstance() {
+	}
+
+	/**
+	 * Reads an instance, the magic number included.
+	 *
+	 * @param in
+	 *            The input, which is not closed.
+	 * @return The matrix read, stored as chosen by
+	 *         {@link CoefficientMatrix#fromEntries}.
+	 * @throws IOException
+	 *             If the input cannot be read, or is not a valid instance.
+	 */
+	public static CoefficientMatrix read(DataInputStream in) throws IOException {
+
+		Header header = readHeader(in);
+		if (header.entries > Integer.MAX_VALUE - 8)
+			throw new IOException("too many entries to load: M=" + header.entries);
+		int size = header.size;
+		boolean integral = header.integral;
+
+		int entries = (int) header.entries;
+		int[] rows = new int[entries];
+		int[] cols = new int[entries];
+		double[] values = new double[entries];
+		try {
+			for (int e = 0; e < entries; e++) {
+				rows[e] = in.readInt();
+				cols[e] = in.readInt();
+				values[e] = integral ? in.readInt() : in.readDouble();
+				if (rows[e] < 0 || cols[e] < 0 || rows[e] >= size || cols[e] >= size)
+					throw new IOException("entry " + e + " out of bounds: (" + rows[e] + "," + cols[e] + ")");
+			}
+		} catch (EOFException e) {
+			throw new IOException("truncated instance", e);
+		}
+
+		return CoefficientMatrix.fromEntries(size, rows, cols, values, entries);
+	}
+
+	/**
+	 * The header of an instance.
+	 */
+	static final class Header {
+
+		/**
+		 * size of the header in bytes
+		 */
+		static final int BYTES = 3 * Integer.BYTES + Long.BYTES + 1;
+
+		int size;
+
+		long entries;
+
+		boolean integral;
+
+		/**
+		 * @return The size of an entry in bytes.
+		 */
+		int entryBytes() {
+			return 2 * Integer.BYTES + (integral ? Integer.BYTES : Double.BYTES);
+		}
+	}
+
+	/**
+	 * Reads the header of an instance, the magic number included.
+	 *
+	 * @param in
+	 *            The input, left at the first entry.
+	 * @return The header read.
+	 * @throws IOException
+	 *             If the input cannot be read, or is not a valid instance.
+	 */
+	static Header readHeader(DataInputStream in) throws IOException {
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("not a binary QBF instance");
+		int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException("unsupported instance version " + version);
+		Header header = new Header();
+		header.size = in.readInt();
+		header.entries = in.readLong();
+		header.integral = in.readByte() != 0;
+		if (header.size < 0 || header.entries < 0)
+			throw new IOException("bad instance header: N=" + header.size + ", M=" + header.entries);
+		return header;
+	}
+
+	/**
+	 * Writes the nonzero coefficients of a matrix.
+	 *
+	 * @param A
+	 *            The matrix.
+	 * @param os
+	 *            The output, which is not closed.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static void write(CoefficientMatrix A, OutputStream os) throws IOException {
+
+		long[] count = { 0 };
+		A.forEachNonzero((i, j, value) -> count[0]++);
+		Writer writer = new Writer(os, A.size, count[0], A.isIntegral());
+		try {
+			A.forEachNonzero((i, j, value) -> {
+				try {
+					writer.add(i, j, value);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Writes an instance entry by entry. The number of entries must be known
+	 * in advance.
+	 */
+	public static class Writer {
+
+		private final DataOutputStream out;
+
+		private final int size;
+
+		private final long entries;
+
+		private final boolean integral;
+
+		private long written = 0;
+
+		/**
+		 * Writes the header of an instance.
+		 *
+		 * @param os
+		 *            The output, which is not closed.
+		 * @param size
+		 *            The dimension N.
+		 * @param entries
+		 *            The number of entries M that will be added.
+		 * @param integral
+		 *            Whether all values are ints.
+		 * @throws IOException
+		 *             Necessary for I/O operations.
+		 */
+		public Writer(OutputStream os, int size, long entries, boolean integral) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+			this.size = size;
+			this.entries = entries;
+			this.integral = integral;
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeLong(entries);
+			out.writeByte(integral ? 1 : 0);
+		}
+
+		/**
+		 * Writes an entry.
+		 *
+		 * @param i
+		 *            The 0-based row.
+		 * @param j
+		 *            The 0-based column.
+		 * @param value
+		 *            The value, which must be an int if the instance is
+		 *            integral.
+		 * @throws IOException
+		 *             Necessary for I/O operations.
+		 */
+		public void add(int i, int j, double value) throws IOException {
+			if (i < 0 || j < 0 || i >= size || j >= size)
+				throw new IllegalArgumentException("entry out of bounds: (" + i + "," + j + ")");
+			if (++written > entries)
+				throw new IllegalStateException("more than the " + entries + " entries declared");
+			out.writeInt(i);
+			out.writeInt(j);
+			if (integral)
+				out.writeInt((int) value);
+			else
+				out.writeDouble(value);
+		}
+
+		/**
+		 * Flushes the instance, checking that all entries were written.
+		 *
+		 * @throws IOException
+		 *             Necessary for I/O operations.
+		 */
+		public void finish() throws IOException {
+			if (written != entries)
+				throw new IllegalStateException(written + " entries written, " + entries + " declared");
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package problems.qbf;
+
+import solutions.PackedBits;
+
+/**
+ * {@link CoefficientMatrix} storing small integer coefficients as bit-planes.
+ * Row i is split into the bits of the magnitudes of its positive and of its
+ * negative coefficients, each bit b of each sign packed 64 columns per long as
+ * {@link PackedBits} packs a vector. The product of row i with a packed binary
+ * vector x is then
+ *
+ * sum_b 2^b (bitCount(P_ib &amp; x) - bitCount(N_ib &amp; x))
+ *
+ * handling 64 columns per word and plane with integer arithmetic only. With
+ * coefficients in [-2^B + 1, 2^B - 1], a row costs 2B popcounts per 64 columns
+ * instead of one addition per column set in x.
+ *
+ * The planes of the words of a row are interleaved, so a row is read
+ * sequentially. Coefficients below the diagonal are zero in all planes, and
+ * take space: the matrix uses B n^2 / 4 bytes, against n^2 / 2 for a
+ * {@link ByteMatrix}. {@link #flipDelta} also reads column k by popcounts,
+ * from the planes of the transpose, which take as much again and are built
+ * on its first call.
+ *
+ * @author arthurpd
+ */
+public final class BitPlaneMatrix extends CoefficientMatrix {
+
+	/**
+	 * widest magnitudes stored as bit-planes; wider coefficients are cheaper
+	 * to add one by one
+	 */
+	public static final int MAX_MAGNITUDE_BITS = 7;
+
+	/**
+	 * smallest matrices stored as bit-planes; below a few words per row, the
+	 * loops over words and planes cost more than they save
+	 */
+	public static final int MIN_SIZE = 256;
+
+	/**
+	 * number of bits of the magnitudes, B
+	 */
+	public final int magnitudeBits;
+
+	/**
+	 * number of words of a plane of a row
+	 */
+	public final int words;
+
+	/**
+	 * planes[(i * words + w) * 2B + b] holds bit b of the positive
+	 * coefficients of word w of row i, and planes[(i * words + w) * 2B + B +
+	 * b] that of the negative ones
+	 */
+	private final long[] planes;
+
+	/**
+	 * the planes of the strict lower triangle, laid out as {@link #planes}:
+	 * row k holds the coefficients a_jk for j &lt; k, built on the first call
+	 * to {@link #flipDelta}
+	 */
+	private volatile long[] columns;
+
+	/**
+	 * @param rows
+	 *            rows[i][k] is the coefficient a_{i,i+k}.
+	 * @param magnitudeBits
+	 *            Number of bits B of the magnitudes, which must all be below
+	 *            2^B.
+	 */
+	public BitPlaneMatrix(int[][] rows, int magnitudeBits) {
+
+		super(rows.length);
+		this.magnitudeBits = magnitudeBits;
+		this.words = PackedBits.words(size);
+		this.planes = new long[size * words * 2 * magnitudeBits];
+
+		for (int i = 0; i < size; i++) {
+			for (int k = 0; k < rows[i].length; k++) {
+				int value = rows[i][k];
+				if (value == 0)
+					continue;
+				int j = i + k;
+				int base = (i * words + (j >>> 6)) * 2 * magnitudeBits + (value < 0 ? magnitudeBits : 0);
+				int magnitude = Math.abs(value);
+				if (magnitude >>> magnitudeBits != 0)
+					throw new IllegalArgumentException("coefficient a(" + i + "," + j + ") = " + value + " wider than " + magnitudeBits + " bits");
+				for (int b = 0; magnitude != 0; b++, magnitude >>>= 1)
+					if ((magnitude & 1) != 0)
+						planes[base + b] |= 1L << j;
+			}
+		}
+	}
+
+	/**
+	 * @param maxMagnitude
+	 *            The largest magnitude of a coefficient.
+	 * @return The number of bits of the magnitudes, at least 1.
+	 */
+	public static int magnitudeBits(long maxMagnitude) {
+		return Math.max(1, 64 - Long.numberOfLeadingZeros(maxMagnitude));
+	}
+
+	@Override
+	public double get(int i, int j) {
+
+		if (j < i)
+			return 0.0;
+		int base = (i * words + (j >>> 6)) * 2 * magnitudeBits;
+		int value = 0;
+		for (int b = 0; b < magnitudeBits; b++)
+			value += (int) ((planes[base + b] >>> j) & 1) - (int) ((planes[base + magnitudeBits + b] >>> j) & 1) << b;
+		return value;
+	}
+
+	/**
+	 * @return The product of row i with x, i.e. the sum of a_ij x_j for j
+	 *         &gt;= i.
+	 */
+	private long row(long[] x, int i) {
+
+		final int B = magnitudeBits;
+		long sum = 0;
+		for (int w = i >>> 6, base = (i * words + w) * 2 * B; w < words; w++, base += 2 * B) {
+			long xw = x[w];
+			if (xw == 0)
+				continue;
+			for (int b = 0; b < B; b++)
+				sum += (long) (Long.bitCount(planes[base + b] & xw) - Long.bitCount(planes[base + B + b] & xw)) << b;
+		}
+		return sum;
+	}
+
+	@Override
+	public double evaluate(long[] bits) {
+
+		long sum = 0;
+		for (int w = 0; w < bits.length; w++)
+			for (long word = bits[w]; word != 0; word &= word - 1)
+				sum += row(bits, (w << 6) + Long.numberOfTrailingZeros(word));
+		return sum;
+	}
+
+	@Override
+	public double evaluate(int[] ones, int count) {
+		return evaluateRows(null, ones, count, 0, count);
+	}
+
+	/**
+	 * {@inheritDoc} The packed vector is built from ones when bits is null.
+	 */
+	@Override
+	public double evaluateRows(long[] bits, int[] ones, int count, int from, int to) {
+
+		if (bits == null) {
+			bits = new long[words];
+			for (int a = 0; a < count; a++)
+				PackedBits.set(bits, ones[a]);
+		}
+
+		long sum = 0;
+		for (int a = from; a < to; a++)
+			sum += row(bits, ones[a]);
+		return sum;
+	}
+
+	/**
+	 * {@inheritDoc} Here, the number of popcounts of the row.
+	 */
+	@Override
+	public long rowWork(int[] ones, int count, int a) {
+		return (long) (words - (ones[a] >>> 6)) * 2 * magnitudeBits;
+	}
+
+	/**
+	 * @return The product of column k with x, i.e. the sum of a_jk x_j for
+	 *         j &lt; k.
+	 */
+	private long column(long[] x, int k) {
+
+		final int B = magnitudeBits;
+		long[] columns = columns();
+		long sum = 0;
+		for (int w = 0, base = k * words * 2 * B; w <= k >>> 6; w++, base += 2 * B) {
+			long xw = x[w];
+			if (xw == 0)
+				continue;
+			for (int b = 0; b < B; b++)
+				sum += (long) (Long.bitCount(columns[base + b] & xw) - Long.bitCount(columns[base + B + b] & xw)) << b;
+		}
+		return sum;
+	}
+
+	/**
+	 * {@inheritDoc} Both row and column k are read by popcounts.
+	 */
+	@Override
+	public double flipDelta(long[] bits, int k) {
+
+		boolean set = PackedBits.get(bits, k);
+		long delta = row(bits, k) + column(bits, k) + (set ? 0 : (long) get(k, k));
+		return set ? -delta : delta;
+	}
+
+	private long[] columns() {
+		long[] c = columns;
+		if (c == null) {
+			synchronized (this) {
+				c = columns;
+				if (c == null)
+					columns = c = buildColumns();
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * @return The planes of the transpose of the strict upper triangle.
+	 */
+	private long[] buildColumns() {
+
+		final int B = magnitudeBits;
+		long[] columns = new long[planes.length];
+		for (int i = 0; i < size; i++) {
+			int wi = i >>> 6;
+			for (int w = wi; w < words; w++) {
+				for (int p = 0; p < 2 * B; p++) {
+					long word = planes[(i * words + w) * 2 * B + p];
+					if (w == wi)
+						word &= -2L << (i & 63);
+					for (; word != 0; word &= word - 1) {
+						int j = (w << 6) + Long.numberOfTrailingZeros(word);
+						columns[(j * words + wi) * 2 * B + p] |= 1L << i;
+					}
+				}
+			}
+		}
+		return columns;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return true;
+	}
+
+	@Override
+	public long memoryBytes() {
+		return (long) planes.length * Long.BYTES;
+	}
+
+}
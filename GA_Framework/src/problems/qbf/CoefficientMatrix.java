@@ -0,0 +1,562 @@
+package problems.qbf;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.io.StreamTokenizer;
+import java.util.Arrays;
+
+import solutions.PackedBits;
+
+/**
+ * The upper triangular matrix A of coefficients of a QBF f(x) = x'.A.x . Row
+ * i is stored from the diagonal on, i.e. only its last n - i coefficients.
+ * 
+ * The instances shipped with the framework have small integer coefficients,
+ * so {@link #read} picks the narrowest storage able to represent the matrix
+ * exactly: {@link ByteMatrix}, {@link ShortMatrix} or {@link IntMatrix},
+ * which evaluate with exact long accumulators. Matrices of at least
+ * {@link BitPlaneMatrix#MIN_SIZE} variables whose coefficients fit in
+ * {@link BitPlaneMatrix#MAX_MAGNITUDE_BITS} bits plus sign are stored as a
+ * {@link BitPlaneMatrix}, which evaluates 64 columns at a time by
+ * popcounts. Only instances with fractional (or huge) coefficients are
+ * stored as {@link DoubleMatrix}. Instances with
+ * fewer than {@link #SPARSE_DENSITY} nonzeros, or given as edge lists, are
+ * stored as a {@link SparseMatrix}.
+ * 
+ * @author arthurpd
+ */
+public abstract class CoefficientMatrix {
+
+	/**
+	 * Below this fraction of nonzeros in the upper triangle, a matrix is
+	 * stored in sparse form.
+	 */
+	public static final double SPARSE_DENSITY = 0.05;
+
+	/**
+	 * Dimension of the matrix.
+	 */
+	public final int size;
+
+	protected CoefficientMatrix(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @return The coefficient a_ij, which is zero below the diagonal.
+	 */
+	public abstract double get(int i, int j);
+
+	/**
+	 * Evaluates x'.A.x for the binary vector x whose ones are given.
+	 * 
+	 * @param ones
+	 *            The indices of the variables set to one, in increasing
+	 *            order.
+	 * @param count
+	 *            The number of indices in ones.
+	 * @return The value of the QBF.
+	 */
+	public abstract double evaluate(int[] ones, int count);
+
+	/**
+	 * Evaluates the part of x'.A.x in the rows of the ones of x with indices
+	 * [from, to) in ones, i.e. the sum of a_ij x_j for i = ones[from..to) and
+	 * j &gt;= i. Disjoint ranges can be evaluated concurrently and added, see
+	 * {@link ParallelEvaluation}.
+	 * 
+	 * @param bits
+	 *            The packed vector, as built by {@link PackedBits}, which
+	 *            only sparse matrices read.
+	 * @param ones
+	 *            The indices of the variables set to one, in increasing
+	 *            order.
+	 * @param count
+	 *            The number of indices in ones.
+	 * @param from
+	 *            First index in ones of the range.
+	 * @param to
+	 *            Index in ones past the end of the range.
+	 * @return The partial value.
+	 */
+	public abstract double evaluateRows(long[] bits, int[] ones, int count, int from, int to);
+
+	/**
+	 * @param ones
+	 *            The indices of the variables set to one, in increasing
+	 *            order.
+	 * @param count
+	 *            The number of indices in ones.
+	 * @param a
+	 *            An index in ones.
+	 * @return The number of terms {@link #evaluateRows} adds up for row
+	 *         ones[a], used for balancing parallel evaluations.
+	 */
+	public long rowWork(int[] ones, int count, int a) {
+		return count - a;
+	}
+
+	/**
+	 * Evaluates x'.A.x for a packed binary vector x.
+	 * 
+	 * @param bits
+	 *            The packed vector, as built by {@link PackedBits}.
+	 * @return The value of the QBF.
+	 */
+	public double evaluate(long[] bits) {
+		int[] ones = PackedBits.ones(bits);
+		return evaluate(ones, ones.length);
+	}
+
+	/**
+	 * Computes the variation of x'.A.x when variable k is flipped, i.e.
+	 * (1 - 2 x_k) (a_kk + sum_{j != k} (a_kj + a_jk) x_j). The default
+	 * implementation costs O(n).
+	 * 
+	 * @param bits
+	 *            The packed vector x.
+	 * @param k
+	 *            The variable being flipped.
+	 * @return f(x with x_k flipped) - f(x).
+	 */
+	public double flipDelta(long[] bits, int k) {
+		double delta = get(k, k);
+		for (int j = 0; j < size; j++) {
+			if (j != k && PackedBits.get(bits, j))
+				delta += j < k ? get(j, k) : get(k, j);
+		}
+		return PackedBits.get(bits, k) ? -delta : delta;
+	}
+
+	/**
+	 * Receives the nonzero coefficients of a matrix, see
+	 * {@link CoefficientMatrix#forEachNonzero}.
+	 */
+	public interface EntryConsumer {
+		public abstract void accept(int i, int j, double value);
+	}
+
+	/**
+	 * Visits the nonzero coefficients a_ij of the upper triangle (j &gt;= i),
+	 * row by row and by increasing column within a row.
+	 * 
+	 * @param consumer
+	 *            Receives each nonzero coefficient.
+	 */
+	public void forEachNonzero(EntryConsumer consumer) {
+		for (int i = 0; i < size; i++) {
+			for (int j = i; j < size; j++) {
+				double value = get(i, j);
+				if (value != 0)
+					consumer.accept(i, j, value);
+			}
+		}
+	}
+
+	/**
+	 * Visits the interactions of variable k with every other variable j, i.e.
+	 * the nonzero values of a_kj + a_jk for j != k, in increasing order of j.
+	 * 
+	 * @param k
+	 *            The variable.
+	 * @param consumer
+	 *            Receives k, j and the interaction for each j.
+	 */
+	public void forEachInteraction(int k, EntryConsumer consumer) {
+		for (int j = 0; j < size; j++) {
+			if (j != k) {
+				double value = j < k ? get(j, k) : get(k, j);
+				if (value != 0)
+					consumer.accept(k, j, value);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the dimension and the nonzero coefficients of the matrix, so that
+	 * equal matrices have equal hashes whatever their storage.
+	 * 
+	 * @param extra
+	 *            Further data of the instance hashed after the matrix, such
+	 *            as prohibited triples.
+	 * @return The SHA-256 of the instance, in hexadecimal.
+	 */
+	public String contentHash(int[] extra) {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 14);
+		buffer.putInt(size);
+		forEachNonzero((i, j, value) -> {
+			if (buffer.remaining() < 16) {
+				digest.update(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+			buffer.putInt(i).putInt(j).putDouble(value);
+		});
+		for (int v : extra) {
+			if (buffer.remaining() < 4) {
+				digest.update(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+			buffer.putInt(v);
+		}
+		digest.update(buffer.array(), 0, buffer.position());
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+			hex.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+		return hex.toString();
+	}
+
+	/**
+	 * @return Whether all coefficients are integers, i.e. evaluations are
+	 *         exact.
+	 */
+	public abstract boolean isIntegral();
+
+	/**
+	 * @return Number of bytes used for storing the coefficients.
+	 */
+	public abstract long memoryBytes();
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[size=" + size + ", " + memoryBytes() + " bytes]";
+	}
+
+	/**
+	 * Reads a matrix from a file in any of the formats described in
+	 * instances/README, telling the binary format (see
+	 * {@link BinaryInstance}) from the text ones by its magic number.
+	 * 
+	 * @param filename
+	 *            The instance file.
+	 * @return The matrix read.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static CoefficientMatrix read(String filename) throws IOException {
+
+		try (InputStream in = new BufferedInputStream(new FileInputStream(filename), 1 << 16)) {
+			in.mark(Integer.BYTES);
+			DataInputStream data = new DataInputStream(in);
+			int magic;
+			try {
+				magic = data.readInt();
+			} catch (EOFException e) {
+				magic = 0;
+			}
+			in.reset();
+			if (magic == BinaryInstance.MAGIC)
+				return BinaryInstance.read(data);
+			return read(new InputStreamReader(in, StandardCharsets.US_ASCII));
+		}
+	}
+
+	/**
+	 * Reads a matrix in either of the formats described in instances/README:
+	 * the dense upper triangle, or an edge list starting with the word
+	 * "sparse".
+	 * 
+	 * @param reader
+	 *            The instance being read, which is not closed.
+	 * @return The matrix read.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static CoefficientMatrix read(Reader reader) throws IOException {
+
+		StreamTokenizer stok = new StreamTokenizer(reader);
+		stok.nextToken();
+		if (stok.ttype == StreamTokenizer.TT_WORD && stok.sval.equals("sparse"))
+			return readEdgeList(stok);
+		if (stok.ttype != StreamTokenizer.TT_NUMBER)
+			throw new IOException("missing instance dimension");
+
+		return read(stok, (int) stok.nval);
+	}
+
+	/**
+	 * Reads the upper triangle of the matrix, row by row, in the format
+	 * described in instances/README, storing it with the narrowest
+	 * representation that is exact for all coefficients. Coefficients are kept
+	 * as ints while they are integers, so reading never needs more than twice
+	 * the memory of the final matrix. Matrices sparser than
+	 * {@link #SPARSE_DENSITY} are converted to a {@link SparseMatrix}.
+	 * 
+	 * @param stok
+	 *            The tokenizer, positioned after the dimension.
+	 * @param size
+	 *            The dimension of the matrix.
+	 * @return The matrix read.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static CoefficientMatrix read(StreamTokenizer stok, int size) throws IOException {
+
+		int[][] irows = new int[size][];
+		double[][] drows = null;
+		long min = 0, max = 0;
+		long nonzeros = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (drows == null)
+				irows[i] = new int[size - i];
+			else
+				drows[i] = new double[size - i];
+			for (int j = i; j < size; j++) {
+				if (stok.nextToken() != StreamTokenizer.TT_NUMBER)
+					throw new IOException("missing coefficient a(" + i + "," + j + ")");
+				double value = stok.nval;
+				if (drows == null && (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) {
+					drows = toDouble(irows, i);
+					irows = null;
+				}
+				if (drows == null) {
+					irows[i][j - i] = (int) value;
+					min = Math.min(min, (long) value);
+					max = Math.max(max, (long) value);
+				} else {
+					drows[i][j - i] = value;
+				}
+				if (value != 0)
+					nonzeros++;
+			}
+		}
+
+		if (nonzeros < SPARSE_DENSITY * size * (size + 1) / 2)
+			return toSparse(size, irows, drows, (int) nonzeros);
+		if (drows != null)
+			return new DoubleMatrix(drows);
+		return narrow(irows, min, max);
+	}
+
+	/**
+	 * Stores integer rows in the narrowest type that holds [min, max], or as
+	 * bit-planes when large enough and with narrow enough coefficients.
+	 */
+	private static CoefficientMatrix narrow(int[][] irows, long min, long max) {
+		int bits = BitPlaneMatrix.magnitudeBits(Math.max(-min, max));
+		if (irows.length >= BitPlaneMatrix.MIN_SIZE && bits <= BitPlaneMatrix.MAX_MAGNITUDE_BITS && (long) irows.length * PackedBits.words(irows.length) * 2 * bits <= Integer.MAX_VALUE)
+			return new BitPlaneMatrix(irows, bits);
+		if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE)
+			return new ByteMatrix(irows);
+		if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE)
+			return new ShortMatrix(irows);
+		return new IntMatrix(irows);
+	}
+
+	/**
+	 * Reads a matrix given as an edge list: the word "sparse", the dimension
+	 * N, the number of entries M and M triples (i, j, a_ij) with 1-based
+	 * indices. An entry below the diagonal is added to its mirror above the
+	 * diagonal, which leaves x'.A.x unchanged, and repeated entries are
+	 * summed.
+	 * 
+	 * @param stok
+	 *            The tokenizer, positioned after the word "sparse".
+	 * @return The matrix read, stored as chosen by {@link #fromEntries}.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static CoefficientMatrix readEdgeList(StreamTokenizer stok) throws IOException {
+
+		int size = (int) nextNumber(stok, "instance dimension");
+		int entries = (int) nextNumber(stok, "number of entries");
+
+		int[] rows = new int[entries];
+		int[] cols = new int[entries];
+		double[] values = new double[entries];
+		for (int e = 0; e < entries; e++) {
+			int i = (int) nextNumber(stok, "row of entry " + e) - 1;
+			int j = (int) nextNumber(stok, "column of entry " + e) - 1;
+			if (i < 0 || j < 0 || i >= size || j >= size)
+				throw new IOException("entry " + e + " out of bounds: (" + (i + 1) + "," + (j + 1) + ")");
+			rows[e] = i;
+			cols[e] = j;
+			values[e] = nextNumber(stok, "value of entry " + e);
+		}
+
+		return fromEntries(size, rows, cols, values, entries);
+	}
+
+	/**
+	 * Builds a matrix from a list of entries. An entry below the diagonal is
+	 * added to its mirror above the diagonal, which leaves x'.A.x unchanged,
+	 * and repeated entries are summed. The matrix is stored as a
+	 * {@link SparseMatrix} when sparser than {@link #SPARSE_DENSITY}, and in
+	 * the narrowest dense representation otherwise.
+	 * 
+	 * @param size
+	 *            The dimension of the matrix.
+	 * @param rows
+	 *            The 0-based row of each entry.
+	 * @param cols
+	 *            The 0-based column of each entry.
+	 * @param values
+	 *            The value of each entry.
+	 * @param entries
+	 *            The number of entries.
+	 * @return The matrix.
+	 */
+	public static CoefficientMatrix fromEntries(int size, int[] rows, int[] cols, double[] values, int entries) {
+
+		SparseMatrix sparse = sparseFromEntries(size, rows, cols, values, entries);
+		if (sparse.nonzeros() < SPARSE_DENSITY * size * (size + 1) / 2)
+			return sparse;
+
+		if (!sparse.isIntegral()) {
+			double[][] drows = new double[size][];
+			for (int i = 0; i < size; i++) {
+				drows[i] = new double[size - i];
+				for (int k = sparse.rowStart[i]; k < sparse.rowStart[i + 1]; k++)
+					drows[i][sparse.cols[k] - i] = sparse.dvalues[k];
+			}
+			return new DoubleMatrix(drows);
+		}
+
+		int[][] irows = new int[size][];
+		long min = 0, max = 0;
+		for (int i = 0; i < size; i++) {
+			irows[i] = new int[size - i];
+			for (int k = sparse.rowStart[i]; k < sparse.rowStart[i + 1]; k++) {
+				irows[i][sparse.cols[k] - i] = sparse.ivalues[k];
+				min = Math.min(min, sparse.ivalues[k]);
+				max = Math.max(max, sparse.ivalues[k]);
+			}
+		}
+		return narrow(irows, min, max);
+	}
+
+	/**
+	 * Builds a {@link SparseMatrix} from a list of entries, as
+	 * {@link #fromEntries} does, whatever its density. Entries below the
+	 * diagonal are mirrored in place in rows and cols.
+	 */
+	public static SparseMatrix sparseFromEntries(int size, int[] rows, int[] cols, double[] values, int entries) {
+
+		boolean integral = true;
+		for (int e = 0; e < entries; e++) {
+			if (rows[e] > cols[e]) {
+				int tmp = rows[e];
+				rows[e] = cols[e];
+				cols[e] = tmp;
+			}
+		}
+
+		/* counting sort by row, then sort each row by column and merge repeated entries */
+		int[] rowStart = new int[size + 1];
+		for (int e = 0; e < entries; e++)
+			rowStart[rows[e] + 1]++;
+		for (int i = 0; i < size; i++)
+			rowStart[i + 1] += rowStart[i];
+		int[] fill = Arrays.copyOf(rowStart, size);
+		int[] order = new int[entries];
+		for (int e = 0; e < entries; e++)
+			order[fill[rows[e]]++] = e;
+
+		int[] outCols = new int[entries];
+		double[] outValues = new double[entries];
+		int[] outStart = new int[size + 1];
+		int nnz = 0;
+		for (int i = 0; i < size; i++) {
+			int from = rowStart[i], to = rowStart[i + 1];
+			long[] keys = new long[to - from];
+			for (int p = from; p < to; p++)
+				keys[p - from] = ((long) cols[order[p]] << 32) | order[p];
+			Arrays.sort(keys);
+			for (long key : keys) {
+				int e = (int) key;
+				if (nnz > outStart[i] && outCols[nnz - 1] == cols[e]) {
+					outValues[nnz - 1] += values[e];
+				} else {
+					outCols[nnz] = cols[e];
+					outValues[nnz++] = values[e];
+				}
+			}
+			outStart[i + 1] = nnz;
+		}
+
+		/* entries that cancel out are dropped */
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			int from = outStart[i];
+			outStart[i] = kept;
+			for (int k = from; k < outStart[i + 1]; k++) {
+				if (outValues[k] != 0) {
+					outCols[kept] = outCols[k];
+					outValues[kept++] = outValues[k];
+				}
+			}
+		}
+		outStart[size] = nnz = kept;
+
+		for (int k = 0; k < nnz; k++)
+			integral &= outValues[k] == Math.rint(outValues[k]) && Math.abs(outValues[k]) <= Integer.MAX_VALUE;
+
+		outCols = Arrays.copyOf(outCols, nnz);
+		if (!integral)
+			return new SparseMatrix(size, outStart, outCols, null, Arrays.copyOf(outValues, nnz));
+		int[] ivalues = new int[nnz];
+		for (int k = 0; k < nnz; k++)
+			ivalues[k] = (int) outValues[k];
+		return new SparseMatrix(size, outStart, outCols, ivalues, null);
+	}
+
+	private static double nextNumber(StreamTokenizer stok, String what) throws IOException {
+		if (stok.nextToken() != StreamTokenizer.TT_NUMBER)
+			throw new IOException("missing " + what);
+		return stok.nval;
+	}
+
+	private static SparseMatrix toSparse(int size, int[][] irows, double[][] drows, int nonzeros) {
+
+		int[] rowStart = new int[size + 1];
+		int[] cols = new int[nonzeros];
+		int[] ivalues = drows == null ? new int[nonzeros] : null;
+		double[] dvalues = drows == null ? null : new double[nonzeros];
+		int nnz = 0;
+		for (int i = 0; i < size; i++) {
+			for (int k = 0; k < size - i; k++) {
+				double value = drows == null ? irows[i][k] : drows[i][k];
+				if (value != 0) {
+					cols[nnz] = i + k;
+					if (drows == null)
+						ivalues[nnz++] = irows[i][k];
+					else
+						dvalues[nnz++] = value;
+				}
+			}
+			rowStart[i + 1] = nnz;
+		}
+
+		return new SparseMatrix(size, rowStart, cols, ivalues, dvalues);
+	}
+
+	private static double[][] toDouble(int[][] irows, int upTo) {
+		double[][] drows = new double[irows.length][];
+		for (int i = 0; i <= upTo; i++) {
+			drows[i] = new double[irows[i].length];
+			for (int k = 0; k < irows[i].length; k++)
+				drows[i][k] = irows[i][k];
+			irows[i] = null;
+		}
+		return drows;
+	}
+
+}
@@ -0,0 +1,79 @@
+package problems.qbf;
+
+import solutions.PackedBits;
+
+/**
+ * {@link CoefficientMatrix} storing arbitrary coefficients as double values.
+ * 
+ * @author arthurpd
+ */
+public final class DoubleMatrix extends CoefficientMatrix {
+
+	/**
+	 * rows[i][k] is the coefficient a_{i,i+k}
+	 */
+	public final double[][] rows;
+
+	public DoubleMatrix(double[][] rows) {
+		super(rows.length);
+		this.rows = new double[size][];
+		for (int i = 0; i < size; i++) {
+			this.rows[i] = rows[i];
+		}
+	}
+
+	@Override
+	public double get(int i, int j) {
+		return j < i ? 0.0 : rows[i][j - i];
+	}
+
+	@Override
+	public double evaluate(int[] ones, int count) {
+		return evaluateRows(null, ones, count, 0, count);
+	}
+
+	@Override
+	public double evaluateRows(long[] bits, int[] ones, int count, int from, int to) {
+
+		double sum = 0;
+		for (int a = from; a < to; a++) {
+			int i = ones[a];
+			double[] row = rows[i];
+			for (int b = a; b < count; b++)
+				sum += row[ones[b] - i];
+		}
+
+		return sum;
+	}
+
+	/**
+	 * {@inheritDoc} Only the variables set in x are visited, reading row k
+	 * for those after k and column k for those before.
+	 */
+	@Override
+	public double flipDelta(long[] bits, int k) {
+
+		double delta = rows[k][0];
+		for (int w = 0; w < bits.length; w++) {
+			for (long word = bits[w]; word != 0; word &= word - 1) {
+				int j = (w << 6) + Long.numberOfTrailingZeros(word);
+				if (j < k)
+					delta += rows[j][k - j];
+				else if (j > k)
+					delta += rows[k][j - k];
+			}
+		}
+		return PackedBits.get(bits, k) ? -delta : delta;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return false;
+	}
+
+	@Override
+	public long memoryBytes() {
+		return (long) size * (size + 1) / 2 * Double.BYTES;
+	}
+
+}
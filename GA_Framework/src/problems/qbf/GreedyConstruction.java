@@ -0,0 +1,105 @@
+package problems.qbf;
+
+import java.util.Random;
+
+import solutions.PackedBits;
+
+/**
+ * Randomized greedy construction of QBF solutions, as in the construction
+ * phase of GRASP. Starting from the empty solution, it repeatedly inserts a
+ * variable drawn at random from the restricted candidate list (RCL) of the
+ * insertions with the largest gains, until no insertion improves the
+ * solution.
+ *
+ * The gain of every variable is kept up to date after each insertion by
+ * visiting only the interactions of the inserted variable, so a construction
+ * costs O(n) per inserted variable on dense matrices, plus O(degree) on
+ * sparse ones.
+ *
+ * With prohibited triples, a variable is never inserted when the other two
+ * variables of one of its triples are already in the solution, so the
+ * constructed solutions are always feasible.
+ *
+ * @author arthurpd
+ */
+public class GreedyConstruction {
+
+	private final CoefficientMatrix A;
+
+	private final TripleIndex triples;
+
+	/**
+	 * Constructor for an unconstrained QBF.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 */
+	public GreedyConstruction(CoefficientMatrix A) {
+		this(A, new int[0]);
+	}
+
+	/**
+	 * Constructor for a QBF with prohibited triples.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param triples
+	 *            Prohibited triples, three variables each.
+	 */
+	public GreedyConstruction(CoefficientMatrix A, int[] triples) {
+
+		this.A = A;
+		this.triples = new TripleIndex(A.size, triples);
+	}
+
+	/**
+	 * Builds a solution by randomized greedy insertions. Among the feasible
+	 * insertions with positive gain, ranging from gmin to gmax, the RCL holds
+	 * those with gain at least gmax - alpha (gmax - gmin).
+	 *
+	 * @param alpha
+	 *            Greediness of the construction, from 0 (pure greedy) to 1
+	 *            (any improving insertion).
+	 * @param random
+	 *            Source of randomness of this construction.
+	 * @return The solution, as packed bits.
+	 */
+	public long[] construct(double alpha, Random random) {
+
+		final int n = A.size;
+		final double[] gain = new double[n];
+		for (int i = 0; i < n; i++)
+			gain[i] = A.get(i, i);
+
+		long[] bits = new long[PackedBits.words(n)];
+
+		while (true) {
+
+			double gmin = Double.POSITIVE_INFINITY, gmax = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < n; i++) {
+				if (gain[i] > 0 && !PackedBits.get(bits, i) && !triples.completes(bits, i)) {
+					gmin = Math.min(gmin, gain[i]);
+					gmax = Math.max(gmax, gain[i]);
+				}
+			}
+			if (gmax == Double.NEGATIVE_INFINITY)
+				break;
+
+			/* draws uniformly from the RCL by reservoir sampling */
+			double threshold = gmax - alpha * (gmax - gmin);
+			int chosen = -1, seen = 0;
+			for (int i = 0; i < n; i++) {
+				if (gain[i] >= threshold && gain[i] > 0 && !PackedBits.get(bits, i) && !triples.completes(bits, i)) {
+					if (random.nextInt(++seen) == 0)
+						chosen = i;
+				}
+			}
+
+			PackedBits.set(bits, chosen);
+			A.forEachInteraction(chosen, (k, j, s) -> gain[j] += s);
+		}
+
+		return bits;
+	}
+
+}
@@ -0,0 +1,211 @@
+package problems.qbf;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generator of random QBF instances, written in any of the formats read by
+ * {@link CoefficientMatrix#read(String)}: the dense and sparse text formats of
+ * instances/README, or the {@link BinaryInstance} format. A QBFPT instance is
+ * a QBF instance, as the prohibited triples follow from its dimension.
+ *
+ * Each coefficient of the upper triangle is nonzero with probability density,
+ * and nonzero coefficients are uniform in [-range, range] \ {0}. The
+ * coefficients are drawn row by row, skipping the zeros by geometric jumps,
+ * so generating M nonzeros costs O(N + M) whatever N. The instances are
+ * streamed: the entries are generated again for each pass over them, instead
+ * of being held in memory, so a given seed gives the same instance in every
+ * format. The sparse formats need the number of entries up front, which
+ * costs an extra pass.
+ *
+ * Usage: InstanceGenerator N density range seed dense|sparse|binary output
+ *
+ * @author arthurpd
+ */
+public class InstanceGenerator {
+
+	public enum Format {
+		DENSE, SPARSE, BINARY
+	}
+
+	public final int size;
+
+	public final double density;
+
+	public final int range;
+
+	public final long seed;
+
+	/**
+	 * @param size
+	 *            Number of variables N.
+	 * @param density
+	 *            Probability that a coefficient of the upper triangle is
+	 *            nonzero, in (0, 1].
+	 * @param range
+	 *            Largest magnitude of a coefficient, at least 1.
+	 * @param seed
+	 *            Seed of the instance.
+	 */
+	public InstanceGenerator(int size, double density, int range, long seed) {
+		if (size < 1 || !(density > 0 && density <= 1) || range < 1)
+			throw new IllegalArgumentException("N must be positive, density in (0, 1] and range positive");
+		this.size = size;
+		this.density = density;
+		this.range = range;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates the nonzero coefficients of the upper triangle, row by row
+	 * and by increasing column within a row. Every call gives the same
+	 * coefficients.
+	 *
+	 * @param consumer
+	 *            Receives each nonzero coefficient.
+	 * @return The number of nonzero coefficients.
+	 */
+	public long forEachNonzero(CoefficientMatrix.EntryConsumer consumer) {
+
+		Random rng = new Random(seed);
+		double logSkip = density < 1 ? Math.log(1 - density) : Double.NEGATIVE_INFINITY;
+		long count = 0;
+		for (int i = 0; i < size; i++) {
+			for (long j = i + skip(rng, logSkip); j < size; j += 1 + skip(rng, logSkip)) {
+				int value = 1 + rng.nextInt(range);
+				consumer.accept(i, (int) j, rng.nextBoolean() ? value : -value);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of zeros before the next nonzero, geometric with
+	 *         parameter density.
+	 */
+	private static long skip(Random rng, double logSkip) {
+		if (logSkip == Double.NEGATIVE_INFINITY)
+			return 0;
+		double u = 1.0 - rng.nextDouble();
+		return (long) Math.min(Long.MAX_VALUE / 2, Math.floor(Math.log(u) / logSkip));
+	}
+
+	/**
+	 * Writes the instance.
+	 *
+	 * @param format
+	 *            The format.
+	 * @param os
+	 *            The output, which is not closed.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void write(Format format, OutputStream os) throws IOException {
+		try {
+			switch (format) {
+			case DENSE:
+				writeDense(os);
+				break;
+			case SPARSE:
+				writeSparse(os);
+				break;
+			case BINARY:
+				BinaryInstance.Writer writer = new BinaryInstance.Writer(os, size, forEachNonzero((i, j, value) -> {
+				}), true);
+				forEachNonzero((i, j, value) -> {
+					try {
+						writer.add(i, j, value);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				writer.finish();
+				break;
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes the upper triangle row by row, filling the gaps between the
+	 * nonzeros with zeros.
+	 */
+	private void writeDense(OutputStream os) throws IOException {
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.US_ASCII), 1 << 16);
+		out.write(size + "\n");
+		int[] next = { 0, 0 };
+		forEachNonzero((i, j, value) -> {
+			try {
+				fillZeros(out, next, i, j);
+				out.write(Integer.toString((int) value));
+				out.write(j == size - 1 ? '\n' : ' ');
+				next[0] = i;
+				next[1] = j + 1;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		fillZeros(out, next, size, size);
+		out.flush();
+	}
+
+	/**
+	 * Writes zeros from position next = {row, column} up to, excluding,
+	 * coefficient (i, j).
+	 */
+	private void fillZeros(Writer out, int[] next, int i, int j) throws IOException {
+		while (next[0] < i || (next[0] == i && next[1] < j)) {
+			if (next[1] == size) {
+				next[0]++;
+				next[1] = next[0];
+				continue;
+			}
+			out.write(next[1] == size - 1 ? "0\n" : "0 ");
+			next[1]++;
+		}
+	}
+
+	private void writeSparse(OutputStream os) throws IOException {
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.US_ASCII), 1 << 16);
+		out.write("sparse " + size + " " + forEachNonzero((i, j, value) -> {
+		}) + "\n");
+		forEachNonzero((i, j, value) -> {
+			try {
+				out.write((i + 1) + " " + (j + 1) + " " + (int) value + "\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		out.flush();
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 6) {
+			System.err.println("Usage: InstanceGenerator N density range seed dense|sparse|binary output");
+			System.exit(2);
+		}
+		InstanceGenerator generator = new InstanceGenerator(Integer.parseInt(args[0]), Double.parseDouble(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]));
+		Format format = Format.valueOf(args[4].toUpperCase());
+
+		long start = System.nanoTime();
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[5])), 1 << 16)) {
+			generator.write(format, out);
+		}
+		System.out.println("Wrote " + args[5] + " in " + (System.nanoTime() - start) / 1e9 + "s");
+	}
+
+}
@@ -0,0 +1,218 @@
+package problems.qbf;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import problems.Evaluator;
+import solutions.PackedBits;
+import solutions.Solution;
+
+/**
+ * A QBF whose matrix of coefficients stays on disk, for instances that do not
+ * fit in memory, and are only bounded by the size of the disk. The instance
+ * must be in the {@link BinaryInstance} format, whose entries are streamed
+ * from the file in blocks of {@link #BLOCK_BYTES} by large sequential reads.
+ *
+ * Since every evaluation reads the whole file, the vectors should be
+ * evaluated in batches by {@link #evaluate(long[][])}, which reads each byte
+ * of the file once per batch, whatever the size of the batch. The batch is
+ * transposed, so that bit g of column i tells whether variable i is set in
+ * vector g, and an entry (i, j, a_ij) adds a_ij to the vectors of the bits
+ * set in both columns i and j, whose common bits are found 64 vectors at a
+ * time; integral values are summed exactly, as longs. A pass over M entries
+ * costs O(M m / 64) operations for m vectors, plus one addition per vector
+ * having both variables set, as many as evaluating the vectors in memory,
+ * plus the sequential read of the file; only the columns are held in
+ * memory, n m / 8 bytes. The entries may come in any order, although those
+ * written row by row, as by {@link InstanceGenerator}, are read in
+ * sequential row blocks.
+ *
+ * @author arthurpd
+ */
+public class OutOfCoreQBF implements Evaluator<Integer> {
+
+	/**
+	 * size of the blocks read from the file
+	 */
+	public static final int BLOCK_BYTES = 1 << 23;
+
+	/**
+	 * Dimension of the domain.
+	 */
+	public final Integer size;
+
+	/**
+	 * The instance file.
+	 */
+	public final Path file;
+
+	/**
+	 * Number of entries M of the instance.
+	 */
+	public final long entries;
+
+	/**
+	 * Whether the values of the entries are ints.
+	 */
+	public final boolean integral;
+
+	/**
+	 * size of an entry in the file, in bytes
+	 */
+	private final int entryBytes;
+
+	/**
+	 * the number of passes made over the file
+	 */
+	private final AtomicLong passes = new AtomicLong();
+
+	/**
+	 * Opens an instance, reading its header only.
+	 *
+	 * @param filename
+	 *            Name of the instance file, in the {@link BinaryInstance}
+	 *            format.
+	 * @throws IOException
+	 *             If the file cannot be read, or is not a binary instance of
+	 *             the size its header declares.
+	 */
+	public OutOfCoreQBF(String filename) throws IOException {
+
+		file = Paths.get(filename);
+		BinaryInstance.Header header;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BinaryInstance.Header.BYTES))) {
+			header = BinaryInstance.readHeader(in);
+		}
+		size = header.size;
+		entries = header.entries;
+		integral = header.integral;
+		entryBytes = header.entryBytes();
+		if (Files.size(file) < BinaryInstance.Header.BYTES + entries * entryBytes)
+			throw new IOException("truncated instance: " + entries + " entries declared");
+	}
+
+	/**
+	 * Evaluates a batch of vectors in a single pass over the file.
+	 *
+	 * @param genomes
+	 *            The packed vectors.
+	 * @return The value of the QBF for each vector.
+	 * @throws UncheckedIOException
+	 *             If the file cannot be read, or has an entry out of bounds.
+	 */
+	public double[] evaluate(long[][] genomes) {
+
+		int m = genomes.length;
+		int words = (m + 63) >>> 6;
+		if ((long) size * words > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("a batch of " + m + " vectors of " + size + " variables is too large");
+
+		/* the batch transposed: bit g of word i * words + g / 64 is variable i of vector g */
+		long[] columns = new long[size * words];
+		for (int g = 0; g < m; g++) {
+			long[] genome = genomes[g];
+			for (int w = 0; w < genome.length; w++)
+				for (long word = genome[w]; word != 0; word &= word - 1)
+					columns[((w << 6) + Long.numberOfTrailingZeros(word)) * words + (g >>> 6)] |= 1L << g;
+		}
+
+		double[] values = new double[m];
+		long[] sums = new long[integral ? m : 0];
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES - BLOCK_BYTES % entryBytes);
+			channel.position(BinaryInstance.Header.BYTES);
+			for (long remaining = entries; remaining > 0;) {
+				if (channel.read(block) < 0)
+					throw new IOException("truncated instance");
+				block.flip();
+				long count = Math.min(remaining, block.remaining() / entryBytes);
+				for (long e = 0; e < count; e++) {
+					int i = block.getInt();
+					int j = block.getInt();
+					if (i < 0 || j < 0 || i >= size || j >= size)
+						throw new IOException("entry " + (entries - remaining + e) + " out of bounds: (" + i + "," + j + ")");
+					int ci = i * words, cj = j * words;
+					if (integral) {
+						int a = block.getInt();
+						for (int w = 0; w < words; w++)
+							for (long both = columns[ci + w] & columns[cj + w]; both != 0; both &= both - 1)
+								sums[(w << 6) + Long.numberOfTrailingZeros(both)] += a;
+					} else {
+						double a = block.getDouble();
+						for (int w = 0; w < words; w++)
+							for (long both = columns[ci + w] & columns[cj + w]; both != 0; both &= both - 1)
+								values[(w << 6) + Long.numberOfTrailingZeros(both)] += a;
+					}
+				}
+				remaining -= count;
+				block.compact();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		for (int g = 0; g < sums.length; g++)
+			values[g] = sums[g];
+
+		passes.incrementAndGet();
+		return values;
+	}
+
+	/**
+	 * @return The number of passes made over the file.
+	 */
+	public long getPasses() {
+		return passes.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see problems.Evaluator#getDomainSize()
+	 */
+	@Override
+	public Integer getDomainSize() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc} It takes a whole pass over the file.
+	 */
+	@Override
+	public Double evaluate(Solution<Integer> sol) {
+
+		long[] bits = new long[PackedBits.words(size)];
+		for (Integer elem : sol)
+			PackedBits.set(bits, elem);
+		return sol.cost = evaluate(bits);
+	}
+
+	/**
+	 * {@inheritDoc} It takes a whole pass over the file.
+	 */
+	@Override
+	public double evaluate(long[] bits) {
+		return evaluate(new long[][] { bits })[0];
+	}
+
+	/**
+	 * {@inheritDoc} It takes a whole pass over the file.
+	 */
+	@Override
+	public double evaluate(int[] ones, int count) {
+
+		long[] bits = new long[PackedBits.words(size)];
+		for (int a = 0; a < count; a++)
+			PackedBits.set(bits, ones[a]);
+		return evaluate(bits);
+	}
+
+}
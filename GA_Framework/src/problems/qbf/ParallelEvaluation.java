@@ -0,0 +1,190 @@
+package problems.qbf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import problems.qbf.solvers.GA_QBF;
+import solutions.PackedBits;
+import solutions.Solution;
+
+/**
+ * Evaluation of a single solution split across the threads of a
+ * {@link ForkJoinPool}, for very large instances where one evaluation takes
+ * milliseconds or more. The rows of the ones of x are partitioned into
+ * contiguous chunks of about the same number of terms (row ones[a] of a dense
+ * matrix has count - a of them, see {@link CoefficientMatrix#rowWork}), each
+ * chunk is evaluated by {@link CoefficientMatrix#evaluateRows} and the partial
+ * sums are added in chunk order.
+ *
+ * An evaluation is only split when it is large enough to repay the forking
+ * ({@link #MIN_PARALLEL_WORK} terms), and when the pool is not already busy,
+ * e.g. with the evaluations of other solutions; otherwise it runs on the
+ * calling thread. Integral matrices give exactly the sequential value; other
+ * matrices may differ in the last bits, as the terms are added in another
+ * order.
+ *
+ * @author arthurpd
+ */
+public class ParallelEvaluation {
+
+	/**
+	 * below this number of terms, evaluations run on the calling thread
+	 */
+	public static final long MIN_PARALLEL_WORK = 1L << 20;
+
+	/**
+	 * chunks per thread of the pool, for absorbing uneven progress
+	 */
+	public static final int CHUNKS_PER_THREAD = 4;
+
+	private final CoefficientMatrix A;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param A
+	 *            The coefficient matrix.
+	 * @param pool
+	 *            The pool the evaluations are split across.
+	 */
+	public ParallelEvaluation(CoefficientMatrix A, ForkJoinPool pool) {
+		this.A = A;
+		this.pool = pool;
+	}
+
+	/**
+	 * Evaluates x'.A.x, in parallel if worthwhile.
+	 *
+	 * @param bits
+	 *            The packed vector.
+	 * @return The value of the QBF.
+	 */
+	public double evaluate(long[] bits) {
+		int[] ones = PackedBits.ones(bits);
+		return evaluate(bits, ones, ones.length);
+	}
+
+	/**
+	 * Evaluates x'.A.x, in parallel if worthwhile.
+	 *
+	 * @param ones
+	 *            The indices of the variables set to one, in increasing
+	 *            order.
+	 * @param count
+	 *            The number of indices in ones.
+	 * @return The value of the QBF.
+	 */
+	public double evaluate(int[] ones, int count) {
+		if (!isPoolIdle())
+			return A.evaluate(ones, count);
+		long[] bits = new long[PackedBits.words(A.size)];
+		for (int a = 0; a < count; a++)
+			PackedBits.set(bits, ones[a]);
+		return evaluate(bits, ones, count);
+	}
+
+	private double evaluate(long[] bits, int[] ones, int count) {
+
+		if (!isPoolIdle())
+			return A.evaluate(bits);
+
+		long total = 0;
+		for (int a = 0; a < count; a++)
+			total += A.rowWork(ones, count, a);
+		if (total < MIN_PARALLEL_WORK)
+			return A.evaluateRows(bits, ones, count, 0, count);
+
+		/* chunk c ends once the work done reaches (c + 1) / chunks of the total */
+		int chunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+		List<int[]> bounds = new ArrayList<int[]>();
+		long work = 0;
+		int from = 0;
+		for (int a = 0; a < count; a++) {
+			work += A.rowWork(ones, count, a);
+			if (work * chunks >= (bounds.size() + 1) * total) {
+				bounds.add(new int[] { from, a + 1 });
+				from = a + 1;
+			}
+		}
+
+		return pool.invoke(new RecursiveTask<Double>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Double compute() {
+				List<RecursiveTask<Double>> tasks = new ArrayList<RecursiveTask<Double>>();
+				for (int[] range : bounds) {
+					tasks.add(new RecursiveTask<Double>() {
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						protected Double compute() {
+							return A.evaluateRows(bits, ones, count, range[0], range[1]);
+						}
+					});
+				}
+				ForkJoinTask.invokeAll(tasks);
+				double sum = 0;
+				for (RecursiveTask<Double> task : tasks)
+					sum += task.join();
+				return sum;
+			}
+		});
+	}
+
+	/**
+	 * @return Whether the pool has more than one thread, none of which is
+	 *         busy.
+	 */
+	private boolean isPoolIdle() {
+		return pool != null && pool.getParallelism() > 1 && pool.getActiveThreadCount() == 0 && !pool.hasQueuedSubmissions();
+	}
+
+	/**
+	 * A main method for checking that a GA over a large random dense instance
+	 * is built, and evolved with its evaluations split across a pool, and
+	 * that the best solution found has its sequential value.
+	 *
+	 * Usage: ParallelEvaluation [N [threads [generations]]], by default
+	 * 10000 variables, 2 threads and 5 generations; N = 10000 needs a heap
+	 * of about 1 GB.
+	 */
+	public static void main(String[] args) {
+
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int generations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		int[][] rows = new int[n][];
+		for (int i = 0; i < n; i++)
+			rows[i] = new int[n - i];
+		new InstanceGenerator(n, 1.0, 100, 0).forEachNonzero((i, j, value) -> rows[i][j - i] = (int) value);
+		QBF qbf = new QBF(new IntMatrix(rows));
+
+		long startTime = System.nanoTime();
+		GA_QBF ga = new GA_QBF(generations, 20, 1.0 / n, qbf, false, false);
+		long builtTime = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Solution<Integer> bestSol;
+		try {
+			qbf.setEvaluationPool(pool);
+			bestSol = ga.solve();
+		} finally {
+			pool.shutdown();
+		}
+		long endTime = System.nanoTime();
+
+		long[] bits = new long[PackedBits.words(n)];
+		for (Integer elem : bestSol)
+			PackedBits.set(bits, elem);
+		double sequential = qbf.A.evaluate(bits);
+		System.out.println("N = " + n + ", built in " + (builtTime - startTime) / 1e9 + " seg, solved in " + (endTime - builtTime) / 1e9 + " seg");
+		System.out.println("maxVal = " + bestSol.cost + ", sequentially " + sequential);
+		if (bestSol.cost != sequential)
+			throw new IllegalStateException("the parallel and sequential values differ");
+	}
+
+}
@@ -0,0 +1,180 @@
+package problems.qbf;
+
+import solutions.PackedBits;
+
+/**
+ * Partition crossover (PX) for QBFs. The variables in which two parents
+ * differ are split into the connected components of the interaction graph of
+ * the QBF (i and j interact when a_ij + a_ji != 0) restricted to them. As the
+ * variables shared by the parents are fixed, the components contribute to f
+ * independently of each other, so the best of the 2^k children that take
+ * each of the k components from either parent is found by choosing each
+ * component separately: the child is the first parent, with the components
+ * on which the second parent scores better taken from it.
+ *
+ * The score of a component is the sum of the flip deltas of its variables,
+ * flipped one after the other, so a recombination costs O(d n) for d
+ * differing variables on dense matrices, and O(d degree) on sparse ones, and
+ * gives the exact value of the child without evaluating it.
+ *
+ * With prohibited triples, the differing variables of a triple are kept in a
+ * same component, so the child of feasible parents is feasible.
+ *
+ * @author arthurpd
+ */
+public class PartitionCrossover {
+
+	/**
+	 * A child of two parents.
+	 */
+	public static final class Child {
+
+		/**
+		 * the packed child
+		 */
+		public final long[] bits;
+
+		/**
+		 * f(child) - f(first parent), which is never negative
+		 */
+		public final double gain;
+
+		/**
+		 * number of components the parents differ in
+		 */
+		public final int components;
+
+		private Child(long[] bits, double gain, int components) {
+			this.bits = bits;
+			this.gain = gain;
+			this.components = components;
+		}
+	}
+
+	private final CoefficientMatrix A;
+
+	private final int[] triples;
+
+	/**
+	 * Constructor for an unconstrained QBF.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 */
+	public PartitionCrossover(CoefficientMatrix A) {
+		this(A, new int[0]);
+	}
+
+	/**
+	 * Constructor for a QBF with prohibited triples.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param triples
+	 *            Prohibited triples, three variables each.
+	 */
+	public PartitionCrossover(CoefficientMatrix A, int[] triples) {
+		this.A = A;
+		this.triples = triples.clone();
+	}
+
+	/**
+	 * Recombines two parents.
+	 *
+	 * @param first
+	 *            The packed first parent.
+	 * @param second
+	 *            The packed second parent.
+	 * @return The best child, or null if the parents differ in less than two
+	 *         components, in which case the best child is one of them.
+	 */
+	public Child recombine(long[] first, long[] second) {
+
+		int d = PackedBits.hamming(first, second);
+		int[] diff = new int[d];
+		int[] position = new int[A.size];
+		d = 0;
+		for (int w = 0; w < first.length; w++) {
+			for (long word = first[w] ^ second[w]; word != 0; word &= word - 1) {
+				int k = (w << 6) + Long.numberOfTrailingZeros(word);
+				position[k] = ++d;
+				diff[d - 1] = k;
+			}
+		}
+		if (d < 2)
+			return null;
+
+		/* union-find over the positions in diff, position[k] being 1-based and 0 outside of it */
+		int[] root = new int[d];
+		for (int r = 0; r < d; r++)
+			root[r] = r;
+		int[] components = { d };
+		for (int r = 0; r < d && components[0] > 1; r++) {
+			final int from = r;
+			A.forEachInteraction(diff[r], (k, j, value) -> {
+				if (position[j] > 0)
+					union(root, from, position[j] - 1, components);
+			});
+		}
+		for (int t = 0; t < triples.length; t += 3) {
+			int previous = -1;
+			for (int m = 0; m < 3; m++) {
+				int p = position[triples[t + m]] - 1;
+				if (p >= 0) {
+					if (previous >= 0)
+						union(root, previous, p, components);
+					previous = p;
+				}
+			}
+		}
+		if (components[0] < 2)
+			return null;
+
+		/* groups the positions by component, then scores each component */
+		int[] count = new int[d + 1];
+		for (int r = 0; r < d; r++)
+			count[find(root, r) + 1]++;
+		for (int r = 0; r < d; r++)
+			count[r + 1] += count[r];
+		int[] members = new int[d];
+		int[] fill = count.clone();
+		for (int r = 0; r < d; r++)
+			members[fill[find(root, r)]++] = diff[r];
+
+		long[] child = first.clone();
+		double gain = 0;
+		for (int c = 0; c < d; c++) {
+			if (count[c] == count[c + 1])
+				continue;
+			double delta = 0;
+			for (int m = count[c]; m < count[c + 1]; m++) {
+				delta += A.flipDelta(child, members[m]);
+				PackedBits.flip(child, members[m]);
+			}
+			if (delta > 0) {
+				gain += delta;
+			} else {
+				for (int m = count[c]; m < count[c + 1]; m++)
+					PackedBits.flip(child, members[m]);
+			}
+		}
+
+		return new Child(child, gain, components[0]);
+	}
+
+	private static int find(int[] root, int r) {
+		while (root[r] != r)
+			r = root[r] = root[root[r]];
+		return r;
+	}
+
+	private static void union(int[] root, int a, int b, int[] components) {
+		a = find(root, a);
+		b = find(root, b);
+		if (a != b) {
+			root[Math.max(a, b)] = Math.min(a, b);
+			components[0]--;
+		}
+	}
+
+}
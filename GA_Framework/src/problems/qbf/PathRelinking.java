@@ -0,0 +1,141 @@
+package problems.qbf;
+
+import solutions.PackedBits;
+
+/**
+ * Path relinking for QBFs: walks from a source solution to a target solution
+ * by flipping, one at a time, the variables in which they differ, always
+ * choosing the flip that increases f the most (or decreases it the least),
+ * and returns the best solution met strictly between the two.
+ *
+ * Every variable k keeps its insertion gain g_k = a_kk + sum_{j != k, x_j = 1}
+ * (a_kj + a_jk), so the value of flipping k is g_k or -g_k. After each flip
+ * the gains are updated by visiting the interactions of the flipped variable
+ * only ({@link CoefficientMatrix#forEachInteraction}), so a walk over d
+ * differing variables costs O(d n) on dense matrices.
+ *
+ * With prohibited triples, a variable is never set when the other two
+ * variables of one of its triples are set, so that every solution along the
+ * path of feasible endpoints is feasible.
+ *
+ * @author arthurpd
+ */
+public class PathRelinking {
+
+	/**
+	 * The best solution met along a walk.
+	 */
+	public static final class Walk {
+
+		/**
+		 * the packed solution
+		 */
+		public final long[] bits;
+
+		/**
+		 * f(solution) - f(source)
+		 */
+		public final double gain;
+
+		private Walk(long[] bits, double gain) {
+			this.bits = bits;
+			this.gain = gain;
+		}
+	}
+
+	private final CoefficientMatrix A;
+
+	private final TripleIndex triples;
+
+	/**
+	 * Constructor for an unconstrained QBF.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 */
+	public PathRelinking(CoefficientMatrix A) {
+		this(A, new int[0]);
+	}
+
+	/**
+	 * Constructor for a QBF with prohibited triples.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param triples
+	 *            Prohibited triples, three variables each.
+	 */
+	public PathRelinking(CoefficientMatrix A, int[] triples) {
+
+		this.A = A;
+		this.triples = new TripleIndex(A.size, triples);
+	}
+
+	/**
+	 * Walks from source to target.
+	 *
+	 * @param source
+	 *            The packed starting solution.
+	 * @param target
+	 *            The packed guiding solution.
+	 * @return The best intermediate solution and its gain over the source,
+	 *         or null if the two solutions differ in less than two variables.
+	 */
+	public Walk relink(long[] source, long[] target) {
+
+		final int n = A.size;
+		final long[] bits = source.clone();
+
+		int[] diff = new int[PackedBits.hamming(source, target)];
+		int d = 0;
+		for (int w = 0; w < bits.length; w++)
+			for (long word = source[w] ^ target[w]; word != 0; word &= word - 1)
+				diff[d++] = (w << 6) + Long.numberOfTrailingZeros(word);
+		if (d < 2)
+			return null;
+
+		final double[] gain = new double[n];
+		for (int r = 0; r < d; r++) {
+			int k = diff[r];
+			double delta = A.flipDelta(bits, k);
+			gain[k] = PackedBits.get(bits, k) ? -delta : delta;
+		}
+
+		double value = 0, bestValue = Double.NEGATIVE_INFINITY;
+		long[] best = null;
+		/* the last flip reaches the target, which is not an intermediate */
+		for (int step = 0; step < d - 1; step++) {
+
+			int chosen = -1;
+			double chosenDelta = Double.NEGATIVE_INFINITY;
+			for (int r = step; r < d; r++) {
+				int k = diff[r];
+				boolean set = PackedBits.get(bits, k);
+				double delta = set ? -gain[k] : gain[k];
+				if (delta > chosenDelta && (set || !triples.completes(bits, k))) {
+					chosen = r;
+					chosenDelta = delta;
+				}
+			}
+			if (chosen < 0)
+				break;
+
+			int k = diff[chosen];
+			diff[chosen] = diff[step];
+			diff[step] = k;
+
+			final double sign = PackedBits.get(bits, k) ? -1.0 : 1.0;
+			PackedBits.flip(bits, k);
+			A.forEachInteraction(k, (i, j, s) -> gain[j] += sign * s);
+			value += chosenDelta;
+
+			if (value > bestValue) {
+				bestValue = value;
+				best = bits.clone();
+			}
+		}
+
+		return best == null ? null : new Walk(best, bestValue);
+	}
+
+}
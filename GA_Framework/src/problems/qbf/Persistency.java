@@ -0,0 +1,346 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+import solutions.Solution;
+
+/**
+ * Preprocessing of a QBF by persistency rules [1], which fix variables to the
+ * value they take in some optimal solution, so that the metaheuristic only
+ * searches over the remaining (free) variables.
+ * 
+ * Let the gain of variable i be the variation of f when x_i is turned on,
+ * g_i(x) = a_ii + sum_{k != i} s_ik x_k with s_ik = a_ik + a_ki. The rules
+ * bound the gains over all assignments of the free variables:
+ * 
+ * - first order: if g_i &lt;= 0 for every x, x_i can be fixed to 0; if
+ * g_i &gt;= 0 for every x, x_i can be fixed to 1.
+ * 
+ * - second order, for each pair of interacting variables i, j: if turning i
+ * on never pays off while x_j = 0, and turning j on never pays off while
+ * x_i = 1, then any solution with x_i = 1 can be changed into one with
+ * x_i = 0 that is no worse, by turning j and then i off, so x_i can be fixed
+ * to 0. Symmetrically for fixing x_i to 1.
+ * 
+ * The rules are applied one fixing at a time, updating the bounds of the
+ * neighbours, until no rule applies. With prohibited triples (QBFPT), fixing
+ * to 0 is always safe, as turning variables off never creates a prohibited
+ * triple; fixing to 1 is only done for variables (and pairs) that belong to
+ * no triple.
+ * 
+ * [1] Boros, Hammer, Tavares. Preprocessing of unconstrained quadratic binary
+ * optimization. RUTCOR Research Report RRR 10-2006.
+ * 
+ * @author arthurpd
+ */
+public class Persistency {
+
+	/**
+	 * value of the variables that are not fixed
+	 */
+	public static final int FREE = -1;
+
+	/**
+	 * Dimension of the original problem.
+	 */
+	public final int size;
+
+	/**
+	 * value[i] is 0 or 1 if variable i is fixed, {@link #FREE} otherwise
+	 */
+	public final int[] value;
+
+	/**
+	 * value of f restricted to the variables fixed to 1
+	 */
+	public final double offset;
+
+	private final CoefficientMatrix A;
+
+	private final int[] triples;
+
+	private final boolean[] inTriple;
+
+	/* symmetric adjacency: s_ik for k != i */
+	private final int[] start;
+
+	private final int[] nbrs;
+
+	private final double[] weights;
+
+	/*
+	 * for free variables: c = a_ii plus the interactions with variables fixed
+	 * to 1, pos (neg) = sum of the positive (negative) interactions with free
+	 * variables; the gain lies in [c + neg, c + pos]
+	 */
+	private final double[] c;
+
+	private final double[] pos;
+
+	private final double[] neg;
+
+	/**
+	 * original index of each free variable, in increasing order
+	 */
+	private int[] free;
+
+	/**
+	 * the reduced matrix, once built
+	 */
+	private CoefficientMatrix reduced;
+
+	/**
+	 * Preprocesses an unconstrained QBF.
+	 * 
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 */
+	public Persistency(CoefficientMatrix A) {
+		this(A, new int[0]);
+	}
+
+	/**
+	 * Preprocesses a QBF with prohibited triples.
+	 * 
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param triples
+	 *            Prohibited triples, three variables each.
+	 */
+	public Persistency(CoefficientMatrix A, int[] triples) {
+
+		this.A = A;
+		this.size = A.size;
+		this.triples = triples;
+		this.value = new int[size];
+		Arrays.fill(value, FREE);
+		this.inTriple = new boolean[size];
+		for (int v : triples)
+			inTriple[v] = true;
+
+		c = new double[size];
+		pos = new double[size];
+		neg = new double[size];
+		final int[] degree = new int[size];
+		A.forEachNonzero((i, j, a) -> {
+			if (i == j) {
+				c[i] += a;
+			} else {
+				degree[i]++;
+				degree[j]++;
+			}
+		});
+		start = new int[size + 1];
+		for (int i = 0; i < size; i++)
+			start[i + 1] = start[i] + degree[i];
+		nbrs = new int[start[size]];
+		weights = new double[start[size]];
+		final int[] fill = Arrays.copyOf(start, size);
+		A.forEachNonzero((i, j, a) -> {
+			if (i != j) {
+				nbrs[fill[i]] = j;
+				weights[fill[i]++] = a;
+				nbrs[fill[j]] = i;
+				weights[fill[j]++] = a;
+			}
+		});
+		for (int i = 0; i < size; i++) {
+			for (int p = start[i]; p < start[i + 1]; p++) {
+				pos[i] += Math.max(0.0, weights[p]);
+				neg[i] += Math.min(0.0, weights[p]);
+			}
+		}
+
+		applyRules();
+
+		final double[] sum = new double[1];
+		A.forEachNonzero((i, j, a) -> {
+			if (value[i] == 1 && value[j] == 1)
+				sum[0] += a;
+		});
+		offset = sum[0];
+	}
+
+	private void applyRules() {
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+
+			for (int i = 0; i < size; i++) {
+				if (value[i] != FREE)
+					continue;
+				if (c[i] + pos[i] <= 0) {
+					fix(i, 0);
+					changed = true;
+				} else if (!inTriple[i] && c[i] + neg[i] >= 0) {
+					fix(i, 1);
+					changed = true;
+				}
+			}
+
+			for (int i = 0; i < size; i++) {
+				for (int p = start[i]; p < start[i + 1] && value[i] == FREE; p++) {
+					int j = nbrs[p];
+					if (value[j] != FREE)
+						continue;
+					double s = weights[p];
+					double upI = c[i] + pos[i] - Math.max(0.0, s), upJ = c[j] + pos[j] - Math.max(0.0, s);
+					double lowI = c[i] + neg[i] - Math.min(0.0, s), lowJ = c[j] + neg[j] - Math.min(0.0, s);
+					if (upI <= 0 && upJ + s <= 0) {
+						fix(i, 0);
+						changed = true;
+					} else if (!inTriple[i] && !inTriple[j] && lowI + s >= 0 && lowJ >= 0) {
+						fix(i, 1);
+						changed = true;
+					}
+				}
+			}
+		}
+
+		int count = 0;
+		for (int i = 0; i < size; i++)
+			if (value[i] == FREE)
+				count++;
+		free = new int[count];
+		count = 0;
+		for (int i = 0; i < size; i++)
+			if (value[i] == FREE)
+				free[count++] = i;
+	}
+
+	private void fix(int i, int v) {
+		value[i] = v;
+		for (int p = start[i]; p < start[i + 1]; p++) {
+			int k = nbrs[p];
+			if (value[k] != FREE)
+				continue;
+			double s = weights[p];
+			pos[k] -= Math.max(0.0, s);
+			neg[k] -= Math.min(0.0, s);
+			if (v == 1)
+				c[k] += s;
+		}
+	}
+
+	/**
+	 * @return The number of variables left free.
+	 */
+	public int freeCount() {
+		return free.length;
+	}
+
+	/**
+	 * @return The number of variables fixed by the rules.
+	 */
+	public int fixedCount() {
+		return size - free.length;
+	}
+
+	/**
+	 * @return The original index of each variable of the reduced problem.
+	 */
+	public int[] freeVariables() {
+		return free.clone();
+	}
+
+	/**
+	 * Builds the matrix of the reduced problem, over the free variables only.
+	 * Interactions with variables fixed to 1 become part of the diagonal, so
+	 * that f(x) = {@link #offset} + x_F'.A_F.x_F for every x consistent with
+	 * the fixings. It is built once and shared by the callers.
+	 * 
+	 * @return The reduced coefficient matrix.
+	 */
+	public CoefficientMatrix reducedMatrix() {
+
+		if (reduced != null)
+			return reduced;
+
+		final int[] index = new int[size];
+		Arrays.fill(index, -1);
+		for (int r = 0; r < free.length; r++)
+			index[free[r]] = r;
+
+		final int[] count = new int[1];
+		A.forEachNonzero((i, j, a) -> {
+			if (index[i] >= 0 && (index[j] >= 0 || value[j] == 1) || index[j] >= 0 && value[i] == 1)
+				count[0]++;
+		});
+		final int[] rows = new int[count[0]];
+		final int[] cols = new int[count[0]];
+		final double[] values = new double[count[0]];
+		count[0] = 0;
+		A.forEachNonzero((i, j, a) -> {
+			int r = -1, q = -1;
+			if (index[i] >= 0 && index[j] >= 0) {
+				r = index[i];
+				q = index[j];
+			} else if (index[i] >= 0 && value[j] == 1) {
+				r = q = index[i];
+			} else if (index[j] >= 0 && value[i] == 1) {
+				r = q = index[j];
+			}
+			if (r >= 0) {
+				rows[count[0]] = r;
+				cols[count[0]] = q;
+				values[count[0]++] = a;
+			}
+		});
+
+		reduced = CoefficientMatrix.fromEntries(free.length, rows, cols, values, count[0]);
+		return reduced;
+	}
+
+	/**
+	 * Maps the prohibited triples to the reduced problem. Triples with a
+	 * variable fixed to 0 can no longer be violated and are dropped; no
+	 * variable of a triple is ever fixed to 1.
+	 * 
+	 * @return The prohibited triples of the reduced problem.
+	 */
+	public int[] reducedTriples() {
+
+		int[] index = new int[size];
+		Arrays.fill(index, -1);
+		for (int r = 0; r < free.length; r++)
+			index[free[r]] = r;
+
+		int[] reduced = new int[triples.length];
+		int count = 0;
+		for (int t = 0; t < triples.length; t += 3) {
+			if (index[triples[t]] >= 0 && index[triples[t + 1]] >= 0 && index[triples[t + 2]] >= 0) {
+				for (int k = 0; k < 3; k++)
+					reduced[count++] = index[triples[t + k]];
+			}
+		}
+
+		return Arrays.copyOf(reduced, count);
+	}
+
+	/**
+	 * Maps a solution of the reduced problem back to the original problem,
+	 * adding the variables fixed to 1 and the {@link #offset} to its cost.
+	 * 
+	 * @param reduced
+	 *            A solution of the reduced problem.
+	 * @return The corresponding solution of the original problem.
+	 */
+	public Solution<Integer> expand(Solution<Integer> reduced) {
+
+		boolean[] set = new boolean[size];
+		for (int i = 0; i < size; i++)
+			set[i] = value[i] == 1;
+		for (Integer r : reduced)
+			set[free[r]] = true;
+
+		Solution<Integer> sol = new Solution<Integer>();
+		for (int i = 0; i < size; i++)
+			if (set[i])
+				sol.add(i);
+		sol.cost = reduced.cost + offset;
+
+		return sol;
+	}
+
+}
@@ -0,0 +1,94 @@
+package problems.qbf;
+
+import solutions.Solution;
+
+/**
+ * The problem a GA evolves after preprocessing a QBF, possibly with
+ * prohibited triples: variables fixed by {@link Persistency}, then the free
+ * ones reordered by {@link VariableOrdering}, each step only if asked to.
+ * Decoded solutions are mapped back to the original problem by
+ * {@link #restore(Solution)}.
+ *
+ * @author arthurpd
+ */
+public class Preprocessing {
+
+	/**
+	 * the variable fixing, or null if the variables are not fixed
+	 */
+	public final Persistency reduction;
+
+	/**
+	 * the reordering of the (free) variables, or null if they keep their
+	 * original order
+	 */
+	public final VariableOrdering ordering;
+
+	/**
+	 * the matrix of coefficients of the problem evolved
+	 */
+	public final CoefficientMatrix A;
+
+	/**
+	 * the prohibited triples of the problem evolved, three variables each
+	 */
+	public final int[] triples;
+
+	/**
+	 * @param A
+	 *            The matrix of coefficients of the original problem.
+	 * @param triples
+	 *            The prohibited triples of the original problem, three
+	 *            variables each, none for a QBF.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency.
+	 * @param reorder
+	 *            Whether to reorder the variables by interaction.
+	 */
+	public Preprocessing(CoefficientMatrix A, int[] triples, boolean fixVariables, boolean reorder) {
+
+		reduction = fixVariables ? new Persistency(A, triples) : null;
+		if (reduction != null) {
+			A = reduction.reducedMatrix();
+			triples = reduction.reducedTriples();
+		}
+		ordering = reorder ? new VariableOrdering(A, triples) : null;
+		if (ordering != null) {
+			A = ordering.permutedMatrix();
+			triples = ordering.permutedTriples(triples);
+		}
+		this.A = A;
+		this.triples = triples;
+	}
+
+	/**
+	 * @return Whether the problem evolved is the original one, neither reduced
+	 *         nor reordered.
+	 */
+	public boolean isIdentity() {
+		return reduction == null && ordering == null;
+	}
+
+	/**
+	 * @return The value of the variables fixed to 1, added to the value of
+	 *         every solution of the problem evolved.
+	 */
+	public double offset() {
+		return reduction == null ? 0.0 : reduction.offset;
+	}
+
+	/**
+	 * Maps a solution of the problem evolved back to the original problem,
+	 * adding the {@link #offset()} to its cost.
+	 *
+	 * @param evolved
+	 *            A solution of the problem evolved.
+	 * @return The corresponding solution of the original problem.
+	 */
+	public Solution<Integer> restore(Solution<Integer> evolved) {
+		if (ordering != null)
+			evolved = ordering.restore(evolved);
+		return reduction == null ? evolved : reduction.expand(evolved);
+	}
+
+}
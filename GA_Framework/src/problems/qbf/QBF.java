@@ -1,13 +1,9 @@
 package problems.qbf;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
-import metaheuristics.ga.AbstractGA;
 import problems.Evaluator;
 import solutions.Solution;
 
@@ -40,7 +36,23 @@ public class QBF implements Evaluator<Integer> {
 	/**
 	 * The matrix A of coefficients for the QBF f(x) = x'.A.x
 	 */
-	public Double[][] A;
+	public CoefficientMatrix A;
+
+	/**
+	 * the upper bound, once computed
+	 */
+	private volatile double upperBound = Double.NaN;
+
+	/**
+	 * the content hash, once computed
+	 */
+	private volatile String contentHash;
+
+	/**
+	 * evaluates the vectors of {@link #A}, splitting the evaluations of very
+	 * large instances across the threads of a pool
+	 */
+	private ParallelEvaluation parallel;
 
 	/**
 	 * The constructor for QuadracticBinaryFunction class. The filename of the
@@ -55,6 +67,35 @@ public class QBF implements Evaluator<Integer> {
 	public QBF(String filename) throws IOException {
 		size = readInput(filename);
 		variables = allocateVariables();
+		parallel = new ParallelEvaluation(A, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds a QBF over an existing matrix of coefficients, such as the
+	 * reduced matrix of a {@link Persistency} preprocessing.
+	 * 
+	 * @param A
+	 *            The matrix of coefficients of the QBF.
+	 */
+	public QBF(CoefficientMatrix A) {
+		this.A = A;
+		size = A.size;
+		variables = allocateVariables();
+		parallel = new ParallelEvaluation(A, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds a QBF sharing the (read-only) matrix of coefficients and upper
+	 * bound of another one, with variables of its own, so that each thread
+	 * can work on its own copy of a loaded instance.
+	 * 
+	 * @param other
+	 *            The QBF being copied.
+	 */
+	public QBF(QBF other) {
+		this(other.A);
+		upperBound = other.upperBound;
+		contentHash = other.contentHash;
 	}
 
 	/**
@@ -102,27 +143,74 @@ public class QBF implements Evaluator<Integer> {
 
 	}
 
+	/**
+	 * {@inheritDoc} The vector is evaluated directly by the coefficient
+	 * matrix, without going through {@link #variables}.
+	 */
+	@Override
+	public double evaluate(long[] bits) {
+		return parallel.evaluate(bits);
+	}
+
+	/**
+	 * {@inheritDoc} The vector is evaluated directly by the coefficient
+	 * matrix, without going through {@link #variables}.
+	 */
+	@Override
+	public double evaluate(int[] ones, int count) {
+		return parallel.evaluate(ones, count);
+	}
+
+	/**
+	 * Sets the pool that the evaluations of single vectors are split across,
+	 * when the instance is large enough and the pool is idle, see
+	 * {@link ParallelEvaluation}. By default, it is the common pool.
+	 * 
+	 * @param pool
+	 *            The pool, or null for evaluating on the calling thread only.
+	 */
+	public void setEvaluationPool(ForkJoinPool pool) {
+		parallel = new ParallelEvaluation(A, pool);
+	}
+
+	/**
+	 * @return A key identifying the instance by its content, see
+	 *         {@link CoefficientMatrix#contentHash(int[])}, computed once.
+	 */
+	public String contentHash() {
+		if (contentHash == null)
+			contentHash = "qbf-" + A.contentHash(new int[0]);
+		return contentHash;
+	}
+
+	/**
+	 * @return An upper bound on the value of any solution, as given by
+	 *         {@link QBFBounds#upperBound(CoefficientMatrix)}, computed once.
+	 */
+	public double upperBound() {
+		if (Double.isNaN(upperBound))
+			upperBound = QBFBounds.upperBound(A);
+		return upperBound;
+	}
+
 	/**
 	 * Evaluates a QBF by calculating the matrix multiplication that defines the
-	 * QBF: f(x) = x'.A.x .
+	 * QBF: f(x) = x'.A.x . Since x is binary, only the coefficients a_ij with
+	 * x_i = x_j = 1 are visited, in the storage chosen by
+	 * {@link CoefficientMatrix#read}.
 	 * 
 	 * @return The value of the QBF.
 	 */
 	public Double evaluateQBF() {
 
-		Double aux = (double) 0, sum = (double) 0;
-		Double vecAux[] = new Double[size];
-
+		int[] ones = new int[size];
+		int count = 0;
 		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < size; j++) {
-				aux += variables[j] * A[i][j];
-			}
-			vecAux[i] = aux;
-			sum += aux * variables[i];
-			aux = (double) 0;
+			if (variables[i] > 0.5)
+				ones[count++] = i;
 		}
 
-		return sum;
+		return parallel.evaluate(ones, count);
 
 	}
 	
@@ -140,24 +228,9 @@ public class QBF implements Evaluator<Integer> {
 	 */
 	protected Integer readInput(String filename) throws IOException {
 
-		Reader fileInst = new BufferedReader(new FileReader(filename));
-		StreamTokenizer stok = new StreamTokenizer(fileInst);
+		A = CoefficientMatrix.read(filename);
 
-		stok.nextToken();
-		Integer _size = (int) stok.nval;
-		A = new Double[_size][_size];
-
-		for (int i = 0; i < _size; i++) {
-			for (int j = i; j < _size; j++) {
-				stok.nextToken();
-				A[i][j] = stok.nval;
-				//A[j][i] = A[i][j];
-				if (j>i)
-					A[j][i] = 0.0;
-			}
-		}
-
-		return _size;
+		return A.size;
 
 	}
 
@@ -186,7 +259,7 @@ public class QBF implements Evaluator<Integer> {
 
 		for (int i = 0; i < size; i++) {
 			for (int j = i; j < size; j++) {
-				System.out.print(A[i][j] + " ");
+				System.out.print(A.get(i, j) + " ");
 			}
 			System.out.println();
 		}
@@ -245,10 +318,4 @@ public class QBF implements Evaluator<Integer> {
 
 	}
 
-	@Override
-	public void makeViable(AbstractGA<Integer, Integer>.Chromosome chromosome) {
-		// TODO Auto-generated method stub
-		
-	}
-
 }
@@ -0,0 +1,138 @@
+package problems.qbf;
+
+/**
+ * Upper bounds on max x'.A.x, used for reporting the optimality gap of a run
+ * and for stopping it once the gap closes.
+ * 
+ * Instances with up to {@link #EXHAUSTIVE_SIZE} variables are solved exactly
+ * by enumerating all 2^n vectors in Gray code order, each step costing one
+ * O(n) flip delta update; a 20 variable instance takes a few milliseconds.
+ * Larger instances are bounded by {@link RoofDuality}, which is tight mostly
+ * on sparse or structured instances: on dense ones with mixed-sign
+ * coefficients, such as the random qbf instances, it is hardly better than
+ * the sum of the positive coefficients, and its implication network takes
+ * O(nnz) memory. The roof dual is thus only computed for matrices with at
+ * most {@link #ROOF_DUAL_DENSITY} nonzeros in the upper triangle and at most
+ * {@link #ROOF_DUAL_NONZEROS} of them; other matrices are bounded by the sum
+ * of their positive coefficients, in a single pass.
+ * 
+ * @author arthurpd
+ */
+public final class QBFBounds {
+
+	/**
+	 * largest instance solved exactly by enumeration
+	 */
+	public static final int EXHAUSTIVE_SIZE = 20;
+
+	/**
+	 * largest fraction of nonzeros in the upper triangle for which the roof
+	 * dual is computed
+	 */
+	public static final double ROOF_DUAL_DENSITY = CoefficientMatrix.SPARSE_DENSITY;
+
+	/**
+	 * largest number of nonzeros for which the roof dual is computed
+	 */
+	public static final long ROOF_DUAL_NONZEROS = 1L << 22;
+
+	private QBFBounds() {
+	}
+
+	/**
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @return An upper bound on max x'.A.x over binary x (the maximum itself
+	 *         for small instances).
+	 */
+	public static double upperBound(CoefficientMatrix A) {
+		return upperBound(A, new int[0]);
+	}
+
+	/**
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param triples
+	 *            Prohibited triples, three variables each, that must not be
+	 *            all set. They only tighten the bound of small instances, as
+	 *            the roof dual ignores them.
+	 * @return An upper bound on max x'.A.x over binary x that contain no
+	 *         prohibited triple (the maximum itself for small instances).
+	 */
+	public static double upperBound(CoefficientMatrix A, int[] triples) {
+		if (A.size <= EXHAUSTIVE_SIZE)
+			return exhaustiveMaximum(A, triples);
+
+		long[] nonzeros = { 0 };
+		double[] positive = { 0.0 };
+		A.forEachNonzero((i, j, a) -> {
+			nonzeros[0]++;
+			if (a > 0)
+				positive[0] += a;
+		});
+		if (nonzeros[0] <= ROOF_DUAL_NONZEROS && nonzeros[0] <= ROOF_DUAL_DENSITY * A.size * (A.size + 1) / 2)
+			return Math.min(positive[0], new RoofDuality(A, nonzeros[0]).upperBound());
+		return positive[0];
+	}
+
+	/**
+	 * Computes max x'.A.x by Gray code enumeration, over the vectors that
+	 * contain no prohibited triple. The number of prohibited triples fully set
+	 * is maintained incrementally as well.
+	 * 
+	 * @param A
+	 *            The coefficient matrix of a QBF with at most 30 variables.
+	 * @param triples
+	 *            Prohibited triples, three variables each.
+	 * @return The maximum of x'.A.x.
+	 */
+	public static double exhaustiveMaximum(CoefficientMatrix A, int[] triples) {
+
+		int n = A.size;
+		if (n > 30)
+			throw new IllegalArgumentException("too many variables for enumeration: " + n);
+
+		/* incidence[k] lists the triples containing variable k */
+		int[] degree = new int[n];
+		for (int v : triples)
+			degree[v]++;
+		int[][] incidence = new int[n][];
+		for (int k = 0; k < n; k++)
+			incidence[k] = new int[degree[k]];
+		for (int t = 0; t < triples.length; t++)
+			incidence[triples[t]][--degree[triples[t]]] = t / 3;
+		int[] setInTriple = new int[triples.length / 3];
+		int violated = 0;
+
+		/* s[k][j] = a_kj + a_jk off the diagonal, field[k] = delta of turning x_k on */
+		double[][] s = new double[n][n];
+		double[] field = new double[n];
+		for (int i = 0; i < n; i++) {
+			field[i] = A.get(i, i);
+			for (int j = i + 1; j < n; j++)
+				s[i][j] = s[j][i] = A.get(i, j);
+		}
+
+		boolean[] x = new boolean[n];
+		double value = 0.0, best = 0.0;
+		for (long step = 1; step < (1L << n); step++) {
+			int k = Long.numberOfTrailingZeros(step);
+			double sign = x[k] ? -1.0 : 1.0;
+			value += sign * field[k];
+			x[k] = !x[k];
+			for (int j = 0; j < n; j++)
+				field[j] += sign * s[k][j];
+			for (int t : incidence[k]) {
+				if (x[k] && ++setInTriple[t] == 3)
+					violated++;
+				else if (!x[k] && setInTriple[t]-- == 3)
+					violated--;
+			}
+			if (violated == 0 && value > best)
+				best = value;
+		}
+
+		return best;
+	}
+
+}
@@ -0,0 +1,248 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+/**
+ * Roof duality [1] for the QBF f(x) = x'.A.x . It computes an upper bound on
+ * max f(x) equal to the bound of the LP relaxation of the standard
+ * linearization, but through a maximum flow instead of an LP solver.
+ * 
+ * The problem is restated as the minimization of g(x) = -f(x), written as a
+ * posiform: a constant a0 plus nonnegative multiples of literals (x_i or its
+ * complement) and of products of two literals. Each term a.u becomes the
+ * arcs (x0, ~u) and (u, ~x0) of the implication network, and each term a.u.v
+ * the arcs (u, ~v) and (v, ~u), all with capacity a/2. The roof dual bound is
+ * then min g &gt;= a0 + (maximum flow from x0 to ~x0), i.e. max f &lt;= -(a0 +
+ * flow).
+ * 
+ * [1] Boros, Hammer, Tavares. Preprocessing of unconstrained quadratic binary
+ * optimization. RUTCOR Research Report RRR 10-2006.
+ * 
+ * @author arthurpd
+ */
+public class RoofDuality {
+
+	private static final double EPS = 1e-9;
+
+	/**
+	 * Dimension of the QBF.
+	 */
+	protected final int size;
+
+	/**
+	 * the constant term a0 of the posiform
+	 */
+	protected double constant;
+
+	/**
+	 * the maximum flow through the implication network
+	 */
+	protected double flow;
+
+	/**
+	 * whether the coefficients are integral, making the optimum integral too
+	 */
+	protected final boolean integral;
+
+	/*
+	 * The implication network. Node i is the literal x_i, node size + i its
+	 * complement, and the source x0 and sink ~x0 are the last two nodes. Arc e
+	 * and its residual e ^ 1 are stored side by side.
+	 */
+	protected final int source, sink;
+
+	protected int arcs = 0;
+
+	protected int[] head;
+
+	protected int[] next;
+
+	protected int[] to;
+
+	protected double[] cap;
+
+	private int[] level;
+
+	private int[] it;
+
+	/**
+	 * Builds the implication network of the QBF and computes its maximum flow.
+	 * 
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 */
+	public RoofDuality(CoefficientMatrix A) {
+		this(A, nonzeros(A));
+	}
+
+	/**
+	 * Builds the implication network of a QBF whose number of nonzeros is
+	 * known, and computes its maximum flow.
+	 * 
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param nonzeros
+	 *            The number of nonzero coefficients of A.
+	 */
+	public RoofDuality(CoefficientMatrix A, long nonzeros) {
+
+		size = A.size;
+		source = 2 * size;
+		sink = 2 * size + 1;
+		integral = A.isIntegral();
+		head = new int[2 * size + 2];
+		Arrays.fill(head, -1);
+
+		/* one term per nonzero and per variable, each of two arcs and their residuals */
+		long expected = 4 * (nonzeros + size);
+		if (expected > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("too many nonzeros for the implication network: " + nonzeros);
+		next = new int[(int) expected];
+		to = new int[(int) expected];
+		cap = new double[(int) expected];
+
+		/* g = -f; negative quadratic terms are complemented into linear ones */
+		final double[] linear = new double[size];
+		A.forEachNonzero((i, j, a) -> {
+			double c = -a;
+			if (i == j) {
+				linear[i] += c;
+			} else if (c > 0) {
+				addTerm(i, j, c);
+			} else {
+				linear[i] += c;
+				addTerm(i, complement(j), -c);
+			}
+		});
+
+		for (int i = 0; i < size; i++) {
+			if (linear[i] >= 0) {
+				addTerm(i, source, linear[i]);
+			} else {
+				constant += linear[i];
+				addTerm(complement(i), source, -linear[i]);
+			}
+		}
+
+		flow = maxFlow();
+	}
+
+	private static long nonzeros(CoefficientMatrix A) {
+		long[] count = { 0 };
+		A.forEachNonzero((i, j, a) -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * @return The complement of literal (node) u.
+	 */
+	protected int complement(int u) {
+		if (u >= 2 * size)
+			return u == source ? sink : source;
+		return u < size ? u + size : u - size;
+	}
+
+	/**
+	 * Adds the posiform term a.u.v (v = x0 for linear terms) to the network.
+	 */
+	private void addTerm(int u, int v, double a) {
+		if (a <= 0)
+			return;
+		if (v == source) {
+			addArc(source, complement(u), a / 2);
+			addArc(u, sink, a / 2);
+		} else {
+			addArc(u, complement(v), a / 2);
+			addArc(v, complement(u), a / 2);
+		}
+	}
+
+	private void addArc(int u, int v, double c) {
+		to[arcs] = v;
+		cap[arcs] = c;
+		next[arcs] = head[u];
+		head[u] = arcs++;
+		to[arcs] = u;
+		cap[arcs] = 0;
+		next[arcs] = head[v];
+		head[v] = arcs++;
+	}
+
+	/**
+	 * Dinic's algorithm, with an iterative search so that long augmenting
+	 * paths do not overflow the stack on large instances.
+	 */
+	private double maxFlow() {
+
+		int nodes = head.length;
+		level = new int[nodes];
+		it = new int[nodes];
+		int[] path = new int[nodes];
+		double total = 0.0;
+
+		while (levels()) {
+			System.arraycopy(head, 0, it, 0, nodes);
+			int top = 0;
+			int u = source;
+			while (true) {
+				if (u == sink) {
+					double f = Double.POSITIVE_INFINITY;
+					for (int k = 0; k < top; k++)
+						f = Math.min(f, cap[path[k]]);
+					for (int k = 0; k < top; k++) {
+						cap[path[k]] -= f;
+						cap[path[k] ^ 1] += f;
+					}
+					total += f;
+					top = 0;
+					u = source;
+					continue;
+				}
+				int e = it[u];
+				while (e != -1 && (cap[e] <= EPS || level[to[e]] != level[u] + 1))
+					e = next[e];
+				it[u] = e;
+				if (e != -1) {
+					path[top++] = e;
+					u = to[e];
+				} else {
+					if (u == source)
+						break;
+					level[u] = -1;
+					u = to[path[--top] ^ 1];
+					it[u] = next[it[u]];
+				}
+			}
+		}
+
+		return total;
+	}
+
+	private boolean levels() {
+		Arrays.fill(level, -1);
+		int[] queue = new int[level.length];
+		int qh = 0, qt = 0;
+		queue[qt++] = source;
+		level[source] = 0;
+		while (qh < qt) {
+			int u = queue[qh++];
+			for (int e = head[u]; e != -1; e = next[e]) {
+				if (cap[e] > EPS && level[to[e]] < 0) {
+					level[to[e]] = level[u] + 1;
+					queue[qt++] = to[e];
+				}
+			}
+		}
+		return level[sink] >= 0;
+	}
+
+	/**
+	 * @return An upper bound on the maximum of x'.A.x over binary x, rounded
+	 *         down when the coefficients are integral.
+	 */
+	public double upperBound() {
+		double bound = -(constant + flow);
+		return integral ? Math.floor(bound + EPS) : bound;
+	}
+
+}
@@ -0,0 +1,257 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+import solutions.PackedBits;
+
+/**
+ * {@link CoefficientMatrix} for sparse instances, storing only the nonzero
+ * coefficients of the upper triangle in compressed sparse row (CSR) form.
+ * Integer coefficients are kept as ints, others as doubles.
+ * 
+ * A full evaluation costs O(nnz) and {@link #flipDelta} costs O(degree), so
+ * instances with hundreds of thousands of variables fit comfortably as long
+ * as the number of nonzeros does.
+ * 
+ * @author arthurpd
+ */
+public final class SparseMatrix extends CoefficientMatrix {
+
+	/**
+	 * the nonzeros of row i are at positions rowStart[i] .. rowStart[i+1]-1
+	 */
+	public final int[] rowStart;
+
+	/**
+	 * column of each nonzero, increasing within a row
+	 */
+	public final int[] cols;
+
+	/**
+	 * value of each nonzero, when the matrix is integral (null otherwise)
+	 */
+	public final int[] ivalues;
+
+	/**
+	 * value of each nonzero, when the matrix is not integral (null otherwise)
+	 */
+	public final double[] dvalues;
+
+	/**
+	 * symmetric adjacency (a_ij + a_ji for j != i) and diagonal, built on the
+	 * first call to {@link #flipDelta}
+	 */
+	private volatile Adjacency adjacency;
+
+	private static final class Adjacency {
+		int[] start;
+		int[] nbrs;
+		double[] weights;
+		double[] diagonal;
+	}
+
+	/**
+	 * Builds the matrix from its CSR arrays. Exactly one of ivalues and
+	 * dvalues must be non-null.
+	 */
+	public SparseMatrix(int size, int[] rowStart, int[] cols, int[] ivalues, double[] dvalues) {
+		super(size);
+		this.rowStart = rowStart;
+		this.cols = cols;
+		this.ivalues = ivalues;
+		this.dvalues = dvalues;
+	}
+
+	/**
+	 * @return The number of stored nonzeros.
+	 */
+	public int nonzeros() {
+		return rowStart[size];
+	}
+
+	/**
+	 * @return The number of nonzeros in row i (the degree of variable i in
+	 *         the upper triangle).
+	 */
+	public int rowLength(int i) {
+		return rowStart[i + 1] - rowStart[i];
+	}
+
+	@Override
+	public double get(int i, int j) {
+		if (j < i)
+			return 0.0;
+		int k = Arrays.binarySearch(cols, rowStart[i], rowStart[i + 1], j);
+		if (k < 0)
+			return 0.0;
+		return ivalues != null ? ivalues[k] : dvalues[k];
+	}
+
+	@Override
+	public void forEachNonzero(EntryConsumer consumer) {
+		for (int i = 0; i < size; i++) {
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++)
+				consumer.accept(i, cols[k], ivalues != null ? ivalues[k] : dvalues[k]);
+		}
+	}
+
+	@Override
+	public double evaluate(int[] ones, int count) {
+		long[] bits = new long[PackedBits.words(size)];
+		for (int a = 0; a < count; a++)
+			PackedBits.set(bits, ones[a]);
+		return evaluate(bits);
+	}
+
+	@Override
+	public double evaluateRows(long[] bits, int[] ones, int count, int from, int to) {
+
+		if (ivalues != null) {
+			long sum = 0;
+			for (int a = from; a < to; a++) {
+				int i = ones[a];
+				for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+					int j = cols[k];
+					if ((bits[j >>> 6] & (1L << j)) != 0)
+						sum += ivalues[k];
+				}
+			}
+			return sum;
+		}
+
+		double sum = 0.0;
+		for (int a = from; a < to; a++) {
+			int i = ones[a];
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+				int j = cols[k];
+				if ((bits[j >>> 6] & (1L << j)) != 0)
+					sum += dvalues[k];
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public long rowWork(int[] ones, int count, int a) {
+		return rowLength(ones[a]);
+	}
+
+	@Override
+	public double evaluate(long[] bits) {
+
+		if (ivalues != null) {
+			long sum = 0;
+			for (int w = 0; w < bits.length; w++) {
+				for (long word = bits[w]; word != 0; word &= word - 1) {
+					int i = (w << 6) + Long.numberOfTrailingZeros(word);
+					for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+						int j = cols[k];
+						if ((bits[j >>> 6] & (1L << j)) != 0)
+							sum += ivalues[k];
+					}
+				}
+			}
+			return sum;
+		}
+
+		double sum = 0.0;
+		for (int w = 0; w < bits.length; w++) {
+			for (long word = bits[w]; word != 0; word &= word - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(word);
+				for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+					int j = cols[k];
+					if ((bits[j >>> 6] & (1L << j)) != 0)
+						sum += dvalues[k];
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public double flipDelta(long[] bits, int k) {
+
+		Adjacency adj = adjacency();
+		double delta = adj.diagonal[k];
+		for (int p = adj.start[k]; p < adj.start[k + 1]; p++) {
+			int j = adj.nbrs[p];
+			if ((bits[j >>> 6] & (1L << j)) != 0)
+				delta += adj.weights[p];
+		}
+
+		return PackedBits.get(bits, k) ? -delta : delta;
+	}
+
+	/**
+	 * {@inheritDoc} Only the neighbours of k are visited, in O(degree).
+	 */
+	@Override
+	public void forEachInteraction(int k, EntryConsumer consumer) {
+
+		Adjacency adj = adjacency();
+		for (int p = adj.start[k]; p < adj.start[k + 1]; p++)
+			consumer.accept(k, adj.nbrs[p], adj.weights[p]);
+	}
+
+	private Adjacency adjacency() {
+		Adjacency adj = adjacency;
+		if (adj == null) {
+			synchronized (this) {
+				adj = adjacency;
+				if (adj == null)
+					adjacency = adj = buildAdjacency();
+			}
+		}
+		return adj;
+	}
+
+	private Adjacency buildAdjacency() {
+
+		Adjacency adj = new Adjacency();
+		adj.diagonal = new double[size];
+		int[] degree = new int[size];
+		for (int i = 0; i < size; i++) {
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+				if (cols[k] != i) {
+					degree[i]++;
+					degree[cols[k]]++;
+				}
+			}
+		}
+
+		adj.start = new int[size + 1];
+		for (int i = 0; i < size; i++)
+			adj.start[i + 1] = adj.start[i] + degree[i];
+		adj.nbrs = new int[adj.start[size]];
+		adj.weights = new double[adj.start[size]];
+
+		int[] fill = Arrays.copyOf(adj.start, size);
+		for (int i = 0; i < size; i++) {
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+				int j = cols[k];
+				double v = ivalues != null ? ivalues[k] : dvalues[k];
+				if (j == i) {
+					adj.diagonal[i] = v;
+				} else {
+					adj.nbrs[fill[i]] = j;
+					adj.weights[fill[i]++] = v;
+					adj.nbrs[fill[j]] = i;
+					adj.weights[fill[j]++] = v;
+				}
+			}
+		}
+
+		return adj;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return ivalues != null;
+	}
+
+	@Override
+	public long memoryBytes() {
+		return 4L * (size + 1) + (long) nonzeros() * (Integer.BYTES + (ivalues != null ? Integer.BYTES : Double.BYTES));
+	}
+
+}
@@ -0,0 +1,64 @@
+package problems.qbf;
+
+import solutions.PackedBits;
+
+/**
+ * The prohibited triples of a QBFPT indexed by variable, for checking in
+ * O(triples of k) whether setting a variable k would complete one of them.
+ * 
+ * @author arthurpd
+ */
+class TripleIndex {
+
+	private final int[] triples;
+
+	/**
+	 * triplesOf[start[i]..start[i+1]) are the triples (indices of their first
+	 * variable in {@link #triples}) that contain variable i
+	 */
+	private final int[] start;
+
+	private final int[] triplesOf;
+
+	/**
+	 * @param size
+	 *            Number of variables.
+	 * @param triples
+	 *            Prohibited triples, three variables each.
+	 */
+	TripleIndex(int size, int[] triples) {
+		this.triples = triples.clone();
+		this.start = new int[size + 1];
+		for (int v : triples)
+			start[v + 1]++;
+		for (int i = 0; i < size; i++)
+			start[i + 1] += start[i];
+		this.triplesOf = new int[triples.length];
+		int[] fill = new int[size];
+		for (int t = 0; t < triples.length; t++) {
+			int v = triples[t];
+			triplesOf[start[v] + fill[v]++] = t - t % 3;
+		}
+	}
+
+	/**
+	 * @param bits
+	 *            The packed solution.
+	 * @param k
+	 *            A variable.
+	 * @return Whether the other two variables of one of the triples of k are
+	 *         set, i.e. setting k would make the solution infeasible.
+	 */
+	boolean completes(long[] bits, int k) {
+		for (int p = start[k]; p < start[k + 1]; p++) {
+			int t = triplesOf[p], count = 0;
+			for (int m = 0; m < 3; m++)
+				if (triples[t + m] != k && PackedBits.get(bits, triples[t + m]))
+					count++;
+			if (count == 2)
+				return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,320 @@
+package problems.qbf;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import solutions.Solution;
+
+/**
+ * Reordering of the variables of a QBF by reverse Cuthill-McKee (RCM) [1],
+ * so that strongly interacting variables get nearby indices. Nearby indices
+ * keep the coefficients read together in a sparse evaluation close in
+ * memory, and keep interacting genes together in the contiguous segments
+ * exchanged by the crossover of the GA.
+ *
+ * RCM orders the vertices of a graph by breadth-first search, each
+ * component from a pseudo-peripheral vertex and the neighbours of a vertex by
+ * increasing degree, then reverses the order; it reduces the bandwidth
+ * max |p(i) - p(j)| over the edges (i, j). The graph has an edge between i
+ * and j when a_ij + a_ji is among the {@link #STRONGEST} strongest
+ * interactions, in absolute value, of i or of j, so that on sparse matrices
+ * it is the whole interaction graph, and on dense ones, where the bandwidth
+ * cannot shrink, it keeps the couplings that matter. The variables of a
+ * prohibited triple are linked to each other as well.
+ *
+ * [1] George, Liu. Computer Solution of Large Sparse Positive Definite
+ * Systems. Prentice-Hall, 1981.
+ *
+ * @author arthurpd
+ */
+public class VariableOrdering {
+
+	/**
+	 * number of strongest interactions of each variable kept as edges
+	 */
+	public static final int STRONGEST = 8;
+
+	/**
+	 * Dimension of the problem.
+	 */
+	public final int size;
+
+	/**
+	 * order[p] is the original index of the variable at position p
+	 */
+	private final int[] order;
+
+	/**
+	 * position[i] is the position of original variable i
+	 */
+	private final int[] position;
+
+	private final CoefficientMatrix A;
+
+	/* symmetric adjacency of the graph ordered */
+	private final int[] start;
+
+	private final int[] nbrs;
+
+	/**
+	 * Orders the variables of an unconstrained QBF.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 */
+	public VariableOrdering(CoefficientMatrix A) {
+		this(A, new int[0]);
+	}
+
+	/**
+	 * Orders the variables of a QBF with prohibited triples.
+	 *
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param triples
+	 *            The prohibited triples, three variables each.
+	 */
+	public VariableOrdering(CoefficientMatrix A, int[] triples) {
+
+		this.A = A;
+		this.size = A.size;
+
+		/* the strongest interactions of each variable, then the triples */
+		int[] from = new int[size * STRONGEST + 2 * triples.length];
+		int[] to = new int[from.length];
+		int edges = 0;
+		PriorityQueue<double[]> strongest = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0]));
+		for (int i = 0; i < size; i++) {
+			strongest.clear();
+			A.forEachInteraction(i, (k, j, v) -> {
+				if (strongest.size() < STRONGEST || Math.abs(v) > strongest.peek()[0]) {
+					strongest.add(new double[] { Math.abs(v), j });
+					if (strongest.size() > STRONGEST)
+						strongest.poll();
+				}
+			});
+			for (double[] e : strongest) {
+				from[edges] = i;
+				to[edges++] = (int) e[1];
+			}
+		}
+		for (int t = 0; t < triples.length; t += 3) {
+			for (int k = 0; k < 3; k++) {
+				from[edges] = triples[t + k];
+				to[edges++] = triples[t + (k + 1) % 3];
+			}
+		}
+
+		/* both directions, without repeated neighbours */
+		int[] degree = new int[size + 1];
+		for (int e = 0; e < edges; e++) {
+			degree[from[e]]++;
+			degree[to[e]]++;
+		}
+		int[] offsets = new int[size + 1];
+		for (int i = 0; i < size; i++)
+			offsets[i + 1] = offsets[i] + degree[i];
+		int[] all = new int[offsets[size]];
+		int[] fill = Arrays.copyOf(offsets, size);
+		for (int e = 0; e < edges; e++) {
+			all[fill[from[e]]++] = to[e];
+			all[fill[to[e]]++] = from[e];
+		}
+		start = new int[size + 1];
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			Arrays.sort(all, offsets[i], offsets[i + 1]);
+			start[i] = count;
+			for (int k = offsets[i]; k < offsets[i + 1]; k++)
+				if (k == offsets[i] || all[k] != all[k - 1])
+					all[count++] = all[k];
+		}
+		start[size] = count;
+		nbrs = Arrays.copyOf(all, count);
+
+		order = cuthillMcKee();
+		for (int p = 0, q = size - 1; p < q; p++, q--) {
+			int swap = order[p];
+			order[p] = order[q];
+			order[q] = swap;
+		}
+		position = new int[size];
+		for (int p = 0; p < size; p++)
+			position[order[p]] = p;
+	}
+
+	private int degree(int i) {
+		return start[i + 1] - start[i];
+	}
+
+	/**
+	 * @return The vertices in Cuthill-McKee order, component by component.
+	 */
+	private int[] cuthillMcKee() {
+
+		int[] order = new int[size];
+		boolean[] visited = new boolean[size];
+		int[] level = new int[size];
+		int[] queue = new int[size];
+		Arrays.fill(level, -1);
+		int ordered = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (visited[i])
+				continue;
+
+			int root = peripheral(i, level, queue);
+			visited[root] = true;
+			order[ordered++] = root;
+			for (int head = ordered - 1; head < ordered; head++) {
+				int v = order[head];
+				int first = ordered;
+				for (int k = start[v]; k < start[v + 1]; k++) {
+					int u = nbrs[k];
+					if (!visited[u]) {
+						visited[u] = true;
+						order[ordered++] = u;
+					}
+				}
+				/* the neighbours just queued, by increasing degree */
+				for (int a = first + 1; a < ordered; a++) {
+					int u = order[a], b = a;
+					for (; b > first && degree(order[b - 1]) > degree(u); b--)
+						order[b] = order[b - 1];
+					order[b] = u;
+				}
+			}
+		}
+
+		return order;
+	}
+
+	/**
+	 * Finds a pseudo-peripheral vertex of the component of a vertex, by the
+	 * algorithm of George and Liu: from the vertex, move to a vertex of
+	 * least degree in the last level of a breadth-first search, while that
+	 * makes the search deeper.
+	 *
+	 * @param vertex
+	 *            A vertex of the component.
+	 * @param level
+	 *            Scratch array of the vertices, all -1, which it leaves so.
+	 * @param queue
+	 *            Scratch array of the vertices.
+	 * @return A vertex of the component with a large eccentricity.
+	 */
+	private int peripheral(int vertex, int[] level, int[] queue) {
+
+		int depth = -1;
+		while (true) {
+			int tail = 0;
+			queue[tail++] = vertex;
+			level[vertex] = 0;
+			for (int head = 0; head < tail; head++) {
+				int v = queue[head];
+				for (int k = start[v]; k < start[v + 1]; k++) {
+					if (level[nbrs[k]] < 0) {
+						level[nbrs[k]] = level[v] + 1;
+						queue[tail++] = nbrs[k];
+					}
+				}
+			}
+
+			int last = level[queue[tail - 1]];
+			int next = queue[tail - 1];
+			for (int q = tail - 1; q >= 0 && level[queue[q]] == last; q--)
+				if (degree(queue[q]) < degree(next))
+					next = queue[q];
+			for (int q = 0; q < tail; q++)
+				level[queue[q]] = -1;
+
+			if (last <= depth || next == vertex)
+				return vertex;
+			depth = last;
+			vertex = next;
+		}
+	}
+
+	/**
+	 * @return The original index of the variable at each position.
+	 */
+	public int[] order() {
+		return order.clone();
+	}
+
+	/**
+	 * Builds the matrix of the reordered problem, where variable i becomes
+	 * variable position(i).
+	 *
+	 * @return The permuted coefficient matrix.
+	 */
+	public CoefficientMatrix permutedMatrix() {
+
+		final int[] count = new int[1];
+		A.forEachNonzero((i, j, a) -> count[0]++);
+		final int[] rows = new int[count[0]];
+		final int[] cols = new int[count[0]];
+		final double[] values = new double[count[0]];
+		count[0] = 0;
+		A.forEachNonzero((i, j, a) -> {
+			rows[count[0]] = position[i];
+			cols[count[0]] = position[j];
+			values[count[0]++] = a;
+		});
+
+		return CoefficientMatrix.fromEntries(size, rows, cols, values, count[0]);
+	}
+
+	/**
+	 * Maps prohibited triples to the reordered problem, each one still in
+	 * increasing order.
+	 *
+	 * @param triples
+	 *            The prohibited triples, three variables each.
+	 * @return The prohibited triples of the reordered problem.
+	 */
+	public int[] permutedTriples(int[] triples) {
+
+		int[] permuted = new int[triples.length];
+		for (int t = 0; t < triples.length; t++)
+			permuted[t] = position[triples[t]];
+		for (int t = 0; t < permuted.length; t += 3)
+			Arrays.sort(permuted, t, t + 3);
+		return permuted;
+	}
+
+	/**
+	 * Maps a solution of the reordered problem back to the original order.
+	 *
+	 * @param permuted
+	 *            A solution of the reordered problem.
+	 * @return The same solution over the original variables.
+	 */
+	public Solution<Integer> restore(Solution<Integer> permuted) {
+
+		boolean[] set = new boolean[size];
+		for (Integer p : permuted)
+			set[order[p]] = true;
+
+		Solution<Integer> sol = new Solution<Integer>();
+		for (int i = 0; i < size; i++)
+			if (set[i])
+				sol.add(i);
+		sol.cost = permuted.cost;
+
+		return sol;
+	}
+
+	/**
+	 * @param A
+	 *            A coefficient matrix.
+	 * @return The bandwidth of A, the largest j - i over its nonzero
+	 *         coefficients a_ij.
+	 */
+	public static int bandwidth(CoefficientMatrix A) {
+		int[] bandwidth = new int[1];
+		A.forEachNonzero((i, j, a) -> bandwidth[0] = Math.max(bandwidth[0], j - i));
+		return bandwidth[0];
+	}
+
+}
@@ -0,0 +1,341 @@
+package problems.qbf.solvers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import metaheuristics.termination.MaxGenerations;
+import metaheuristics.termination.SearchProgress;
+import metaheuristics.termination.StallGenerations;
+import metaheuristics.termination.TerminationCriterion;
+import metaheuristics.termination.WallClockDeadline;
+import problems.qbf.CoefficientMatrix;
+import problems.qbf.QBF;
+import solutions.PackedBits;
+import solutions.Solution;
+
+/**
+ * Decomposition solver for QBF instances too large for {@link GA_QBF}. It
+ * keeps a single global solution x and improves it in rounds. Each round
+ * picks disjoint subsets of strongly interacting variables, and for each
+ * subset S builds the QBF of the variables of S alone, the variables out of S
+ * being fixed to their values in x:
+ *
+ * f(x) = const + sum_{i in S} x_i (a_ii + sum_{j not in S} (a_ij + a_ji) x_j)
+ * + sum_{i &lt; j in S} a_ij x_i x_j
+ *
+ * i.e. the interactions with the fixed variables fold into the diagonal. The
+ * subproblems are solved in parallel by a {@link GA_QBF}, then their
+ * improvements are merged into x one at a time, each one kept only if it
+ * still improves x given the others (subsets of a round interact through the
+ * coefficients between them). Between rounds, x is polished by a 1-flip local
+ * search.
+ *
+ * A subset grows from a random variable by repeatedly adding the variable
+ * with the largest total interaction, in absolute value, with the subset. A
+ * round costs O(threads s n) on dense matrices and O(threads s degree) on
+ * sparse ones, for subsets of s variables, plus the GAs, which only see s
+ * variables, so instances with hundreds of thousands of variables fit as long
+ * as their matrix does (see {@link problems.qbf.SparseMatrix}).
+ *
+ * @author arthurpd
+ */
+public class Decomposition_QBF {
+
+	public static final int DEFAULT_SUBPROBLEM_SIZE = 200;
+
+	/**
+	 * generations without improvement after which the GA of a subproblem
+	 * stops
+	 */
+	public static final int SUBPROBLEM_STALL = 100;
+
+	/**
+	 * maximum generations of the GA of a subproblem
+	 */
+	public static final int SUBPROBLEM_GENERATIONS = 1000;
+
+	public static final int SUBPROBLEM_POPULATION = 50;
+
+	private final CoefficientMatrix A;
+
+	private final int subproblemSize;
+
+	private final int threads;
+
+	private final Random rng;
+
+	private final SearchProgress progress = new SearchProgress();
+
+	/**
+	 * the global solution
+	 */
+	private final long[] bits;
+
+	private double value;
+
+	/**
+	 * @param A
+	 *            The coefficient matrix of the QBF.
+	 * @param subproblemSize
+	 *            Number of variables of each subproblem.
+	 * @param threads
+	 *            Number of subproblems solved in parallel in each round.
+	 * @param seed
+	 *            Seed of the random choices.
+	 */
+	public Decomposition_QBF(CoefficientMatrix A, int subproblemSize, int threads, long seed) {
+		this.A = A;
+		this.subproblemSize = Math.min(subproblemSize, A.size);
+		this.threads = threads;
+		this.rng = new Random(seed);
+		this.bits = new long[PackedBits.words(A.size)];
+	}
+
+	/**
+	 * Improves the global solution, starting from all zeros, until the
+	 * termination criterion is met. A round counts as a generation.
+	 *
+	 * @param termination
+	 *            The termination criterion.
+	 * @return The best solution found.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the subproblems.
+	 */
+	public Solution<Integer> solve(TerminationCriterion termination) throws InterruptedException {
+
+		Arrays.fill(bits, 0);
+		value = 0;
+		progress.start();
+		progress.improved(value);
+		localSearch();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			while (!termination.isMet(progress)) {
+
+				progress.nextGeneration();
+
+				/* the subproblems only read x, which is merged once all are solved */
+				boolean[] taken = new boolean[A.size];
+				List<Future<int[]>> solved = new ArrayList<Future<int[]>>();
+				for (int t = 0; t < threads; t++) {
+					int[] subset = pickSubset(taken);
+					long seed = rng.nextLong();
+					solved.add(pool.submit(() -> solveSubproblem(subset, seed)));
+				}
+
+				for (Future<int[]> future : solved)
+					merge(future.get());
+				localSearch();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("subproblem failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		Solution<Integer> solution = new Solution<Integer>();
+		for (int i : PackedBits.ones(bits))
+			solution.add(i);
+		solution.cost = value;
+		return solution;
+	}
+
+	/**
+	 * @return The progress of the search, a generation being a round.
+	 */
+	public SearchProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Grows a subset of strongly interacting variables not taken by another
+	 * subset of the round.
+	 *
+	 * @param taken
+	 *            The variables in subsets of the round, updated.
+	 * @return The variables of the subset, in increasing order.
+	 */
+	private int[] pickSubset(boolean[] taken) {
+
+		int[] subset = new int[subproblemSize];
+		int size = 0;
+		double[] weight = new double[A.size];
+		PriorityQueue<double[]> frontier = new PriorityQueue<double[]>((a, b) -> Double.compare(b[0], a[0]));
+
+		while (size < subproblemSize) {
+			int next = -1;
+			while (!frontier.isEmpty() && next < 0) {
+				double[] entry = frontier.poll();
+				int j = (int) entry[1];
+				if (!taken[j] && entry[0] == weight[j])
+					next = j;
+			}
+			/* a new random seed when the frontier is exhausted */
+			for (int attempt = 0; next < 0 && attempt < 4 * A.size; attempt++) {
+				int j = rng.nextInt(A.size);
+				if (!taken[j])
+					next = j;
+			}
+			if (next < 0)
+				break;
+
+			taken[next] = true;
+			subset[size++] = next;
+			A.forEachInteraction(next, (k, j, v) -> {
+				if (!taken[j]) {
+					weight[j] += Math.abs(v);
+					frontier.add(new double[] { weight[j], j });
+				}
+			});
+		}
+
+		subset = Arrays.copyOf(subset, size);
+		Arrays.sort(subset);
+		return subset;
+	}
+
+	/**
+	 * Solves the QBF of a subset, the other variables being fixed to their
+	 * values in x.
+	 *
+	 * @param subset
+	 *            The variables of the subproblem, in increasing order.
+	 * @param seed
+	 *            Seed of the GA.
+	 * @return The variables of the subset to be flipped, or an empty array if
+	 *         the GA found nothing better than x.
+	 */
+	private int[] solveSubproblem(int[] subset, long seed) {
+
+		int s = subset.length;
+		int[] position = new int[A.size];
+		for (int p = 0; p < s; p++)
+			position[subset[p]] = p + 1;
+
+		List<int[]> pairs = new ArrayList<int[]>();
+		List<Double> values = new ArrayList<Double>();
+		double[] diagonal = new double[s];
+		for (int p = 0; p < s; p++) {
+			final int row = p;
+			diagonal[p] = A.get(subset[p], subset[p]);
+			A.forEachInteraction(subset[p], (k, j, v) -> {
+				if (position[j] == 0) {
+					if (PackedBits.get(bits, j))
+						diagonal[row] += v;
+				} else if (position[j] - 1 > row) {
+					pairs.add(new int[] { row, position[j] - 1 });
+					values.add(v);
+				}
+			});
+		}
+
+		int entries = s + pairs.size();
+		int[] rows = new int[entries], cols = new int[entries];
+		double[] coefficients = new double[entries];
+		for (int p = 0; p < s; p++) {
+			rows[p] = cols[p] = p;
+			coefficients[p] = diagonal[p];
+		}
+		for (int e = 0; e < pairs.size(); e++) {
+			rows[s + e] = pairs.get(e)[0];
+			cols[s + e] = pairs.get(e)[1];
+			coefficients[s + e] = values.get(e);
+		}
+		QBF sub = new QBF(CoefficientMatrix.fromEntries(s, rows, cols, coefficients, entries));
+
+		long[] current = new long[PackedBits.words(s)];
+		for (int p = 0; p < s; p++)
+			if (PackedBits.get(bits, subset[p]))
+				PackedBits.set(current, p);
+		double currentValue = sub.evaluate(current);
+
+		GA_QBF ga = new GA_QBF(SUBPROBLEM_GENERATIONS, SUBPROBLEM_POPULATION, 1.0 / s, sub, false);
+		ga.setSeed(seed);
+		ga.setTermination(new MaxGenerations(SUBPROBLEM_GENERATIONS).or(new StallGenerations(SUBPROBLEM_STALL)));
+		Solution<Integer> best = ga.solve();
+		if (best.cost <= currentValue)
+			return new int[0];
+
+		long[] improved = PackedBits.pack(best, s);
+		int[] flips = new int[PackedBits.hamming(current, improved)];
+		int f = 0;
+		for (int p = 0; p < s; p++)
+			if (PackedBits.get(current, p) != PackedBits.get(improved, p))
+				flips[f++] = subset[p];
+		return flips;
+	}
+
+	/**
+	 * Applies the flips proposed by a subproblem if, given the flips already
+	 * merged, they still improve x.
+	 */
+	private void merge(int[] flips) {
+
+		double delta = 0;
+		for (int k : flips) {
+			delta += A.flipDelta(bits, k);
+			PackedBits.flip(bits, k);
+		}
+		if (delta > 0) {
+			improve(delta);
+		} else {
+			for (int k : flips)
+				PackedBits.flip(bits, k);
+		}
+	}
+
+	/**
+	 * Flips single variables of x while that improves it.
+	 */
+	private void localSearch() {
+
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int k = 0; k < A.size; k++) {
+				double delta = A.flipDelta(bits, k);
+				if (delta > 0) {
+					PackedBits.flip(bits, k);
+					improve(delta);
+					improved = true;
+				}
+			}
+		}
+	}
+
+	private void improve(double delta) {
+		value += delta;
+		progress.improved(value);
+	}
+
+	/**
+	 * A main method used for testing the decomposition solver.
+	 *
+	 * Usage: Decomposition_QBF [instance file] [seconds] [threads] [subproblem
+	 * size]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		String instance = args.length > 0 ? args[0] : "GA_Framework/instances/qbf400";
+		double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 60.0;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int size = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SUBPROBLEM_SIZE;
+
+		QBF qbf = new QBF(instance);
+		System.out.println("Read " + qbf.A);
+		Decomposition_QBF solver = new Decomposition_QBF(qbf.A, size, threads, 0);
+		Solution<Integer> best = solver.solve(new WallClockDeadline((long) (seconds * 1e9), TimeUnit.NANOSECONDS));
+		System.out.println("maxVal = " + best.cost + " after " + solver.getProgress().getGeneration() + " rounds");
+	}
+
+}
@@ -1,8 +1,17 @@
 package problems.qbf.solvers;
 
 import java.io.IOException;
+import java.util.Random;
 import metaheuristics.ga.AbstractGA;
+import problems.Evaluator;
+import problems.qbf.CoefficientMatrix;
+import problems.qbf.GreedyConstruction;
+import problems.qbf.PartitionCrossover;
+import problems.qbf.PathRelinking;
+import problems.qbf.Persistency;
+import problems.qbf.Preprocessing;
 import problems.qbf.QBF;
+import problems.qbf.VariableOrdering;
 import solutions.Solution;
 
 /**
@@ -14,6 +23,37 @@ import solutions.Solution;
  */
 public class GA_QBF extends AbstractGA<Integer, Integer> {
 
+	/**
+	 * the variable fixing and reordering the GA runs on
+	 */
+	protected final Preprocessing preprocessing;
+
+	/**
+	 * the matrix of coefficients of the problem evolved
+	 */
+	protected final CoefficientMatrix A;
+
+	/**
+	 * the GRASP construction seeding the initial population
+	 */
+	protected final GreedyConstruction construction;
+
+	/**
+	 * the path relinking between elite chromosomes
+	 */
+	protected final PathRelinking pathRelinking;
+
+	/**
+	 * the partition crossover of the problem solved by the GA
+	 */
+	protected final PartitionCrossover partition;
+
+	/**
+	 * greediness of the seeding constructions, see
+	 * {@link GreedyConstruction#construct(double, Random)}
+	 */
+	public static final double RCL_ALPHA = 0.2;
+
 	/**
 	 * Constructor for the GA_QBF class. The QBF objective function is passed as
 	 * argument for the superclass constructor.
@@ -31,7 +71,122 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	 *             Necessary for I/O operations.
 	 */
 	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, String filename) throws IOException {
-		super(new QBF(filename), generations, popSize, mutationRate, false, false, false);
+		this(generations, popSize, mutationRate, filename, false);
+	}
+
+	/**
+	 * Constructor for the GA_QBF class that optionally preprocesses the QBF
+	 * with {@link Persistency} rules. The GA then evolves chromosomes over the
+	 * free variables only; fitness values, bounds and decoded solutions are
+	 * still those of the original QBF.
+	 * 
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param filename
+	 *            Name of the file for which the objective function parameters
+	 *            should be read.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency before the search.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, String filename, boolean fixVariables) throws IOException {
+		this(generations, popSize, mutationRate, new QBF(filename), fixVariables);
+	}
+
+	/**
+	 * Constructor for the GA_QBF class over an already loaded QBF, which is
+	 * used by the GA alone.
+	 * 
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param qbf
+	 *            The QBF being maximized.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency before the search.
+	 */
+	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, QBF qbf, boolean fixVariables) {
+		this(generations, popSize, mutationRate, qbf, fixVariables, false);
+	}
+
+	/**
+	 * Constructor for the GA_QBF class over an already loaded QBF that
+	 * optionally reorders the variables by {@link VariableOrdering}, after
+	 * fixing variables if asked to, so that interacting genes are close in
+	 * the chromosome. Decoded solutions are still in the original order.
+	 * 
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param qbf
+	 *            The QBF being maximized.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency before the search.
+	 * @param reorder
+	 *            Whether to reorder the variables before the search.
+	 */
+	public GA_QBF(Integer generations, Integer popSize, Double mutationRate, QBF qbf, boolean fixVariables, boolean reorder) {
+		this(generations, popSize, mutationRate, qbf, new Preprocessing(qbf.A, new int[0], fixVariables, reorder));
+	}
+
+	private GA_QBF(Integer generations, Integer popSize, Double mutationRate, QBF qbf, Preprocessing preprocessing) {
+		this(generations, popSize, mutationRate, preprocessing.isIdentity() ? qbf : new QBF(preprocessing.A), preprocessing, false, false, false);
+	}
+
+	/**
+	 * Constructor for the subclasses solving variants of the QBF, such as
+	 * {@link problems.qbfpt.solvers.GA_QBFPT}, which share the preprocessing
+	 * and the gray-box operators of the GA_QBF.
+	 * 
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param searched
+	 *            The problem evolved, over {@link Preprocessing#A} and
+	 *            {@link Preprocessing#triples}.
+	 * @param preprocessing
+	 *            The preprocessing giving the problem evolved.
+	 * @param adaptiveMutation
+	 *            Whether the mutation rate adapts every generation to the
+	 *            ratio of the best to the average fitness: multiplied by 1.1
+	 *            when the ratio is below 1.02, and by 0.9 otherwise.
+	 * @param crosspointChoice
+	 *            Whether the two crosspoints are drawn at random and distinct;
+	 *            otherwise the second is drawn at or after the first, so the
+	 *            exchanged segment may be empty.
+	 * @param sus
+	 *            Whether the parents are selected by stochastic universal
+	 *            sampling.
+	 */
+	protected GA_QBF(Integer generations, Integer popSize, Double mutationRate, Evaluator<Integer> searched, Preprocessing preprocessing, boolean adaptiveMutation, boolean crosspointChoice, boolean sus) {
+		super(searched, generations, popSize, mutationRate, adaptiveMutation, crosspointChoice, sus);
+		this.preprocessing = preprocessing;
+		this.A = preprocessing.A;
+		this.construction = new GreedyConstruction(A, preprocessing.triples);
+		this.pathRelinking = new PathRelinking(A, preprocessing.triples);
+		this.partition = new PartitionCrossover(A, preprocessing.triples);
+	}
+
+	/**
+	 * @return The value of the variables fixed to 1, added to the value of
+	 *         every chromosome.
+	 */
+	protected double offset() {
+		return preprocessing.offset();
 	}
 
 	/**
@@ -57,15 +212,16 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	@Override
 	protected Solution<Integer> decode(Chromosome chromosome) {
 
+		/* the fitness first, as it may repair the chromosome */
 		Solution<Integer> solution = createEmptySol();
+		solution.cost = fitness(chromosome) - offset();
 		for (int locus = 0; locus < chromosome.size(); locus++) {
 			if (chromosome.get(locus) == 1) {
 				solution.add(new Integer(locus));
 			}
 		}
 
-		ObjFunction.evaluate(solution);
-		return solution;
+		return preprocessing.restore(solution);
 	}
 
 	/*
@@ -84,6 +240,73 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 		return chromosome;
 	}
 
+	/**
+	 * {@inheritDoc} The chromosome is built by a GRASP construction over the
+	 * (possibly reduced) QBF, which never sets all the variables of a
+	 * prohibited triple.
+	 */
+	@Override
+	protected Chromosome constructChromosome(Random random) {
+		return unpack(construction.construct(RCL_ALPHA, random));
+	}
+
+	/**
+	 * {@inheritDoc} The walk is greedy, scored by incremental flip deltas, and
+	 * never sets all the variables of a prohibited triple. The fitness of the
+	 * genome returned is known from that of the source.
+	 */
+	@Override
+	protected Chromosome relink(long[] source, double fitness, long[] target) {
+		PathRelinking.Walk walk = pathRelinking.relink(source, target);
+		if (walk == null)
+			return null;
+		Chromosome chromosome = unpack(walk.bits);
+		chromosome.fitness = fitness + walk.gain;
+		return chromosome;
+	}
+
+	/**
+	 * {@inheritDoc} The key is the content hash of the problem evolved, which
+	 * is the reduced or reordered problem when fixing or reordering variables.
+	 */
+	@Override
+	protected String instanceKey() {
+		return ((QBF) ObjFunction).contentHash();
+	}
+
+	/**
+	 * {@inheritDoc} The fitness of the child is known from that of the first
+	 * parent.
+	 */
+	@Override
+	protected Chromosome partitionCrossover(Chromosome parent1, Chromosome parent2) {
+		double fitness = fitness(parent1);
+		fitness(parent2);
+		PartitionCrossover.Child child = partition.recombine(parent1.pack(), parent2.pack());
+		if (child == null)
+			return null;
+		Chromosome chromosome = unpack(child.bits);
+		chromosome.fitness = fitness + child.gain;
+		return chromosome;
+	}
+
+	/**
+	 * {@inheritDoc} The bound is that of the problem evolved, see
+	 * {@link problems.qbf.QBFBounds}, plus the value of the fixed variables.
+	 */
+	@Override
+	protected double upperBound() {
+		return ((QBF) ObjFunction).upperBound() + offset();
+	}
+
+	/**
+	 * {@inheritDoc} It costs O(n), against O(n^2) for an evaluation.
+	 */
+	@Override
+	protected double flipDelta(long[] bits, int locus) {
+		return A.flipDelta(bits, locus);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -93,8 +316,13 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	@Override
 	protected Double fitness(Chromosome chromosome) {
 
-		return decode(chromosome).cost;
+		if (chromosome.fitness == null)
+		{
+			chromosome.fitness = ObjFunction.evaluate(chromosome.pack()) + offset();
+			progress.countEvaluation();
+		}
 
+		return chromosome.fitness;
 	}
 
 	/*
@@ -108,14 +336,16 @@ public class GA_QBF extends AbstractGA<Integer, Integer> {
 	protected void mutateGene(Chromosome chromosome, Integer locus) {
 
 		chromosome.set(locus, 1 - chromosome.get(locus));
-
+		chromosome.fitness = null;
 	}
 
 	/**
-	 * A main method used for testing the GA metaheuristic.
+	 * A main method used for testing the GA metaheuristic. It is hidden by
+	 * that of {@link problems.qbfpt.solvers.GA_QBFPT}, whose runs may be
+	 * interrupted.
 	 * 
 	 */
-	public static void main(String[] args) throws IOException {
+	public static void main(String[] args) throws IOException, InterruptedException {
 
 		long startTime = System.currentTimeMillis();
 		GA_QBF ga = new GA_QBF(10, 100, 1.0 / 1000.0, "GA_Framework/instances/qbf400");
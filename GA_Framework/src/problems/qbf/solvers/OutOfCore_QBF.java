@@ -0,0 +1,188 @@
+package problems.qbf.solvers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import metaheuristics.ga.AbstractGA;
+import problems.qbf.OutOfCoreQBF;
+import solutions.Solution;
+
+/**
+ * Metaheuristic GA for QBF instances whose matrix of coefficients does not fit
+ * in memory, kept on disk by an {@link OutOfCoreQBF}. The offsprings of each
+ * generation are evaluated together, in a single pass over the instance file,
+ * so a generation reads the matrix once whatever the size of the population
+ * (twice after a restart, for the rebuilt chromosomes).
+ *
+ * The GA works on the whole problem, without the preprocessing, seeding and
+ * gray-box operators of {@link GA_QBF}, which need random access to the
+ * matrix. A chromosome evaluated outside of a batch costs a pass of its own.
+ * The chromosomes themselves are still held in memory, n alleles each.
+ *
+ * @author arthurpd
+ */
+public class OutOfCore_QBF extends AbstractGA<Integer, Integer> {
+
+	/**
+	 * Constructor for the OutOfCore_QBF class.
+	 *
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param qbf
+	 *            The QBF being maximized.
+	 */
+	public OutOfCore_QBF(Integer generations, Integer popSize, Double mutationRate, OutOfCoreQBF qbf) {
+		super(qbf, generations, popSize, mutationRate, false, false, false);
+	}
+
+	/**
+	 * Constructor for the OutOfCore_QBF class over an instance file.
+	 *
+	 * @param generations
+	 *            Maximum number of generations.
+	 * @param popSize
+	 *            Size of the population.
+	 * @param mutationRate
+	 *            The mutation rate.
+	 * @param filename
+	 *            Name of the instance file, in the
+	 *            {@link problems.qbf.BinaryInstance} format.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public OutOfCore_QBF(Integer generations, Integer popSize, Double mutationRate, String filename) throws IOException {
+		this(generations, popSize, mutationRate, new OutOfCoreQBF(filename));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The empty solution has zero cost, as in {@link GA_QBF}.
+	 */
+	@Override
+	public Solution<Integer> createEmptySol() {
+		Solution<Integer> sol = new Solution<Integer>();
+		sol.cost = 0.0;
+		return sol;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see metaheuristics.ga.AbstractGA#decode(metaheuristics.ga.AbstractGA.
+	 * Chromosome)
+	 */
+	@Override
+	protected Solution<Integer> decode(Chromosome chromosome) {
+
+		Solution<Integer> solution = createEmptySol();
+		for (int locus = 0; locus < chromosome.size(); locus++) {
+			if (chromosome.get(locus) == 1) {
+				solution.add(locus);
+			}
+		}
+
+		solution.cost = fitness(chromosome);
+		return solution;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see metaheuristics.ga.AbstractGA#generateRandomChromosome()
+	 */
+	@Override
+	protected Chromosome generateRandomChromosome() {
+
+		Chromosome chromosome = new Chromosome();
+		for (int i = 0; i < chromosomeSize; i++) {
+			chromosome.add(rng.nextInt(2));
+		}
+
+		return chromosome;
+	}
+
+	/**
+	 * {@inheritDoc} The chromosomes not evaluated yet, each one counted once
+	 * even if it appears several times in the population, are evaluated in a
+	 * single pass over the instance file.
+	 */
+	@Override
+	protected void evaluate(Population population) {
+
+		IdentityHashMap<Chromosome, Boolean> pending = new IdentityHashMap<Chromosome, Boolean>();
+		List<Chromosome> batch = new ArrayList<Chromosome>();
+		for (Chromosome c : population)
+			if (c.fitness == null && pending.put(c, Boolean.TRUE) == null)
+				batch.add(c);
+		if (batch.isEmpty())
+			return;
+
+		long[][] genomes = new long[batch.size()][];
+		for (int g = 0; g < genomes.length; g++)
+			genomes[g] = batch.get(g).pack();
+		double[] values = ((OutOfCoreQBF) ObjFunction).evaluate(genomes);
+		for (int g = 0; g < genomes.length; g++)
+			batch.get(g).fitness = values[g];
+		progress.countEvaluations(genomes.length);
+	}
+
+	/**
+	 * {@inheritDoc} A chromosome not evaluated by
+	 * {@link #evaluate(AbstractGA.Population)} costs a pass over the instance
+	 * file.
+	 */
+	@Override
+	protected Double fitness(Chromosome chromosome) {
+
+		if (chromosome.fitness == null) {
+			chromosome.fitness = ObjFunction.evaluate(chromosome.pack());
+			progress.countEvaluation();
+		}
+
+		return chromosome.fitness;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * metaheuristics.ga.AbstractGA#mutateGene(metaheuristics.ga.AbstractGA.
+	 * Chromosome, java.lang.Integer)
+	 */
+	@Override
+	protected void mutateGene(Chromosome chromosome, Integer locus) {
+
+		chromosome.set(locus, 1 - chromosome.get(locus));
+		chromosome.fitness = null;
+	}
+
+	/**
+	 * Solves an instance file.
+	 *
+	 * Usage: OutOfCore_QBF instance generations population
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 3) {
+			System.err.println("Usage: OutOfCore_QBF instance generations population");
+			System.exit(2);
+		}
+
+		long startTime = System.currentTimeMillis();
+		OutOfCoreQBF qbf = new OutOfCoreQBF(args[0]);
+		OutOfCore_QBF ga = new OutOfCore_QBF(Integer.parseInt(args[1]), Integer.parseInt(args[2]), 1.0 / qbf.size, qbf);
+		Solution<Integer> bestSol = ga.solve();
+		System.out.println("maxVal = " + bestSol.cost + " (" + bestSol.size() + " variables set)");
+		System.out.println("Passes = " + qbf.getPasses() + ", evaluations = " + ga.getProgress().getEvaluations());
+		long endTime = System.currentTimeMillis();
+		System.out.println("Time = " + (double) (endTime - startTime) / 1000 + " seg");
+	}
+
+}
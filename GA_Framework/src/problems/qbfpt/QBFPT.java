@@ -1,22 +1,26 @@
 package problems.qbfpt;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
-import metaheuristics.ga.AbstractGA;
 import problems.Evaluator;
+import problems.qbf.CoefficientMatrix;
+import problems.qbf.ParallelEvaluation;
+import problems.qbf.QBFBounds;
+import solutions.PackedBits;
 import solutions.Solution;
 
 public class QBFPT implements Evaluator<Integer> {
 
-	public static final Random rng = new Random(0);
+	/**
+	 * random number generator used by {@link #makeViable}. Solvers may share
+	 * their own generator here, making their runs reproducible.
+	 */
+	public Random rng = new Random(0);
 
 	/**
 	 * Dimension of the domain.
@@ -31,13 +35,48 @@ public class QBFPT implements Evaluator<Integer> {
 	/**
 	 * The matrix A of coefficients for the QBFPT f(x) = x'.A.x
 	 */
-	public Double[][] A;
+	public CoefficientMatrix A;
 	
 	/**
 	 * The list T of prohibited tuples
 	 */
 	public Integer[][] prohibited_triples;
 
+	/**
+	 * The prohibited triples flattened into primitive ints, three per triple,
+	 * for evaluating packed solutions without unboxing.
+	 */
+	protected int[] triples;
+
+	/**
+	 * the upper bound, once computed
+	 */
+	private volatile double upperBound = Double.NaN;
+
+	/**
+	 * the content hash, once computed
+	 */
+	private volatile String contentHash;
+
+	/**
+	 * evaluates the vectors of {@link #A}, splitting the evaluations of very
+	 * large instances across the threads of a pool
+	 */
+	private ParallelEvaluation parallel;
+
+	/**
+	 * @return A copy of the prohibited triples, three variables each.
+	 */
+	public int[] triples() {
+		return triples.clone();
+	}
+
+	/**
+	 * The penalty subtracted from the QBF for each prohibited triple in the
+	 * solution.
+	 */
+	public static final double PENALTY = 1e5;
+
 	/**
 	 * The constructor for QuadracticBinaryFunction class. The filename of the
 	 * input for setting matrix of coefficients A of the QBF. The dimension of
@@ -52,6 +91,48 @@ public class QBFPT implements Evaluator<Integer> {
 		size = readInput(filename);
 		variables = allocateVariables();
 		prohibited_triples = mountProhibitedList();
+		triples = new int[3 * size];
+		for (int i = 0; i < size; i++)
+			for (int k = 0; k < 3; k++)
+				triples[3 * i + k] = prohibited_triples[i][k];
+		parallel = new ParallelEvaluation(A, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds a QBFPT over an existing matrix of coefficients and list of
+	 * prohibited triples, such as the reduced problem of a
+	 * {@link problems.qbf.Persistency} preprocessing.
+	 * 
+	 * @param A
+	 *            The matrix of coefficients of the QBF.
+	 * @param triples
+	 *            The prohibited triples, three variables each.
+	 */
+	public QBFPT(CoefficientMatrix A, int[] triples) {
+		this.A = A;
+		size = A.size;
+		variables = allocateVariables();
+		this.triples = triples.clone();
+		prohibited_triples = new Integer[triples.length / 3][3];
+		for (int i = 0; i < prohibited_triples.length; i++)
+			for (int k = 0; k < 3; k++)
+				prohibited_triples[i][k] = triples[3 * i + k];
+		parallel = new ParallelEvaluation(A, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds a QBFPT sharing the (read-only) matrix of coefficients and upper
+	 * bound of another one, with prohibited triples, variables and random
+	 * number generator of its own, so that each thread can work on its own
+	 * copy of a loaded instance.
+	 * 
+	 * @param other
+	 *            The QBFPT being copied.
+	 */
+	public QBFPT(QBFPT other) {
+		this(other.A, other.triples);
+		upperBound = other.upperBound;
+		contentHash = other.contentHash;
 	}
 
 
@@ -140,6 +221,78 @@ public class QBFPT implements Evaluator<Integer> {
 
 	}
 
+	/**
+	 * {@inheritDoc} The vector is evaluated directly by the coefficient
+	 * matrix, without going through {@link #variables}, and then penalized by
+	 * {@link #PENALTY} for each prohibited triple it contains.
+	 */
+	@Override
+	public double evaluate(long[] bits) {
+		return parallel.evaluate(bits) - PENALTY * countProhibited(bits);
+	}
+
+	/**
+	 * {@inheritDoc} The vector is evaluated directly by the coefficient
+	 * matrix, without going through {@link #variables}, and then penalized by
+	 * {@link #PENALTY} for each prohibited triple it contains.
+	 */
+	@Override
+	public double evaluate(int[] ones, int count) {
+		long[] bits = new long[PackedBits.words(size)];
+		for (int a = 0; a < count; a++)
+			PackedBits.set(bits, ones[a]);
+		return evaluate(bits);
+	}
+
+	/**
+	 * Counts the prohibited triples whose three variables are all set.
+	 * 
+	 * @param bits
+	 *            the packed solution.
+	 * @return the number of prohibited triples in the solution.
+	 */
+	public int countProhibited(long[] bits) {
+		int count = 0;
+		for (int t = 0; t < triples.length; t += 3) {
+			if (PackedBits.get(bits, triples[t]) && PackedBits.get(bits, triples[t + 1]) && PackedBits.get(bits, triples[t + 2]))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Sets the pool that the evaluations of single vectors are split across,
+	 * when the instance is large enough and the pool is idle, see
+	 * {@link ParallelEvaluation}. By default, it is the common pool.
+	 * 
+	 * @param pool
+	 *            The pool, or null for evaluating on the calling thread only.
+	 */
+	public void setEvaluationPool(ForkJoinPool pool) {
+		parallel = new ParallelEvaluation(A, pool);
+	}
+
+	/**
+	 * @return A key identifying the instance by its content, see
+	 *         {@link CoefficientMatrix#contentHash(int[])}, computed once.
+	 */
+	public String contentHash() {
+		if (contentHash == null)
+			contentHash = "qbfpt-" + A.contentHash(triples);
+		return contentHash;
+	}
+
+	/**
+	 * @return An upper bound on the value of any solution, as given by
+	 *         {@link QBFBounds#upperBound(CoefficientMatrix, int[])}, computed
+	 *         once.
+	 */
+	public double upperBound() {
+		if (Double.isNaN(upperBound))
+			upperBound = QBFBounds.upperBound(A, triples);
+		return upperBound;
+	}
+
 	/**
 	 * Evaluates a QBF by calculating the matrix multiplication that defines the
 	 * QBF: f(x) = x'.A.x .
@@ -148,25 +301,18 @@ public class QBFPT implements Evaluator<Integer> {
 	 */
 	public Double evaluateQBF() {
 
-		Double aux = (double) 0, sum = (double) 0;
-		Double vecAux[] = new Double[size];
-
+		int[] ones = new int[size];
+		int count = 0;
 		for (int i = 0; i < size; i++) {
 			if (variables[i] > 0.5)
-			{
-				for (int j = 0; j < size; j++) {
-					aux += variables[j] * A[i][j];
-				}
-
-				vecAux[i] = aux;
-				sum += aux * variables[i];
-				aux = (double) 0;				
-			}
+				ones[count++] = i;
 		}
 
+		double sum = parallel.evaluate(ones, count);
+
 		for (int i = 0; i < prohibited_triples.length; i++) {
 			if (variables[prohibited_triples[i][0]] > 0.5 && variables[prohibited_triples[i][1]] > 0.5 && variables[prohibited_triples[i][2]] > 0.5)
-				sum -= 1e5;
+				sum -= PENALTY;
 		}
 
 		return sum;
@@ -186,24 +332,9 @@ public class QBFPT implements Evaluator<Integer> {
 	 */
 	protected Integer readInput(String filename) throws IOException {
 
-		Reader fileInst = new BufferedReader(new FileReader(filename));
-		StreamTokenizer stok = new StreamTokenizer(fileInst);
-
-		stok.nextToken();
-		Integer _size = (int) stok.nval;
-		A = new Double[_size][_size];
+		A = CoefficientMatrix.read(filename);
 
-		for (int i = 0; i < _size; i++) {
-			for (int j = i; j < _size; j++) {
-				stok.nextToken();
-				A[i][j] = stok.nval;
-				//A[j][i] = A[i][j];
-				if (j>i)
-					A[j][i] = 0.0;
-			}
-		}
-
-		return _size;
+		return A.size;
 
 	}
 
@@ -232,7 +363,7 @@ public class QBFPT implements Evaluator<Integer> {
 
 		for (int i = 0; i < size; i++) {
 			for (int j = i; j < size; j++) {
-				System.out.print(A[i][j] + " ");
+				System.out.print(A.get(i, j) + " ");
 			}
 			System.out.println();
 		}
@@ -240,13 +371,17 @@ public class QBFPT implements Evaluator<Integer> {
 	}
 
 
+	/**
+	 * {@inheritDoc} For each prohibited triple in the solution, one of its
+	 * variables, chosen at random, is reset.
+	 */
 	@Override
-	public void makeViable(AbstractGA<Integer, Integer>.Chromosome chromosome) {
+	public void makeViable(long[] bits) {
 
-		for (int i = 0; i < prohibited_triples.length; i++) {
-			if (chromosome.get(prohibited_triples[i][0]) > 0.5 && chromosome.get(prohibited_triples[i][1]) > 0.5 && chromosome.get(prohibited_triples[i][2]) > 0.5)
+		for (int t = 0; t < triples.length; t += 3) {
+			if (PackedBits.get(bits, triples[t]) && PackedBits.get(bits, triples[t + 1]) && PackedBits.get(bits, triples[t + 2]))
 			{
-				chromosome.set(prohibited_triples[i][rng.nextInt(3)], 0);
+				PackedBits.clear(bits, triples[t + rng.nextInt(3)]);
 			}
 		}
 
@@ -0,0 +1,108 @@
+package problems.qbfpt.solvers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import metaheuristics.benchmark.TimeToTarget;
+import metaheuristics.ga.AbstractGA;
+import metaheuristics.ga.GAParameters;
+import metaheuristics.termination.AnytimeTrace;
+import metaheuristics.termination.WallClockDeadline;
+import problems.qbf.solvers.GA_QBF;
+
+/**
+ * End-to-end benchmark of the GA: the configurations compared in
+ * {@link GA_QBFPT#main} are run with several seeds on each instance, for a
+ * fixed time each, recording their anytime traces. It writes to the output
+ * directory
+ *
+ * - traces.csv, the best cost over time of every run;
+ *
+ * - ttt.csv, the time-to-target plot data and expected running times;
+ *
+ * - profile.csv, the performance profiles of the configurations,
+ *
+ * see {@link TimeToTarget}. The runs are made one at a time, so that they do
+ * not compete for the processor. For the qbf problem, {@link GA_QBF} ignores
+ * the adaptive mutation, crosspoint choice and sus options.
+ *
+ * Usage: Benchmark_QBFPT [qbf|qbfpt] [seeds] [seconds per run] [output
+ * directory] [instances...]
+ *
+ * @author arthurpd
+ */
+public class Benchmark_QBFPT {
+
+	/**
+	 * @return The configurations compared in {@link GA_QBFPT#main}, by name.
+	 */
+	public static Map<String, GAParameters> configurations() {
+		Map<String, GAParameters> configurations = new LinkedHashMap<String, GAParameters>();
+		configurations.put("padrao", new GAParameters(100, 1.0, false, true, false, false, false));
+		configurations.put("pop", new GAParameters(400, 1.0, false, true, false, false, false));
+		configurations.put("mut", new GAParameters(100, 2.0, false, true, false, false, false));
+		configurations.put("crosspoint", new GAParameters(100, 1.0, false, false, false, false, false));
+		configurations.put("evol1", new GAParameters(100, 1.0, true, true, false, false, false));
+		configurations.put("evol2", new GAParameters(100, 1.0, false, true, true, false, false));
+		return configurations;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		boolean qbfpt = args.length <= 0 || !args[0].equalsIgnoreCase("qbf");
+		int seeds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+		Path output = Paths.get(args.length > 3 ? args[3] : "benchmark");
+		List<String> instances = args.length > 4 ? Arrays.asList(args).subList(4, args.length) : Arrays.asList("qbf020", "qbf040", "qbf060", "qbf080", "qbf100", "qbf200", "qbf400");
+
+		Map<String, GAParameters> configurations = configurations();
+		List<String> names = new ArrayList<String>(configurations.keySet());
+
+		TimeToTarget analysis = new TimeToTarget(names, instances, seeds);
+		for (int i = 0; i < instances.size(); i++) {
+			String instance = instances.get(i);
+			int size = Integer.parseInt(instance.replaceAll("\\D", ""));
+			for (int c = 0; c < names.size(); c++) {
+				GAParameters p = configurations.get(names.get(c));
+				for (int s = 0; s < seeds; s++) {
+					AbstractGA<Integer, Integer> ga;
+					if (qbfpt)
+						ga = new GA_QBFPT(0, 0, Integer.MAX_VALUE, p.popSize, p.mutationRate(size), instance, p.adaptiveMutation, p.crosspointChoice, p.sus);
+					else
+						ga = new GA_QBF(Integer.MAX_VALUE, p.popSize, p.mutationRate(size), "GA_Framework/instances/" + instance);
+					p.apply(ga);
+					ga.setSeed(s);
+					ga.setTermination(new WallClockDeadline((long) (seconds * 1e9), TimeUnit.NANOSECONDS));
+					AnytimeTrace trace = new AnytimeTrace();
+					ga.getProgress().setTrace(trace);
+					ga.solve();
+					analysis.add(c, i, s, trace, ga.getProgress().getElapsedNanos());
+				}
+				System.out.println(instance + " " + names.get(c) + " done");
+			}
+		}
+
+		Files.createDirectories(output);
+		try (Writer out = new BufferedWriter(Files.newBufferedWriter(output.resolve("traces.csv")))) {
+			analysis.writeTraces(out);
+		}
+		try (Writer out = new BufferedWriter(Files.newBufferedWriter(output.resolve("ttt.csv")))) {
+			analysis.writeTimeToTarget(out, TimeToTarget.DEFAULT_LEVELS);
+		}
+		try (Writer out = new BufferedWriter(Files.newBufferedWriter(output.resolve("profile.csv")))) {
+			analysis.writeProfile(out, TimeToTarget.DEFAULT_LEVELS);
+		}
+		System.out.println("Wrote " + output.toAbsolutePath());
+	}
+
+}
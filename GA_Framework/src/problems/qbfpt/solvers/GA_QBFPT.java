@@ -3,7 +3,10 @@ package problems.qbfpt.solvers;
 import java.io.IOException;
 import java.util.ArrayList;
 
-import metaheuristics.ga.AbstractGA;
+import problems.qbf.Persistency;
+import problems.qbf.Preprocessing;
+import problems.qbf.VariableOrdering;
+import problems.qbf.solvers.GA_QBF;
 import problems.qbfpt.QBFPT;
 import solutions.Solution;
 
@@ -14,7 +17,7 @@ import solutions.Solution;
  * 
  * @author ccavellucci, fusberti
  */
-public class GA_QBFPT extends AbstractGA<Integer, Integer> implements Runnable{
+public class GA_QBFPT extends GA_QBF implements Runnable{
 
 	private static int[][] results_sum = new int[7][6];
 	private static int[][] results_max = new int[7][6];
@@ -39,61 +42,80 @@ public class GA_QBFPT extends AbstractGA<Integer, Integer> implements Runnable{
 	 *             Necessary for I/O operations.
 	 */
 	public GA_QBFPT(int row, int col, Integer generations, Integer popSize, Double mutationRate, String instanceName, boolean adaptativeMutation, boolean crosspointChoice, boolean sus) throws IOException {
-		super(new QBFPT("GA_Framework/instances/" + instanceName), generations, popSize, mutationRate, adaptativeMutation, crosspointChoice, sus);
-		this.row = row;
-		this.col = col;
+		this(row, col, generations, popSize, mutationRate, instanceName, adaptativeMutation, crosspointChoice, sus, false);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Constructor for the GA_QBFPT class that optionally preprocesses the
+	 * QBFPT with {@link Persistency} rules, which respect the prohibited
+	 * triples. The GA then evolves chromosomes over the free variables only;
+	 * fitness values, bounds and decoded solutions are still those of the
+	 * original QBFPT.
 	 * 
-	 * This createEmptySol instantiates an empty solution and it attributes a
-	 * zero cost, since it is known that a QBF solution with all variables set
-	 * to zero has also zero cost.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency before the search.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
 	 */
-	@Override
-	public Solution<Integer> createEmptySol() {
-		Solution<Integer> sol = new Solution<Integer>();
-		sol.cost = 0.0;
-		return sol;
+	public GA_QBFPT(int row, int col, Integer generations, Integer popSize, Double mutationRate, String instanceName, boolean adaptativeMutation, boolean crosspointChoice, boolean sus, boolean fixVariables) throws IOException {
+		this(row, col, generations, popSize, mutationRate, new QBFPT("GA_Framework/instances/" + instanceName), adaptativeMutation, crosspointChoice, sus, fixVariables);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Constructor for the GA_QBFPT class over an already loaded QBFPT, which
+	 * is used by the GA alone (the GA shares its random number generator with
+	 * it).
 	 * 
-	 * @see metaheuristics.ga.AbstractGA#decode(metaheuristics.ga.AbstractGA.
-	 * Chromosome)
+	 * @param qbfpt
+	 *            The QBFPT being maximized.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency before the search.
 	 */
-	@Override
-	protected Solution<Integer> decode(Chromosome chromosome) {
-
-		ObjFunction.makeViable(chromosome);
+	public GA_QBFPT(int row, int col, Integer generations, Integer popSize, Double mutationRate, QBFPT qbfpt, boolean adaptativeMutation, boolean crosspointChoice, boolean sus, boolean fixVariables) {
+		this(row, col, generations, popSize, mutationRate, qbfpt, adaptativeMutation, crosspointChoice, sus, fixVariables, false);
+	}
 
-		Solution<Integer> solution = createEmptySol();
-		for (int locus = 0; locus < chromosome.size(); locus++) {
-			if (chromosome.get(locus) == 1) {
-				solution.add(new Integer(locus));
-			}
-		}
+	/**
+	 * Constructor for the GA_QBFPT class over an already loaded QBFPT that
+	 * optionally reorders the variables by {@link VariableOrdering}, after
+	 * fixing variables if asked to, so that interacting genes (and the
+	 * variables of a prohibited triple) are close in the chromosome. Decoded
+	 * solutions are still in the original order.
+	 * 
+	 * @param qbfpt
+	 *            The QBFPT being maximized.
+	 * @param fixVariables
+	 *            Whether to fix variables by persistency before the search.
+	 * @param reorder
+	 *            Whether to reorder the variables before the search.
+	 */
+	public GA_QBFPT(int row, int col, Integer generations, Integer popSize, Double mutationRate, QBFPT qbfpt, boolean adaptativeMutation, boolean crosspointChoice, boolean sus, boolean fixVariables, boolean reorder) {
+		this(row, col, generations, popSize, mutationRate, qbfpt, new Preprocessing(qbfpt.A, qbfpt.triples(), fixVariables, reorder), adaptativeMutation, crosspointChoice, sus);
+	}
 
-		ObjFunction.evaluate(solution);
-		return solution;
+	private GA_QBFPT(int row, int col, Integer generations, Integer popSize, Double mutationRate, QBFPT qbfpt, Preprocessing preprocessing, boolean adaptativeMutation, boolean crosspointChoice, boolean sus) {
+		super(generations, popSize, mutationRate, preprocessing.isIdentity() ? qbfpt : new QBFPT(preprocessing.A, preprocessing.triples), preprocessing, adaptativeMutation, crosspointChoice, sus);
+		((QBFPT) ObjFunction).rng = rng;
+		this.row = row;
+		this.col = col;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see metaheuristics.ga.AbstractGA#generateRandomChromosome()
+	/**
+	 * {@inheritDoc} The key is the content hash of the problem evolved, which
+	 * is the reduced or reordered problem when fixing or reordering variables.
 	 */
 	@Override
-	protected Chromosome generateRandomChromosome() {
-
-		Chromosome chromosome = new Chromosome();
-		for (int i = 0; i < chromosomeSize; i++) {
-			chromosome.add(rng.nextInt(2));
-		}
+	protected String instanceKey() {
+		return ((QBFPT) ObjFunction).contentHash();
+	}
 
-		return chromosome;
+	/**
+	 * {@inheritDoc} The bound is that of the problem evolved, see
+	 * {@link problems.qbf.QBFBounds}, plus the value of the fixed variables.
+	 */
+	@Override
+	protected double upperBound() {
+		return ((QBFPT) ObjFunction).upperBound() + offset();
 	}
 
 	/*
@@ -107,26 +129,20 @@ public class GA_QBFPT extends AbstractGA<Integer, Integer> implements Runnable{
 
 		if (chromosome.fitness == null)
 		{
-			chromosome.fitness = decode(chromosome).cost;
+			long[] bits = chromosome.pack();
+			long[] before = bits.clone();
+			ObjFunction.makeViable(bits);
+			for (int w = 0; w < bits.length; w++) {
+				for (long reset = before[w] & ~bits[w]; reset != 0; reset &= reset - 1)
+					chromosome.set((w << 6) + Long.numberOfTrailingZeros(reset), 0);
+			}
+			chromosome.fitness = ObjFunction.evaluate(bits) + offset();
+			progress.countEvaluation();
 		}
 		
 		return chromosome.fitness;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * metaheuristics.ga.AbstractGA#mutateGene(metaheuristics.ga.AbstractGA.
-	 * Chromosome, java.lang.Integer)
-	 */
-	@Override
-	protected void mutateGene(Chromosome chromosome, Integer locus) {
-
-		chromosome.set(locus, 1 - chromosome.get(locus));
-		chromosome.fitness = null;
-	}
-
 	/**
 	 * A main method used for testing the GA metaheuristic.
 	 * @throws InterruptedException 
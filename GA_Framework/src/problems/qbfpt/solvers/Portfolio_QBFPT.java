@@ -0,0 +1,64 @@
+package problems.qbfpt.solvers;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import metaheuristics.ga.AbstractGA;
+import metaheuristics.ga.GAParameters;
+import metaheuristics.portfolio.Portfolio;
+import metaheuristics.termination.TargetFitness;
+import metaheuristics.termination.TerminationCriterion;
+import metaheuristics.termination.WallClockDeadline;
+import problems.qbf.QBF;
+import problems.qbf.solvers.GA_QBF;
+import problems.qbfpt.QBFPT;
+import solutions.Solution;
+
+/**
+ * Runs the configurations compared in {@link GA_QBFPT#main} as a
+ * {@link Portfolio} on one instance, until a target cost is reached or the
+ * time is up. The instance is read once and each member works on its own
+ * copy. For the qbf problem, {@link GA_QBF} ignores the adaptive mutation,
+ * crosspoint choice and sus options.
+ *
+ * Usage: Portfolio_QBFPT [qbf|qbfpt] [instance] [seconds] [target cost]
+ *
+ * @author arthurpd
+ */
+public class Portfolio_QBFPT {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		boolean qbfpt = args.length <= 0 || !args[0].equalsIgnoreCase("qbf");
+		String instance = args.length > 1 ? args[1] : "qbf200";
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 60.0;
+		double target = args.length > 3 ? Double.parseDouble(args[3]) : Double.POSITIVE_INFINITY;
+
+		QBFPT template = new QBFPT("GA_Framework/instances/" + instance);
+		QBF qbfTemplate = new QBF(template.A);
+		int size = template.size;
+
+		Portfolio<Integer> portfolio = new Portfolio<Integer>();
+		int seed = 0;
+		for (Map.Entry<String, GAParameters> configuration : Benchmark_QBFPT.configurations().entrySet()) {
+			GAParameters p = configuration.getValue();
+			AbstractGA<Integer, Integer> ga;
+			if (qbfpt)
+				ga = new GA_QBFPT(0, 0, Integer.MAX_VALUE, p.popSize, p.mutationRate(size), new QBFPT(template), p.adaptiveMutation, p.crosspointChoice, p.sus, false);
+			else
+				ga = new GA_QBF(Integer.MAX_VALUE, p.popSize, p.mutationRate(size), new QBF(qbfTemplate), false);
+			p.apply(ga);
+			ga.setSeed(seed++);
+			portfolio.add(configuration.getKey(), ga);
+		}
+
+		long start = System.nanoTime();
+		TerminationCriterion deadline = new WallClockDeadline((long) (seconds * 1e9), TimeUnit.NANOSECONDS);
+		Solution<Integer> best = portfolio.solve(Double.isInfinite(target) ? deadline : new TargetFitness(target).or(deadline));
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		System.out.println("Best found by " + portfolio.getWinner() + " in " + elapsed + "s: " + best);
+	}
+
+}
@@ -0,0 +1,75 @@
+package problems.qbfpt.solvers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import metaheuristics.ga.GAParameters;
+import metaheuristics.termination.EvaluationBudget;
+import metaheuristics.tuning.Race;
+import problems.qbfpt.QBFPT;
+
+/**
+ * Tunes the parameters of {@link GA_QBFPT} by racing: a factorial grid of
+ * configurations, which includes the six configurations compared in
+ * {@link GA_QBFPT#main}, is raced over the instances with a fixed budget of
+ * evaluations per run. Losing configurations are discarded as soon as the
+ * Friedman test tells them apart from the best, instead of running every
+ * configuration to completion on every instance. Each instance is read once,
+ * and every run works on its own copy.
+ * 
+ * Usage: Race_QBFPT [evaluations per run] [max experiments] [instances...]
+ * 
+ * @author arthurpd
+ */
+public class Race_QBFPT {
+
+	public static void main(String[] args) throws Exception {
+
+		long evaluations = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		long maxExperiments = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+		List<String> instances = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : Arrays.asList("qbf060", "qbf080", "qbf100", "qbf200");
+
+		List<GAParameters> candidates = new ArrayList<GAParameters>();
+		for (int popSize : new int[] { 50, 100, 200, 400 })
+			for (double mutationFactor : new double[] { 0.5, 1.0, 2.0 })
+				for (boolean adaptive : new boolean[] { false, true })
+					for (boolean crosspointChoice : new boolean[] { false, true })
+						for (boolean sus : new boolean[] { false, true })
+							candidates.add(new GAParameters(popSize, mutationFactor, adaptive, crosspointChoice, sus, false, false));
+		candidates.add(new GAParameters(100, 1.0, false, true, false, true, false));
+		candidates.add(new GAParameters(100, 1.0, false, true, false, false, true));
+
+		Map<String, QBFPT> templates = new HashMap<String, QBFPT>();
+		for (String instance : instances)
+			templates.put(instance, new QBFPT("GA_Framework/instances/" + instance));
+
+		int workers = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+		Race<GAParameters> race = new Race<GAParameters>(candidates, instances, (p, instance, seed) -> {
+			QBFPT qbfpt = new QBFPT(templates.get(instance));
+			GA_QBFPT ga = new GA_QBFPT(0, 0, Integer.MAX_VALUE, p.popSize, p.mutationRate(qbfpt.size), qbfpt, p.adaptiveMutation, p.crosspointChoice, p.sus, false);
+			p.apply(ga);
+			ga.setSeed(seed);
+			ga.setTermination(new EvaluationBudget(evaluations));
+			return ga.solve().cost;
+		}, pool, workers);
+		race.setMaxExperiments(maxExperiments);
+		Race.verbose = true;
+
+		long startTime = System.currentTimeMillis();
+		List<GAParameters> survivors = race.run();
+		pool.shutdown();
+
+		System.out.println("Survivors (best first), after " + race.getExperiments() + " of " + candidates.size() * 100 + " runs of a full sweep:");
+		for (GAParameters p : survivors)
+			System.out.println("  " + p);
+		System.out.println("Time = " + (System.currentTimeMillis() - startTime) / 1000.0 + " seg");
+	}
+
+}
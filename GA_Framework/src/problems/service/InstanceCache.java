@@ -0,0 +1,284 @@
+package problems.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import problems.qbf.QBF;
+import problems.qbfpt.QBFPT;
+
+/**
+ * The instances loaded by a {@link SolverDaemon}, parsed once and kept for
+ * all later jobs. Each instance is loaded at most once, even when several
+ * jobs ask for it at the same time; jobs on other instances are not held up
+ * meanwhile.
+ *
+ * The cached QBF and QBFPT are templates: their matrix, triples, upper
+ * bounds and content hashes are read-only and shared, and each job works on
+ * its own copy. The upper bounds are only computed for the jobs asking for
+ * them, as they may cost more than solving a large instance.
+ *
+ * The cached matrices are charged to the memory budget of the daemon, in
+ * megabytes, as the jobs are. An instance in use by a job, from
+ * {@link #get(Path)} to {@link #release(Instance)}, stays cached; idle
+ * instances are evicted, least recently used first, when a new instance or a
+ * job does not fit in the budget. An instance that does not fit even then is
+ * not cached, and the job using it is charged for it, see
+ * {@link Instance#isCharged()}.
+ *
+ * @author arthurpd
+ */
+public class InstanceCache {
+
+	/**
+	 * A loaded instance.
+	 */
+	public static class Instance {
+
+		private final QBFPT qbfpt;
+
+		private final QBF qbf;
+
+		/**
+		 * megabytes charged to the budget while cached, or 0 if not cached
+		 */
+		private int megabytes;
+
+		/**
+		 * the number of jobs using the instance
+		 */
+		private int users;
+
+		private Instance(QBFPT qbfpt) {
+			this.qbfpt = qbfpt;
+			this.qbf = new QBF(qbfpt.A);
+		}
+
+		/**
+		 * @param bounded
+		 *            Whether the copy needs the upper bound.
+		 * @return A private copy of the instance as a QBF.
+		 */
+		public QBF newQBF(boolean bounded) {
+			if (bounded)
+				qbf.upperBound();
+			qbf.contentHash();
+			return new QBF(qbf);
+		}
+
+		/**
+		 * @param bounded
+		 *            Whether the copy needs the upper bound.
+		 * @return A private copy of the instance as a QBFPT.
+		 */
+		public QBFPT newQBFPT(boolean bounded) {
+			if (bounded)
+				qbfpt.upperBound();
+			qbfpt.contentHash();
+			return new QBFPT(qbfpt);
+		}
+
+		/**
+		 * @return The number of variables.
+		 */
+		public int size() {
+			return qbfpt.size;
+		}
+
+		/**
+		 * @return Number of bytes used for storing the coefficients.
+		 */
+		public long memoryBytes() {
+			return qbfpt.A.memoryBytes();
+		}
+
+		/**
+		 * @return Whether the instance is cached, and so charged to the
+		 *         budget by the cache rather than by the jobs using it.
+		 */
+		public synchronized boolean isCharged() {
+			return megabytes > 0;
+		}
+	}
+
+	/**
+	 * interval between two evictions while waiting for memory, in
+	 * milliseconds
+	 */
+	public static final long EVICTION_SPACING = 100;
+
+	private final ConcurrentHashMap<Path, FutureTask<Instance>> instances = new ConcurrentHashMap<Path, FutureTask<Instance>>();
+
+	/**
+	 * the cached instances, least recently used first
+	 */
+	private final LinkedHashMap<Path, Instance> resident = new LinkedHashMap<Path, Instance>(16, 0.75f, true);
+
+	/**
+	 * the memory budget, in megabytes
+	 */
+	private final Semaphore memory;
+
+	/**
+	 * @param memory
+	 *            The memory budget shared with the jobs, in megabytes.
+	 */
+	public InstanceCache(Semaphore memory) {
+		this.memory = memory;
+	}
+
+	/**
+	 * Returns an instance, loading it on first use, and marks it as in use
+	 * until {@link #release(Instance)}.
+	 *
+	 * @param file
+	 *            The instance file.
+	 * @return The loaded instance.
+	 * @throws IOException
+	 *             If the instance cannot be read. Failed loads are not
+	 *             cached.
+	 */
+	public Instance get(Path file) throws IOException {
+
+		FutureTask<Instance> task = new FutureTask<Instance>(() -> {
+			try {
+				return new Instance(new QBFPT(file.toString()));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		FutureTask<Instance> cached = instances.putIfAbsent(file, task);
+		if (cached == null) {
+			cached = task;
+			task.run();
+			admit(file, task);
+		}
+
+		try {
+			Instance instance = cached.get();
+			synchronized (this) {
+				resident.get(file);
+				instance.users++;
+			}
+			return instance;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while loading " + file, e);
+		} catch (ExecutionException e) {
+			instances.remove(file, cached);
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			throw new IOException("cannot load " + file + ": " + e.getCause(), e.getCause());
+		}
+	}
+
+	/**
+	 * Marks an instance returned by {@link #get(Path)} as no longer in use by
+	 * the job that asked for it.
+	 *
+	 * @param instance
+	 *            The instance.
+	 */
+	public synchronized void release(Instance instance) {
+		instance.users--;
+	}
+
+	/**
+	 * Takes memory from the budget for a job, evicting idle instances while
+	 * the budget is short, and waiting for other jobs to release memory when
+	 * no instance is idle.
+	 *
+	 * @param megabytes
+	 *            The memory taken, to be released to the budget by the caller.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	public void reserve(int megabytes) throws InterruptedException {
+		while (!memory.tryAcquire(megabytes)) {
+			if (!evictIdle() && memory.tryAcquire(megabytes, EVICTION_SPACING, TimeUnit.MILLISECONDS))
+				return;
+		}
+	}
+
+	/**
+	 * Charges a newly loaded instance to the budget, evicting idle instances
+	 * to make room; an instance that does not fit is dropped from the cache,
+	 * without evicting any other.
+	 */
+	private synchronized void admit(Path file, FutureTask<Instance> task) {
+
+		Instance instance;
+		try {
+			instance = task.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return;
+		}
+		int megabytes = megabytes(instance.memoryBytes());
+		long idle = 0;
+		for (Instance cached : resident.values())
+			if (cached.users == 0)
+				idle += cached.megabytes;
+		if (memory.availablePermits() + idle < megabytes) {
+			instances.remove(file, task);
+			return;
+		}
+		while (!memory.tryAcquire(megabytes)) {
+			if (!evictIdle()) {
+				instances.remove(file, task);
+				return;
+			}
+		}
+		synchronized (instance) {
+			instance.megabytes = megabytes;
+		}
+		resident.put(file, instance);
+	}
+
+	/**
+	 * Evicts the least recently used instance not in use, if any.
+	 *
+	 * @return Whether an instance was evicted.
+	 */
+	private synchronized boolean evictIdle() {
+
+		for (Iterator<Map.Entry<Path, Instance>> it = resident.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, Instance> entry = it.next();
+			Instance instance = entry.getValue();
+			if (instance.users == 0) {
+				it.remove();
+				instances.remove(entry.getKey());
+				synchronized (instance) {
+					memory.release(instance.megabytes);
+					instance.megabytes = 0;
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param bytes
+	 *            An amount of memory.
+	 * @return The amount in megabytes of the budget, rounded up, at least 1.
+	 */
+	static int megabytes(long bytes) {
+		return (int) Math.max(1, (bytes + (1 << 20) - 1) >> 20);
+	}
+
+	/**
+	 * @return The number of instances cached.
+	 */
+	public synchronized int size() {
+		return resident.size();
+	}
+
+}
@@ -0,0 +1,287 @@
+package problems.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import metaheuristics.ga.AbstractGA;
+import metaheuristics.ga.GAParameters;
+import metaheuristics.ga.store.SolutionStore;
+import metaheuristics.termination.AnyOf;
+import metaheuristics.termination.Cancellation;
+import metaheuristics.termination.EvaluationBudget;
+import metaheuristics.termination.MaxGenerations;
+import metaheuristics.termination.SearchProgress;
+import metaheuristics.termination.TerminationCriterion;
+import metaheuristics.termination.WallClockDeadline;
+import problems.qbf.QBF;
+import problems.qbf.solvers.GA_QBF;
+import problems.qbfpt.QBFPT;
+import problems.qbfpt.solvers.GA_QBFPT;
+import solutions.Solution;
+
+/**
+ * A solve request of a {@link SolverDaemon}, given as a line of the form
+ *
+ * <pre>
+ * solve qbf|qbfpt instance [key=value ...]
+ * </pre>
+ *
+ * with the keys
+ *
+ * <pre>
+ * pop=100         population size
+ * mutation=1.0    mutation rate times the number of variables
+ * adaptive, crosspoint, sus=false   GA_QBFPT options, see GA_QBFPT
+ * nodup, crowding=false             see GAParameters
+ * fix=false       fix variables by persistency first
+ * reorder=false   reorder the variables by interaction first
+ * ltga=false      evolve by optimal mixing over a linkage tree
+ * seeding=0.0     fraction of the population built by GRASP
+ * seed=0          seed of the random number generator
+ * generations, evaluations, time    budget (time in seconds); without
+ *                                   any, 1000 generations
+ * threads=1       threads of the pool of the job, which seed the
+ *                 population and split large evaluations while the
+ *                 job thread waits
+ * memory          memory cap of the job, in megabytes
+ * warm=false      start from the best known solutions of the instance,
+ *                 when the daemon has a solution store
+ * bound=false     compute an upper bound, for reporting the gap and
+ *                 stopping once it closes; costly on large instances
+ * </pre>
+ *
+ * The memory of a job cannot be metered per thread in Java, so the cap is
+ * enforced on an estimate of the memory the GA needs: its populations plus
+ * the reduced or reordered matrices when fixing or reordering variables,
+ * and the similarities of the loci for ltga. The cached instance is shared
+ * by all jobs and charged to the budget of the daemon by the
+ * {@link InstanceCache}.
+ *
+ * @author arthurpd
+ */
+public class Job {
+
+	/**
+	 * estimated bytes per gene of a population held by the GA, counting the
+	 * parents, the offsprings and the population being replaced
+	 */
+	public static final long BYTES_PER_GENE = 3 * 16;
+
+	/**
+	 * minimum interval between two progress reports, in nanoseconds
+	 */
+	public static final long REPORT_SPACING = 100000000L;
+
+	public final long id;
+
+	public final boolean qbfpt;
+
+	public final String instance;
+
+	public final GAParameters parameters;
+
+	public final boolean fixVariables;
+
+	public final boolean reorder;
+
+	public final boolean linkageTree;
+
+	public final double seeding;
+
+	public final long seed;
+
+	public final long generations;
+
+	public final long evaluations;
+
+	public final double seconds;
+
+	public final int threads;
+
+	public final long memoryCap;
+
+	public final boolean warmStart;
+
+	public final boolean bounding;
+
+	private final Cancellation cancellation = new Cancellation();
+
+	/**
+	 * the progress of the GA running the job, once started
+	 */
+	private volatile SearchProgress progress;
+
+	/**
+	 * Parses a solve request.
+	 *
+	 * @param id
+	 *            The identifier given to the job.
+	 * @param tokens
+	 *            The words of the request, starting with "solve".
+	 * @throws IllegalArgumentException
+	 *             If the request is malformed.
+	 */
+	public Job(long id, String[] tokens) {
+
+		if (tokens.length < 3)
+			throw new IllegalArgumentException("usage: solve qbf|qbfpt instance [key=value ...]");
+		this.id = id;
+		if (tokens[1].equalsIgnoreCase("qbfpt"))
+			qbfpt = true;
+		else if (tokens[1].equalsIgnoreCase("qbf"))
+			qbfpt = false;
+		else
+			throw new IllegalArgumentException("unknown problem " + tokens[1]);
+		instance = tokens[2];
+
+		Map<String, String> options = new HashMap<String, String>();
+		for (int t = 3; t < tokens.length; t++) {
+			int eq = tokens[t].indexOf('=');
+			if (eq < 0)
+				options.put(tokens[t], "true");
+			else
+				options.put(tokens[t].substring(0, eq), tokens[t].substring(eq + 1));
+		}
+
+		try {
+			parameters = new GAParameters(Integer.parseInt(take(options, "pop", "100")), Double.parseDouble(take(options, "mutation", "1.0")), Boolean.parseBoolean(take(options, "adaptive", "false")), Boolean.parseBoolean(take(options, "crosspoint", "false")), Boolean.parseBoolean(take(options, "sus", "false")), Boolean.parseBoolean(take(options, "nodup", "false")), Boolean.parseBoolean(take(options, "crowding", "false")));
+			fixVariables = Boolean.parseBoolean(take(options, "fix", "false"));
+			reorder = Boolean.parseBoolean(take(options, "reorder", "false"));
+			linkageTree = Boolean.parseBoolean(take(options, "ltga", "false"));
+			seeding = Double.parseDouble(take(options, "seeding", "0"));
+			seed = Long.parseLong(take(options, "seed", "0"));
+			boolean budget = options.containsKey("generations") || options.containsKey("evaluations") || options.containsKey("time");
+			generations = Long.parseLong(take(options, "generations", budget ? "0" : "1000"));
+			evaluations = Long.parseLong(take(options, "evaluations", "0"));
+			seconds = Double.parseDouble(take(options, "time", "0"));
+			threads = Integer.parseInt(take(options, "threads", "1"));
+			memoryCap = Long.parseLong(take(options, "memory", "0")) << 20;
+			warmStart = Boolean.parseBoolean(take(options, "warm", "false"));
+			bounding = Boolean.parseBoolean(take(options, "bound", "false"));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad number: " + e.getMessage());
+		}
+		if (!options.isEmpty())
+			throw new IllegalArgumentException("unknown options " + options.keySet());
+		if (parameters.popSize < 2 || threads < 1 || seeding < 0 || seeding > 1)
+			throw new IllegalArgumentException("pop must be at least 2, threads at least 1 and seeding in [0, 1]");
+	}
+
+	private static String take(Map<String, String> options, String key, String value) {
+		String given = options.remove(key);
+		return given != null ? given : value;
+	}
+
+	/**
+	 * @param size
+	 *            Number of variables of the instance.
+	 * @param matrixBytes
+	 *            Memory used by the coefficients of the instance.
+	 * @return The estimated memory used by the job, in bytes.
+	 */
+	public long estimateMemory(int size, long matrixBytes) {
+		return BYTES_PER_GENE * parameters.popSize * size + ((fixVariables ? 1 : 0) + (reorder ? 1 : 0)) * matrixBytes + (linkageTree ? (long) Float.BYTES * size * size : 0);
+	}
+
+	/**
+	 * Requests the job to stop at the end of the generation in progress. Its
+	 * best solution so far is still reported.
+	 */
+	public void cancel() {
+		cancellation.cancel();
+	}
+
+	/**
+	 * Runs the job.
+	 *
+	 * @param cached
+	 *            The instance of the job.
+	 * @param store
+	 *            The store the best solutions found are merged into, or null.
+	 * @param out
+	 *            Receives the progress reports.
+	 * @return The best solution found.
+	 */
+	public Solution<Integer> run(InstanceCache.Instance cached, SolutionStore store, Consumer<String> out) {
+
+		/* the job thread waits while its pool works, so at most threads are busy */
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return run(cached, store, out, pool);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Solution<Integer> run(InstanceCache.Instance cached, SolutionStore store, Consumer<String> out, ForkJoinPool pool) {
+
+		int size = cached.size();
+		AbstractGA<Integer, Integer> ga;
+		if (qbfpt) {
+			ga = new GA_QBFPT(0, 0, Integer.MAX_VALUE, parameters.popSize, parameters.mutationRate(size), cached.newQBFPT(bounding), parameters.adaptiveMutation, parameters.crosspointChoice, parameters.sus, fixVariables, reorder);
+			((QBFPT) ga.getObjFunction()).setEvaluationPool(pool);
+		} else {
+			ga = new GA_QBF(Integer.MAX_VALUE, parameters.popSize, parameters.mutationRate(size), cached.newQBF(bounding), fixVariables, reorder);
+			((QBF) ga.getObjFunction()).setEvaluationPool(pool);
+		}
+		parameters.apply(ga);
+		ga.setSeed(seed);
+		ga.setSolutionStore(store, warmStart);
+		ga.setLinkageTree(linkageTree);
+		ga.setBounding(bounding);
+		progress = ga.getProgress();
+		progress.setImprovementListener(new Reporter(out));
+
+		List<TerminationCriterion> criteria = new ArrayList<TerminationCriterion>();
+		criteria.add(cancellation);
+		if (generations > 0)
+			criteria.add(new MaxGenerations(generations));
+		if (evaluations > 0)
+			criteria.add(new EvaluationBudget(evaluations));
+		if (seconds > 0)
+			criteria.add(new WallClockDeadline((long) (seconds * 1e9), TimeUnit.NANOSECONDS));
+		ga.setTermination(new AnyOf(criteria.toArray(new TerminationCriterion[0])));
+
+		if (seeding > 0)
+			ga.setSeeding(seeding, pool);
+
+		return ga.solve();
+	}
+
+	/**
+	 * @return The progress of the job, or null if it has not started.
+	 */
+	public SearchProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Reports the improvements of the best solution, at most once every
+	 * {@link #REPORT_SPACING} nanoseconds; those in between are only seen in
+	 * the next report, or in the result.
+	 */
+	private class Reporter implements Consumer<SearchProgress> {
+
+		private final Consumer<String> out;
+
+		private long lastReport = -REPORT_SPACING;
+
+		private Reporter(Consumer<String> out) {
+			this.out = out;
+		}
+
+		@Override
+		public void accept(SearchProgress progress) {
+			if (progress.getElapsedNanos() - lastReport >= REPORT_SPACING) {
+				lastReport = progress.getElapsedNanos();
+				out.accept("progress " + id + " generation=" + progress.getGeneration() + " evaluations=" + progress.getEvaluations() + " best=" + progress.getBestCost() + " gap=" + progress.getGap() + " seconds=" + lastReport / 1e9);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package problems.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends the commands read from the standard input to a {@link SolverDaemon}
+ * and prints its answers, until every job sent has ended.
+ *
+ * Usage: SolverClient [port] &lt; commands
+ *
+ * @author arthurpd
+ */
+public class SolverClient {
+
+	private static int ended = 0;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : SolverDaemon.DEFAULT_PORT;
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+			/* answers are read while commands are still being sent */
+			Thread reader = new Thread(() -> {
+				try {
+					String line;
+					while ((line = in.readLine()) != null) {
+						System.out.println(line);
+						if (line.startsWith("result ") || line.startsWith("failed ") || line.startsWith("rejected ")) {
+							synchronized (SolverClient.class) {
+								ended++;
+								SolverClient.class.notifyAll();
+							}
+						}
+					}
+				} catch (IOException e) {
+					/* the socket was closed */
+				}
+			});
+			reader.setDaemon(true);
+			reader.start();
+
+			int sent = 0;
+			String command;
+			while ((command = commands.readLine()) != null) {
+				out.println(command);
+				if (command.trim().startsWith("solve"))
+					sent++;
+			}
+
+			synchronized (SolverClient.class) {
+				while (ended < sent && reader.isAlive())
+					SolverClient.class.wait(100);
+			}
+		}
+	}
+
+}
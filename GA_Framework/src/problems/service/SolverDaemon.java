@@ -0,0 +1,283 @@
+package problems.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import metaheuristics.ga.store.SolutionStore;
+import metaheuristics.termination.SearchProgress;
+import solutions.Solution;
+
+/**
+ * A resident solver: it keeps a JVM running, with its JIT-compiled code and
+ * the instances already parsed ({@link InstanceCache}), and solves jobs sent
+ * to it through a local socket, so that many small solves do not each pay
+ * for starting a JVM and reading the instance.
+ *
+ * Clients connect to the loopback interface and send one command per line:
+ *
+ * <pre>
+ * solve qbf|qbfpt instance [key=value ...]   see {@link Job}
+ * cancel id
+ * status
+ * quit
+ * </pre>
+ *
+ * Instances are named relative to the instance directory of the daemon.
+ * Each solve is answered with "accepted id" or "rejected reason", and later
+ * with "progress id ..." lines while the job runs, and "result id ..." (or
+ * "failed id reason") when it ends. Jobs of a client are cancelled when it
+ * disconnects.
+ *
+ * Jobs run on a fixed number of workers, behind a bounded queue; a job is
+ * rejected when the queue is full. Each job is also admitted only while its
+ * estimated memory fits in the memory budget of the daemon, see
+ * {@link Job#estimateMemory(int, long)}. The cached instances are charged to
+ * the same budget, and the idle ones are evicted to make room for jobs.
+ *
+ * With a solution store, the best solutions of every job are merged into it,
+ * and jobs given warm=true start from the best known solutions of their
+ * instance, so re-solving a recurring instance resumes where the previous
+ * solves stopped.
+ *
+ * Usage: SolverDaemon [port] [workers] [queue] [memory budget in MB]
+ * [instance directory] [solution store directory]
+ *
+ * @author arthurpd
+ */
+public class SolverDaemon {
+
+	public static final int DEFAULT_PORT = 7070;
+
+	private final Path instanceDir;
+
+	private final InstanceCache cache;
+
+	private final ThreadPoolExecutor workers;
+
+	/**
+	 * the memory budget, in megabytes
+	 */
+	private final Semaphore memory;
+
+	private final int memoryBudget;
+
+	private final ConcurrentHashMap<Long, Job> jobs = new ConcurrentHashMap<Long, Job>();
+
+	private final AtomicLong ids = new AtomicLong();
+
+	private final AtomicLong completed = new AtomicLong();
+
+	/**
+	 * the store of best known solutions, or null
+	 */
+	private volatile SolutionStore store;
+
+	/**
+	 * @param workers
+	 *            Number of jobs running at the same time.
+	 * @param queue
+	 *            Number of jobs waiting for a worker.
+	 * @param memoryBudget
+	 *            Memory shared by the running jobs, in megabytes.
+	 * @param instanceDir
+	 *            Directory the instances are read from.
+	 */
+	public SolverDaemon(int workers, int queue, int memoryBudget, Path instanceDir) {
+		this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queue), r -> {
+			Thread t = new Thread(r, "solver-worker");
+			t.setDaemon(true);
+			return t;
+		});
+		this.memoryBudget = memoryBudget;
+		this.memory = new Semaphore(memoryBudget);
+		this.cache = new InstanceCache(memory);
+		this.instanceDir = instanceDir.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * @param store
+	 *            The store of best known solutions shared by the jobs, or null.
+	 */
+	public void setSolutionStore(SolutionStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Accepts clients until the server socket is closed.
+	 *
+	 * @param server
+	 *            The bound server socket.
+	 * @throws IOException
+	 *             If accepting a client fails.
+	 */
+	public void serve(ServerSocket server) throws IOException {
+		while (!server.isClosed()) {
+			Socket client = server.accept();
+			Thread handler = new Thread(() -> handle(client), "solver-client");
+			handler.setDaemon(true);
+			handler.start();
+		}
+	}
+
+	private void handle(Socket client) {
+
+		List<Job> submitted = new ArrayList<Job>();
+		try (Socket socket = client; BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+			PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			Consumer<String> out = line -> {
+				synchronized (writer) {
+					writer.println(line);
+				}
+			};
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] tokens = line.trim().split("\\s+");
+				if (tokens[0].isEmpty())
+					continue;
+				switch (tokens[0]) {
+				case "solve":
+					Job job = submit(tokens, out);
+					if (job != null)
+						submitted.add(job);
+					break;
+				case "cancel":
+					Job running = tokens.length > 1 ? jobs.get(Long.parseLong(tokens[1])) : null;
+					if (running != null)
+						running.cancel();
+					else
+						out.accept("unknown job");
+					break;
+				case "status":
+					out.accept("status running=" + workers.getActiveCount() + " queued=" + workers.getQueue().size() + " completed=" + completed.get() + " instances=" + cache.size() + " memory=" + (memoryBudget - memory.availablePermits()) + "/" + memoryBudget + "MB");
+					break;
+				case "quit":
+					return;
+				default:
+					out.accept("unknown command " + tokens[0]);
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			/* the client is gone */
+		} finally {
+			for (Job job : submitted)
+				job.cancel();
+		}
+	}
+
+	private Job submit(String[] tokens, Consumer<String> out) {
+
+		final Job job;
+		final Path file;
+		try {
+			job = new Job(ids.incrementAndGet(), tokens);
+			file = instanceDir.resolve(job.instance).normalize();
+			if (!file.startsWith(instanceDir))
+				throw new IllegalArgumentException("instance outside " + instanceDir);
+		} catch (IllegalArgumentException e) {
+			out.accept("rejected " + e.getMessage());
+			return null;
+		}
+
+		jobs.put(job.id, job);
+		try {
+			workers.execute(() -> run(job, file, out));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.id);
+			out.accept("rejected queue full");
+			return null;
+		}
+		out.accept("accepted " + job.id);
+		return job;
+	}
+
+	private void run(Job job, Path file, Consumer<String> out) {
+
+		long startTime = System.nanoTime();
+		try {
+			InstanceCache.Instance instance = cache.get(file);
+			try {
+				long estimate = job.estimateMemory(instance.size(), instance.memoryBytes());
+				int megabytes = InstanceCache.megabytes(estimate);
+				int instanceMegabytes = InstanceCache.megabytes(instance.memoryBytes());
+				if (job.memoryCap > 0 && estimate > job.memoryCap || megabytes + instanceMegabytes > memoryBudget) {
+					out.accept("failed " + job.id + " needs about " + (megabytes + instanceMegabytes) + "MB");
+					return;
+				}
+				/* an instance left out of the cache is charged to its job */
+				if (!instance.isCharged())
+					megabytes += instanceMegabytes;
+
+				cache.reserve(megabytes);
+				try {
+					Solution<Integer> sol = job.run(instance, store, out);
+					SearchProgress progress = job.getProgress();
+					StringJoiner ones = new StringJoiner(",");
+					for (Integer i : sol)
+						ones.add(i.toString());
+					out.accept("result " + job.id + " cost=" + sol.cost + " generations=" + progress.getGeneration() + " evaluations=" + progress.getEvaluations() + " seconds=" + (System.nanoTime() - startTime) / 1e9 + " solution=" + ones);
+				} finally {
+					memory.release(megabytes);
+				}
+			} finally {
+				cache.release(instance);
+			}
+		} catch (IOException | RuntimeException e) {
+			out.accept("failed " + job.id + " " + e);
+		} catch (InterruptedException e) {
+			out.accept("failed " + job.id + " interrupted");
+			Thread.currentThread().interrupt();
+		} finally {
+			jobs.remove(job.id);
+			completed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Stops accepting jobs and cancels the running ones.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+		for (Job job : jobs.values())
+			job.cancel();
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int queue = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int memoryBudget = args.length > 3 ? Integer.parseInt(args[3]) : (int) (Runtime.getRuntime().maxMemory() / 2 >> 20);
+		Path instanceDir = Paths.get(args.length > 4 ? args[4] : "GA_Framework/instances");
+
+		SolverDaemon daemon = new SolverDaemon(workers, queue, memoryBudget, instanceDir);
+		if (args.length > 5)
+			daemon.setSolutionStore(new SolutionStore(Paths.get(args[5]), SolutionStore.DEFAULT_CAPACITY));
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			Runtime.getRuntime().addShutdownHook(new Thread(daemon::shutdown));
+			System.out.println("Solving on port " + server.getLocalPort() + " with " + workers + " workers and " + memoryBudget + "MB");
+			daemon.serve(server);
+		}
+	}
+
+}
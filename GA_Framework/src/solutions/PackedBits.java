@@ -0,0 +1,106 @@
+package solutions;
+
+/**
+ * Helper methods for binary vectors packed into arrays of longs, 64 variables
+ * per word (bit i of the vector is bit (i % 64) of word (i / 64)). Bits past
+ * the vector size are always kept at zero, so whole words can be compared and
+ * counted directly.
+ * 
+ * @author arthurpd
+ */
+public final class PackedBits {
+
+	private PackedBits() {
+	}
+
+	/**
+	 * @param size
+	 *            Number of bits.
+	 * @return The number of words needed for storing size bits.
+	 */
+	public static int words(int size) {
+		return (size + 63) >>> 6;
+	}
+
+	/**
+	 * @return Whether bit i of bits is set.
+	 */
+	public static boolean get(long[] bits, int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Sets bit i of bits.
+	 */
+	public static void set(long[] bits, int i) {
+		bits[i >>> 6] |= 1L << i;
+	}
+
+	/**
+	 * Clears bit i of bits.
+	 */
+	public static void clear(long[] bits, int i) {
+		bits[i >>> 6] &= ~(1L << i);
+	}
+
+	/**
+	 * Flips bit i of bits.
+	 */
+	public static void flip(long[] bits, int i) {
+		bits[i >>> 6] ^= 1L << i;
+	}
+
+	/**
+	 * @return The number of set bits.
+	 */
+	public static int count(long[] bits) {
+		int c = 0;
+		for (long w : bits)
+			c += Long.bitCount(w);
+		return c;
+	}
+
+	/**
+	 * @return The Hamming distance between two vectors of the same size.
+	 */
+	public static int hamming(long[] a, long[] b) {
+		int d = 0;
+		for (int w = 0; w < a.length; w++)
+			d += Long.bitCount(a[w] ^ b[w]);
+		return d;
+	}
+
+	/**
+	 * Packs a solution of a binary problem, i.e. the list of variables set to
+	 * one.
+	 * 
+	 * @param sol
+	 *            The solution being packed.
+	 * @param size
+	 *            The dimension of the domain.
+	 * @return The packed vector.
+	 */
+	public static long[] pack(Solution<Integer> sol, int size) {
+		long[] bits = new long[words(size)];
+		for (Integer elem : sol)
+			set(bits, elem);
+		return bits;
+	}
+
+	/**
+	 * @return The indices of the set bits, in increasing order.
+	 */
+	public static int[] ones(long[] bits) {
+		int[] ones = new int[count(bits)];
+		int k = 0;
+		for (int w = 0; w < bits.length; w++) {
+			long word = bits[w];
+			while (word != 0) {
+				ones[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return ones;
+	}
+
+}